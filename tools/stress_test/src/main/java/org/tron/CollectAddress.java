@@ -11,15 +11,18 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.extern.slf4j.Slf4j;
 import org.rocksdb.RocksDBException;
 import org.tron.plugins.utils.db.DBInterface;
-import org.tron.plugins.utils.db.DBIterator;
 import org.tron.plugins.utils.db.DbTool;
+import org.tron.plugins.utils.db.ParallelScanner;
 import org.tron.protos.contract.BalanceContract.TransferContract;
 import org.tron.trident.core.ApiWrapper;
 import org.tron.trident.proto.Chain.Transaction.Contract.ContractType;
@@ -60,6 +63,13 @@ public class CollectAddress implements Callable<Integer> {
   private boolean help;
 
 
+  @Option(names = {"--threads"},
+      defaultValue = "1",
+      description = "threads to read the account database, the key space is split into ranges."
+          + " With more than one thread the addresses are not always the first ones."
+          + " Default: ${DEFAULT-VALUE}")
+  private int threads;
+
   @Option(names = {"-o", "--output"},
       defaultValue = "address-list.csv",
       description = "store the collected address list."
@@ -128,31 +138,37 @@ public class CollectAddress implements Callable<Integer> {
 
   private Set<ByteString> getAddressListFromDB(String dbPath, int totalNumber)
       throws IOException, RocksDBException {
-    Set<ByteString> addressList = new HashSet<>();
     String srcDir = dbPath + File.separator + "database";
-    DBInterface accountStore = DbTool.getDB(srcDir, ACCOUNT_STORE);
-    DBIterator iterator = accountStore.iterator();
-    for (iterator.seekToFirst(); iterator.valid(); iterator.next()) {
-      addressList.add(ByteString.copyFrom(iterator.getKey()));
-      if (addressList.size() % 10000 == 0) {
-        logger.info("collecting address list, current size: {}, target: {}", addressList.size(),
-            totalNumber);
-        spec.commandLine().getOut()
-            .format("collecting address list, current size: %d, target: %d", addressList.size(),
-                totalNumber)
-            .println();
-      }
-      if (addressList.size() >= totalNumber) {
-        logger
-            .info("collecting address list: {}, target: {}", addressList.size(),
+    DBInterface accountStore = DbTool.getReadOnlyDB(srcDir, ACCOUNT_STORE);
+    AtomicInteger collected = new AtomicInteger();
+    List<List<ByteString>> parts;
+    try {
+      // every range stops once the ranges together reached the target
+      parts = ParallelScanner.scan(accountStore, threads, (range, iterator) -> {
+        List<ByteString> part = new ArrayList<>();
+        iterator.visit((key, value) -> {
+          int size = collected.incrementAndGet();
+          if (size > totalNumber) {
+            return false;
+          }
+          part.add(ByteString.copyFrom(key));
+          if (size % 10000 == 0) {
+            logger.info("collecting address list, current size: {}, target: {}", size,
                 totalNumber);
-        spec.commandLine().getOut()
-            .format("collecting address list: %d, target: %d",
-                addressList.size(), totalNumber)
-            .println();
-        return addressList;
-      }
+            spec.commandLine().getOut()
+                .format("collecting address list, current size: %d, target: %d", size,
+                    totalNumber)
+                .println();
+          }
+          return size < totalNumber;
+        });
+        return part;
+      });
+    } finally {
+      DbTool.close();
     }
+    Set<ByteString> addressList = new HashSet<>();
+    parts.forEach(addressList::addAll);
 
     logger
         .info("collecting address list: {}, target: {}", addressList.size(),
@@ -160,8 +176,6 @@ public class CollectAddress implements Callable<Integer> {
     spec.commandLine().getOut()
         .format("collecting address list: %d, target: %d",
             addressList.size(), totalNumber).println();
-
-    DbTool.close();
     return addressList;
   }
 
@@ -0,0 +1,89 @@
+package org.tron.plugins.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rocksdb.RocksDBException;
+import org.tron.plugins.Toolkit;
+import org.tron.plugins.utils.FileUtils;
+import org.tron.plugins.utils.db.DbTool;
+import picocli.CommandLine;
+
+/**
+ * One safe conversion of a generated leveldb into a new rocksdb, the per key path of
+ * db convert: read, checksum, batch insert, or sst write with --ingest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConvertBenchmark {
+
+  private static final String DB = "account";
+
+  @Param({"100000"})
+  private long keys;
+
+  @Param({"64"})
+  private int valueSize;
+
+  @Param({"false", "true"})
+  private boolean ingest;
+
+  @Param({"1"})
+  private int threads;
+
+  private Path src;
+  private Path dest;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, RocksDBException {
+    src = Datasets.tempDir();
+    Datasets.create(src, DB, DbTool.DbType.LevelDB, keys, valueSize);
+    DbTool.close();
+  }
+
+  @Setup(Level.Invocation)
+  public void newDest() throws IOException {
+    dest = Datasets.tempDir();
+  }
+
+  @TearDown(Level.Invocation)
+  public void deleteDest() {
+    FileUtils.deleteDir(dest.toFile());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    Datasets.delete(src);
+  }
+
+  @Benchmark
+  public int convert() {
+    String[] args = ingest
+        ? new String[] {"db", "convert", src.toString(), dest.toString(), "--safe", "--ingest",
+            "--threads", "" + threads}
+        : new String[] {"db", "convert", src.toString(), dest.toString(), "--safe",
+            "--threads", "" + threads};
+    int code = new CommandLine(new Toolkit()).execute(args);
+    if (code != 0) {
+      throw new IllegalStateException("convert failed: " + code);
+    }
+    return code;
+  }
+}
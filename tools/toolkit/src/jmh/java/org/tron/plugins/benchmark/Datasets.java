@@ -0,0 +1,48 @@
+package org.tron.plugins.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.rocksdb.RocksDBException;
+import org.tron.plugins.utils.ByteArray;
+import org.tron.plugins.utils.FileUtils;
+import org.tron.plugins.utils.db.DBInterface;
+import org.tron.plugins.utils.db.DbTool;
+import org.tron.plugins.utils.db.WriteSession;
+
+/**
+ * Generated databases in a temp dir. Keys are big-endian longs 0 to keys - 1, values are
+ * random bytes of a fixed size, seeded so every run reads the same data.
+ */
+final class Datasets {
+
+  static final String PREFIX = "toolkit-jmh";
+
+  private Datasets() {
+
+  }
+
+  static Path tempDir() throws IOException {
+    return Files.createTempDirectory(PREFIX);
+  }
+
+  static DBInterface create(Path dir, String name, DbTool.DbType type, long keys, int valueSize)
+      throws IOException, RocksDBException {
+    DBInterface db = DbTool.getDB(dir.toString(), name, type);
+    Random random = new Random(keys);
+    try (WriteSession session = db.newWriteSession()) {
+      for (long i = 0; i < keys; i++) {
+        byte[] value = new byte[valueSize];
+        random.nextBytes(value);
+        session.put(ByteArray.fromLong(i), value);
+      }
+    }
+    return db;
+  }
+
+  static void delete(Path dir) {
+    DbTool.close();
+    FileUtils.deleteDir(dir.toFile());
+  }
+}
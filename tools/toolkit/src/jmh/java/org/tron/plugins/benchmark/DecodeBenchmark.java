@@ -0,0 +1,75 @@
+package org.tron.plugins.benchmark;
+
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.tron.plugins.utils.DBUtils;
+import org.tron.plugins.utils.JsonFormat;
+import org.tron.plugins.utils.MarketUtils;
+import org.tron.protos.Protocol;
+
+/**
+ * Per value and per key work outside the storage engines: printing an account as JSON, as
+ * db query and db diff do, and ordering market price keys, as the market db comparator does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class DecodeBenchmark {
+
+  private static final int PRICE_KEYS = 1024;
+
+  private Protocol.Account account;
+  private List<byte[]> priceKeys;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Random random = new Random(1);
+    byte[] address = new byte[21];
+    random.nextBytes(address);
+    Protocol.Account.Builder builder = Protocol.Account.newBuilder()
+        .setAddress(ByteString.copyFrom(address))
+        .setAccountName(ByteString.copyFromUtf8("benchmark"))
+        .setBalance(random.nextLong() & Long.MAX_VALUE)
+        .setCreateTime(System.currentTimeMillis());
+    for (int i = 0; i < 8; i++) {
+      builder.putAssetV2(String.valueOf(1000001 + i), random.nextInt(1_000_000));
+      builder.addVotes(Protocol.Vote.newBuilder().setVoteAddress(ByteString.copyFrom(address))
+          .setVoteCount(random.nextInt(1000)));
+    }
+    account = builder.build();
+
+    priceKeys = new ArrayList<>(PRICE_KEYS);
+    for (int i = 0; i < PRICE_KEYS; i++) {
+      priceKeys.add(MarketUtils.createPairPriceKey("_".getBytes(),
+          String.valueOf(1000001 + random.nextInt(4)).getBytes(),
+          1 + random.nextInt(1_000_000), 1 + random.nextInt(1_000_000)));
+    }
+  }
+
+  @Benchmark
+  public String printAccount() {
+    return JsonFormat.printToString(account, true);
+  }
+
+  @Benchmark
+  public int comparePriceKey() {
+    byte[] left = priceKeys.get(next);
+    next = (next + 1) % PRICE_KEYS;
+    return DBUtils.keyComparator(DBUtils.MARKET_PAIR_PRICE_TO_ORDER)
+        .compare(left, priceKeys.get(next));
+  }
+}
@@ -0,0 +1,69 @@
+package org.tron.plugins.benchmark;
+
+import com.google.common.primitives.Bytes;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.tron.plugins.utils.Sha256Hash;
+
+/**
+ * Hashing of a db entry and of a merkle node, the copying path the db root used before
+ * against the two buffer path on the digest of the thread. Compare the throughput and the
+ * gc.alloc.rate.norm of the pairs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class HashBenchmark {
+
+  @Param({"32", "256"})
+  private int valueSize;
+
+  private byte[] key;
+  private byte[] value;
+  private Sha256Hash left;
+  private Sha256Hash right;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Random random = new Random(valueSize);
+    key = new byte[21];
+    value = new byte[valueSize];
+    random.nextBytes(key);
+    random.nextBytes(value);
+    left = Sha256Hash.of(true, key);
+    right = Sha256Hash.of(true, value);
+  }
+
+  @Benchmark
+  public byte[] entryConcatNewDigest() {
+    byte[] contents = Bytes.concat(key, value);
+    return Sha256Hash.newDigest().digest(contents);
+  }
+
+  @Benchmark
+  public Sha256Hash entryTwoBuffers() {
+    return Sha256Hash.of(true, key, value);
+  }
+
+  @Benchmark
+  public byte[] nodeByteStringConcat() {
+    return Sha256Hash.newDigest().digest(
+        left.getByteString().concat(right.getByteString()).toByteArray());
+  }
+
+  @Benchmark
+  public Sha256Hash nodeTwoBuffers() {
+    return Sha256Hash.of(true, left.getBytes(), right.getBytes());
+  }
+}
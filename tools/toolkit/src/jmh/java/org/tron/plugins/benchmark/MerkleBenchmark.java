@@ -0,0 +1,53 @@
+package org.tron.plugins.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.tron.plugins.utils.ByteArray;
+import org.tron.plugins.utils.MerkleRoot;
+import org.tron.plugins.utils.Sha256Hash;
+
+/**
+ * Merkle root of a hash list, the list form against the streaming accumulator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class MerkleBenchmark {
+
+  @Param({"100000"})
+  private int hashes;
+
+  private List<Sha256Hash> list;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    list = new ArrayList<>(hashes);
+    for (int i = 0; i < hashes; i++) {
+      list.add(Sha256Hash.of(true, ByteArray.fromInt(i)));
+    }
+  }
+
+  @Benchmark
+  public Sha256Hash root() {
+    return MerkleRoot.root(list);
+  }
+
+  @Benchmark
+  public Sha256Hash accumulator() {
+    MerkleRoot.Accumulator accumulator = new MerkleRoot.Accumulator();
+    list.forEach(accumulator::add);
+    return accumulator.finish();
+  }
+}
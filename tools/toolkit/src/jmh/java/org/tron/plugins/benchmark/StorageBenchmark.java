@@ -0,0 +1,132 @@
+package org.tron.plugins.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.rocksdb.RocksDBException;
+import org.tron.plugins.utils.ByteArray;
+import org.tron.plugins.utils.db.DBInterface;
+import org.tron.plugins.utils.db.DBIterator;
+import org.tron.plugins.utils.db.DbTool;
+import org.tron.plugins.utils.db.WriteSession;
+
+/**
+ * Reads and writes through the db wrappers of the toolkit, LevelDBImpl against RocksDBImpl
+ * on the same generated data, MemoryDBImpl is the baseline without storage. Override the
+ * size with -PjmhKeys=... .
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class StorageBenchmark {
+
+  private static final String READ_DB = "read";
+  private static final String WRITE_DB = "write";
+  private static final int BATCH = 256;
+
+  @Param({"LevelDB", "RocksDB", "Memory"})
+  private DbTool.DbType engine;
+
+  @Param({"100000"})
+  private long keys;
+
+  @Param({"64"})
+  private int valueSize;
+
+  private Path dir;
+  private DBInterface read;
+  private DBInterface write;
+  private byte[] value;
+  private long nextKey;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, RocksDBException {
+    dir = Datasets.tempDir();
+    read = Datasets.create(dir, READ_DB, engine, keys, valueSize);
+    write = DbTool.getDB(dir.toString(), WRITE_DB, engine);
+    value = new byte[valueSize];
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    Datasets.delete(dir);
+  }
+
+  /**
+   * Full scan, the time per key is the score divided by keys.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public long scan(Blackhole blackhole) throws IOException {
+    long count = 0;
+    try (DBIterator iterator = read.iterator()) {
+      for (iterator.seekToFirst(); iterator.valid(); iterator.next()) {
+        blackhole.consume(iterator.getKey());
+        blackhole.consume(iterator.getValue());
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Full scan with a visitor, no entry object per key.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public long visit(Blackhole blackhole) throws IOException {
+    try (DBIterator iterator = read.iterator()) {
+      iterator.seekToFirst();
+      return iterator.visit((key, value) -> {
+        blackhole.consume(key);
+        blackhole.consume(value);
+        return true;
+      });
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public long count() throws IOException {
+    try (DBIterator iterator = read.iterator()) {
+      iterator.seekToFirst();
+      return iterator.count();
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public byte[] get() {
+    return read.get(ByteArray.fromLong(ThreadLocalRandom.current().nextLong(keys)));
+  }
+
+  /**
+   * One write batch of {@value #BATCH} new keys.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public void batchPut() {
+    try (WriteSession session = write.newWriteSession()) {
+      for (int i = 0; i < BATCH; i++) {
+        session.put(ByteArray.fromLong(nextKey++), value);
+      }
+    }
+  }
+}
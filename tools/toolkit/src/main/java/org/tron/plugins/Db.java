@@ -1,5 +1,10 @@
 package org.tron.plugins;
 
+import java.nio.file.Path;
+import org.tron.plugins.utils.DbOptions;
+import org.tron.plugins.utils.MemoryBudget;
+import org.tron.plugins.utils.db.DbMetrics;
+import org.tron.plugins.utils.db.DbTool;
 import picocli.CommandLine;
 
 @CommandLine.Command(name = "db",
@@ -14,9 +19,69 @@ import picocli.CommandLine;
         DbCopy.class,
         DbRoot.class,
         DbFork.class,
-        DbQuery.class
+        DbQuery.class,
+        DbDiff.class
     },
     commandListHeading = "%nCommands:%n%nThe most commonly used db commands are:%n"
 )
 public class Db {
+
+  @CommandLine.Option(names = {"--cache-mb"},
+      defaultValue = "" + MemoryBudget.DEFAULT_CACHE_MB,
+      description = "block cache in MB shared by all opened rocksdb. Default: ${DEFAULT-VALUE}")
+  public void setCacheMb(long cacheMb) {
+    MemoryBudget.setCacheMb(cacheMb);
+  }
+
+  @CommandLine.Option(names = {"--write-buffer-mb"},
+      defaultValue = "" + MemoryBudget.DEFAULT_WRITE_BUFFER_MB,
+      description = "write buffer budget in MB for all opened rocksdb. Default: ${DEFAULT-VALUE}")
+  public void setWriteBufferMb(long writeBufferMb) {
+    MemoryBudget.setWriteBufferMb(writeBufferMb);
+  }
+
+  @CommandLine.Option(names = {"--max-open-dbs"},
+      defaultValue = "" + DbTool.DEFAULT_MAX_OPEN_DBS,
+      description = "dbs kept open at once, idle ones are closed and reopened on use."
+          + " Default: ${DEFAULT-VALUE}")
+  public void setMaxOpenDbs(int maxOpenDbs) {
+    DbTool.setMaxOpenDbs(maxOpenDbs);
+  }
+
+  @CommandLine.Option(names = {"--max-open-files"},
+      defaultValue = "" + DbTool.DEFAULT_MAX_OPEN_FILES,
+      description = "table files kept open by all opened dbs together."
+          + " Default: ${DEFAULT-VALUE}")
+  public void setMaxOpenFiles(int maxOpenFiles) {
+    DbTool.setMaxOpenFiles(maxOpenFiles);
+  }
+
+  @CommandLine.Option(names = {"--profile"},
+      description = "engine options of every db: default, bulk-write, point-read, scan or"
+          + " low-memory. Default: the profile of the command")
+  public void setProfile(String profile) {
+    DbOptions.setProfile(profile);
+  }
+
+  @CommandLine.Option(names = {"--db-options"},
+      description = "HOCON file overriding the engine options of all dbs or per db.")
+  public void setDbOptions(Path dbOptions) {
+    DbOptions.load(dbOptions);
+  }
+
+  @CommandLine.Option(names = {"--metrics"},
+      description = "record the latency and bytes of the operations of every db,"
+          + " print them at exit.")
+  public void setMetrics(boolean metrics) {
+    if (metrics) {
+      DbMetrics.enable(null);
+    }
+  }
+
+  @CommandLine.Option(names = {"--metrics-file"},
+      description = "also write the metrics at exit to this Prometheus textfile,"
+          + " implies --metrics.")
+  public void setMetricsFile(Path metricsFile) {
+    DbMetrics.enable(metricsFile);
+  }
 }
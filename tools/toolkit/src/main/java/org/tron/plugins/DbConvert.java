@@ -1,27 +1,47 @@
 package org.tron.plugins;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import me.tongfei.progressbar.ProgressBar;
 import org.fusesource.leveldbjni.JniDBFactory;
 import org.iq80.leveldb.DB;
-import org.iq80.leveldb.DBIterator;
+import org.rocksdb.EnvOptions;
+import org.rocksdb.IngestExternalFileOptions;
+import org.rocksdb.Options;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
-import org.rocksdb.RocksIterator;
+import org.rocksdb.Slice;
+import org.rocksdb.SstFileWriter;
 import org.rocksdb.Status;
+import org.tron.plugins.utils.ByteArray;
 import org.tron.plugins.utils.DBUtils;
+import org.tron.plugins.utils.DbOptions;
 import org.tron.plugins.utils.FileUtils;
+import org.tron.plugins.utils.Journal;
+import org.tron.plugins.utils.MemoryBudget;
+import org.tron.plugins.utils.db.DBInterface;
+import org.tron.plugins.utils.db.DBIterator;
+import org.tron.plugins.utils.db.DbMetrics;
+import org.tron.plugins.utils.db.DbTool;
+import org.tron.plugins.utils.db.IteratorOptions;
+import org.tron.plugins.utils.db.KeyRange;
+import org.tron.plugins.utils.db.LevelDBImpl;
+import org.tron.plugins.utils.db.ParallelScanner;
+import org.tron.plugins.utils.db.RangePartitioner;
+import org.tron.plugins.utils.db.RocksDBImpl;
 import picocli.CommandLine;
 
 
@@ -39,6 +59,12 @@ public class DbConvert implements Callable<Integer> {
   }
 
   private static final int BATCH  = 256;
+  private static final long SST_FILE_SIZE = 64 * 1024 * 1024L;
+  private static final String SST_DIR = "ingest";
+  private static final String JOURNAL = "convert.journal";
+  private static final String JOURNAL_SRC = "src";
+  private static final String JOURNAL_RANGES = "ranges";
+  private static final String JOURNAL_RANGE = "range.";
 
   @CommandLine.Spec
   CommandLine.Model.CommandSpec spec;
@@ -57,6 +83,16 @@ public class DbConvert implements Callable<Integer> {
           + "Default: ${DEFAULT-VALUE}")
   private boolean safe;
 
+  @CommandLine.Option(names = {"--threads"}, defaultValue = "1",
+      description = "In safe mode, threads to read and write each database,"
+          + " the key space is split into ranges. Default: ${DEFAULT-VALUE}")
+  private int threads;
+
+  @CommandLine.Option(names = {"--ingest"},
+      description = "In safe mode, write the sorted leveldb data to sst files and ingest them,"
+          + " skipping memtable, WAL and compaction. Default: ${DEFAULT-VALUE}")
+  private boolean ingest;
+
   @CommandLine.Option(names = {"-h", "--help"})
   private boolean help;
 
@@ -67,6 +103,7 @@ public class DbConvert implements Callable<Integer> {
       spec.commandLine().usage(System.out);
       return 0;
     }
+    DbOptions.use("convert", DbOptions.Profile.BULK_WRITE);
     if (!src.exists()) {
       logger.info(" {} does not exist.", src);
       spec.commandLine().getErr().println(spec.commandLine().getColorScheme()
@@ -95,12 +132,12 @@ public class DbConvert implements Callable<Integer> {
     final long time = System.currentTimeMillis();
     List<Converter> services = new ArrayList<>();
     files.forEach(f -> services.add(
-        new DbConverter(src.getPath(), dest.getPath(), f.getName(), safe)));
+        new DbConverter(src.getPath(), dest.getPath(), f.getName(), safe, threads, ingest)));
     cpList.forEach(f -> services.add(
         new DbConverter(
             Paths.get(src.getPath(), DBUtils.CHECKPOINT_DB_V2).toString(),
             Paths.get(dest.getPath(), DBUtils.CHECKPOINT_DB_V2).toString(),
-            f.getName(), safe)));
+            f.getName(), safe, threads, ingest)));
     List<String> fails = ProgressBar.wrap(services.stream(), "convert task").parallel().map(
         dbConverter -> {
           try {
@@ -132,23 +169,29 @@ public class DbConvert implements Callable<Integer> {
     private final String dbName;
     private final Path srcDbPath;
     private final Path dstDbPath;
+    private final Journal journal;
 
-    private long srcDbKeyCount = 0L;
-    private long dstDbKeyCount = 0L;
-    private long srcDbKeySum = 0L;
-    private long dstDbKeySum = 0L;
-    private long srcDbValueSum = 0L;
-    private long dstDbValueSum = 0L;
+    private final Checksum srcSum = new Checksum();
 
     private boolean safe;
-
-    public DbConverter(String srcDir, String dstDir, String name, boolean safe) {
+    private final int threads;
+    private final boolean ingest;
+    private final AtomicInteger sstFiles = new AtomicInteger();
+    // the raw rocksdb writes bypass the instrumented target, they are timed into its store
+    private final DbMetrics.Store metrics;
+
+    public DbConverter(String srcDir, String dstDir, String name, boolean safe, int threads,
+                       boolean ingest) {
       this.srcDir = srcDir;
       this.dstDir = dstDir;
       this.dbName = name;
       this.srcDbPath = Paths.get(this.srcDir, name);
       this.dstDbPath = Paths.get(this.dstDir, name);
+      this.journal = new Journal(Paths.get(this.dstDbPath.toString(), JOURNAL));
       this.safe = safe;
+      this.threads = threads;
+      this.ingest = ingest;
+      this.metrics = DbMetrics.isEnabled() ? DbMetrics.store(dstDir, name) : null;
     }
 
     @Override
@@ -169,9 +212,12 @@ public class DbConvert implements Callable<Integer> {
         return true;
       }
       long startTime = System.currentTimeMillis();
-      if (this.dstDbPath.toFile().exists()) {
+      if (resumable()) {
+        logger.info(" {} resume unfinished conversion", this.dbName);
+      } else if (this.dstDbPath.toFile().exists()) {
         logger.info(" {} begin to clear exist database directory", this.dbName);
         FileUtils.deleteDir(this.dstDbPath.toFile());
+        journal.clear();
         logger.info(" {} clear exist database directory done.", this.dbName);
       }
 
@@ -180,17 +226,21 @@ public class DbConvert implements Callable<Integer> {
       logger.info("Convert database {} start", this.dbName);
       if (safe) {
         convertLevelToRocks();
-        compact();
+        if (!ingest) {
+          compact();
+        }
       } else {
         FileUtils.copyDir(Paths.get(srcDir), Paths.get(dstDir), dbName);
       }
-      boolean result = check() && createEngine(dstDbPath.toString());
+      boolean result = createEngine(dstDbPath.toString());
       long etime = System.currentTimeMillis();
 
       if (result) {
+        journal.clear();
         if (safe) {
-          logger.info("Convert database {} successful end with {} key-value {} minutes",
-              this.dbName, this.srcDbKeyCount, (etime - startTime) / 1000.0 / 60);
+          logger.info("Convert database {} successful end with {} key-value {} minutes,"
+                  + " keySum {}, valueSum {}", this.dbName, this.srcSum.count,
+              (etime - startTime) / 1000.0 / 60, this.srcSum.keySum, this.srcSum.valueSum);
         } else {
           logger.info("Convert database {} successful end  {} minutes",
               this.dbName, (etime - startTime) / 1000.0 / 60);
@@ -214,13 +264,20 @@ public class DbConvert implements Callable<Integer> {
 
     private void batchInsert(RocksDB rocks, List<byte[]> keys, List<byte[]> values)
         throws Exception {
+      long bytes = 0;
       try (org.rocksdb.WriteBatch batch = new org.rocksdb.WriteBatch()) {
         for (int i = 0; i < keys.size(); i++) {
           byte[] k = keys.get(i);
           byte[] v = values.get(i);
           batch.put(k, v);
+          bytes += k.length + v.length;
         }
+        long start = System.nanoTime();
         write(rocks, batch);
+        if (metrics != null) {
+          metrics.record(DbMetrics.Op.PUT, keys.size(), System.nanoTime() - start);
+          metrics.written(bytes);
+        }
       }
       keys.clear();
       values.clear();
@@ -261,41 +318,176 @@ public class DbConvert implements Callable<Integer> {
     /**
      * https://github.com/facebook/rocksdb/wiki/RocksDB-FAQ .
      *  What's the fastest way to load data into RocksDB?
-     *
-     * @return if ok
+     *  The key space is split into ranges which are converted concurrently, by batched
+     *  writes or by ingesting sst files. Each range is read back and compared with the
+     *  source checksum, then recorded in the journal, a restarted conversion only redoes
+     *  the unfinished ranges.
      */
     public void convertLevelToRocks() throws Exception {
-      List<byte[]> keys = new ArrayList<>(BATCH);
-      List<byte[]> values = new ArrayList<>(BATCH);
+      Path sstDir = Paths.get(dstDbPath.toString(), SST_DIR);
+      // sst files of an interrupted range are useless
+      FileUtils.deleteDir(sstDir.toFile());
+      if (ingest) {
+        FileUtils.createDirIfNotExists(sstDir.toString());
+      }
       JniDBFactory.pushMemoryPool(1024 * 1024);
       try (
-          DB level = DBUtils.newLevelDb(srcDbPath);
-          RocksDB rocks = DBUtils.newRocksDbForBulkLoad(dstDbPath);
-          DBIterator levelIterator = level.iterator(
-              new org.iq80.leveldb.ReadOptions().fillCache(false))) {
+          DB level = DBUtils.newLevelDbReadOnly(srcDbPath, DBUtils.LEVELDB_MAX_OPEN_FILES);
+          Options options = DBUtils.newDefaultRocksDbOptions(dstDbPath, true);
+          RocksDB rocks = RocksDB.open(options, dstDbPath.toString())) {
+        DBInterface source = DbTool.instrument(new LevelDBImpl(level, dbName, true), srcDir);
+        DBInterface target = DbTool.instrument(new RocksDBImpl(rocks, dbName), dstDir);
+        logger.info("Convert database {}{}, estimated keys: {}",
+            dbName, ingest ? " by ingest" : "", source.estimatedSize());
+        List<KeyRange> ranges = planRanges(source);
+        List<KeyRange> todo = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+          String done = journal.get(JOURNAL_RANGE + i);
+          if (done == null) {
+            todo.add(ranges.get(i));
+          } else {
+            srcSum.add(Checksum.decode(done));
+          }
+        }
+        if (todo.size() < ranges.size()) {
+          logger.info("Convert database {}, {} of {} ranges already done",
+              dbName, ranges.size() - todo.size(), ranges.size());
+        }
+        ParallelScanner.scan(source, todo, threads, (range, iterator) -> {
+          Checksum sum = ingest
+              ? ingestRange(options, rocks, sstDir, iterator) : convertRange(rocks, iterator);
+          Checksum written = checksum(target, range);
+          if (!sum.equals(written)) {
+            throw new IllegalStateException(String.format(
+                "Convert database %s range %s mismatch, src: %s, dst: %s",
+                dbName, range, sum, written));
+          }
+          journal.put(JOURNAL_RANGE + ranges.indexOf(range), sum.encode());
+          return sum;
+        }).forEach(srcSum::add);
+        // written through the raw handle, not closed by a RocksDBImpl
+        MemoryBudget.record(dbName, rocks);
+      } finally {
+        JniDBFactory.popMemoryPool();
+      }
+      FileUtils.deleteDir(sstDir.toFile());
+    }
+
+    private boolean resumable() {
+      return safe && journal.exists()
+          && srcDbPath.toString().equals(journal.get(JOURNAL_SRC));
+    }
+
+    /**
+     * Ranges of a resumed conversion come from the journal, the source is unchanged so the
+     * converted ranges stay valid.
+     */
+    private List<KeyRange> planRanges(DBInterface source) {
+      if (journal.contains(JOURNAL_RANGES)) {
+        List<byte[]> boundaries = new ArrayList<>();
+        String value = journal.get(JOURNAL_RANGES);
+        if (!value.isEmpty()) {
+          for (String boundary : value.split(",")) {
+            boundaries.add(ByteArray.fromHexString(boundary));
+          }
+        }
+        return RangePartitioner.fromBoundaries(boundaries);
+      }
+      List<KeyRange> ranges = RangePartitioner.partition(source,
+          Math.max(1, threads) * ParallelScanner.RANGES_PER_THREAD);
+      Map<String, String> values = new HashMap<>();
+      values.put(JOURNAL_SRC, srcDbPath.toString());
+      values.put(JOURNAL_RANGES, RangePartitioner.boundaries(ranges).stream()
+          .map(ByteArray::toHexString).collect(Collectors.joining(",")));
+      journal.putAll(values);
+      return ranges;
+    }
+
+    private Checksum convertRange(RocksDB rocks, DBIterator levelIterator) throws Exception {
+      Checksum sum = new Checksum();
+      List<byte[]> keys = new ArrayList<>(BATCH);
+      List<byte[]> values = new ArrayList<>(BATCH);
+      while (levelIterator.hasNext()) {
+        Map.Entry<byte[], byte[]> entry = levelIterator.next();
+        byte[] key = entry.getKey();
+        byte[] value = entry.getValue();
+        sum.update(key, value);
+        keys.add(key);
+        values.add(value);
+        if (keys.size() >= BATCH) {
+          batchInsert(rocks, keys, values);
+        }
+      }
+      // clear
+      if (!keys.isEmpty()) {
+        batchInsert(rocks, keys, values);
+      }
+      return sum;
+    }
 
-        levelIterator.seekToFirst();
+    /**
+     * LevelDB iterates in comparator order, so the range is streamed into sst files of the
+     * target file size which are ingested into the bottom level, ranges never overlap.
+     * Nothing goes through memtable or WAL and no compaction is needed afterwards.
+     */
+    private Checksum ingestRange(Options options, RocksDB rocks, Path sstDir,
+                                 DBIterator levelIterator) throws RocksDBException {
+      // the puts of the range take the time of writing and ingesting its files, which
+      // includes streaming the range from the source
+      long start = System.nanoTime();
+      SstRange range = writeSstFiles(options, sstDir, levelIterator);
+      if (!range.files.isEmpty()) {
+        try (IngestExternalFileOptions ingestOptions = new IngestExternalFileOptions()) {
+          ingestOptions.setMoveFiles(true);
+          rocks.ingestExternalFile(range.files, ingestOptions);
+        }
+      }
+      if (metrics != null) {
+        metrics.record(DbMetrics.Op.PUT, range.sum.count, System.nanoTime() - start);
+        metrics.written(range.bytes);
+      }
+      return range.sum;
+    }
 
+    private SstRange writeSstFiles(Options options, Path sstDir,
+                                   DBIterator levelIterator)
+        throws RocksDBException {
+      SstRange range = new SstRange();
+      SstFileWriter writer = null;
+      long fileSize = 0;
+      try (EnvOptions envOptions = new EnvOptions()) {
         while (levelIterator.hasNext()) {
           Map.Entry<byte[], byte[]> entry = levelIterator.next();
-          byte[] key = entry.getKey();
-          byte[] value = entry.getValue();
-          srcDbKeyCount++;
-          srcDbKeySum = byteArrayToIntWithOne(srcDbKeySum, key);
-          srcDbValueSum = byteArrayToIntWithOne(srcDbValueSum, value);
-          keys.add(key);
-          values.add(value);
-          if (keys.size() >= BATCH) {
-            batchInsert(rocks, keys, values);
+          if (writer == null) {
+            String file = Paths.get(sstDir.toString(),
+                sstFiles.incrementAndGet() + ".sst").toString();
+            writer = new SstFileWriter(envOptions, options);
+            writer.open(file);
+            range.files.add(file);
+            fileSize = 0;
+          }
+          try (Slice key = new Slice(entry.getKey());
+               Slice value = new Slice(entry.getValue())) {
+            writer.put(key, value);
+          }
+          range.sum.update(entry.getKey(), entry.getValue());
+          fileSize += entry.getKey().length + entry.getValue().length;
+          range.bytes += entry.getKey().length + entry.getValue().length;
+          if (fileSize >= SST_FILE_SIZE) {
+            writer.finish();
+            writer.close();
+            writer = null;
           }
         }
-        // clear
-        if (!keys.isEmpty()) {
-          batchInsert(rocks, keys, values);
+        if (writer != null) {
+          writer.finish();
         }
       } finally {
-        JniDBFactory.popMemoryPool();
+        if (writer != null) {
+          writer.close();
+        }
       }
+      return range;
     }
 
     private void compact() throws RocksDBException {
@@ -306,34 +498,82 @@ public class DbConvert implements Callable<Integer> {
         logger.info("compact database {} start", this.dbName);
         rocks.compactRange();
         logger.info("compact database {} end", this.dbName);
+        MemoryBudget.record(this.dbName, rocks);
+      }
+    }
+
+    private Checksum checksum(DBInterface db, KeyRange range) throws IOException {
+      Checksum sum = new Checksum();
+      try (DBIterator iterator = db.iterator(IteratorOptions.scan(range))) {
+        iterator.seekToFirst();
+        iterator.visit((key, value) -> {
+          sum.update(key, value);
+          return true;
+        });
       }
+      return sum;
+    }
+  }
+
+  static class SstRange {
+    private final Checksum sum = new Checksum();
+    private final List<String> files = new ArrayList<>();
+    private long bytes = 0;
+  }
+
+  /**
+   * Key count and byte sums of a database, sums of disjoint ranges add up.
+   */
+  static class Checksum {
+    private long count = 0L;
+    private long keySum = 0L;
+    private long valueSum = 0L;
+
+    void update(byte[] key, byte[] value) {
+      count++;
+      keySum = byteArrayToIntWithOne(keySum, key);
+      valueSum = byteArrayToIntWithOne(valueSum, value);
     }
 
-    private boolean check() throws RocksDBException {
-      if (!safe) {
+    void add(Checksum other) {
+      count += other.count;
+      keySum += other.keySum;
+      valueSum += other.valueSum;
+    }
+
+    String encode() {
+      return count + "," + keySum + "," + valueSum;
+    }
+
+    static Checksum decode(String value) {
+      String[] parts = value.split(",");
+      Checksum sum = new Checksum();
+      sum.count = Long.parseLong(parts[0]);
+      sum.keySum = Long.parseLong(parts[1]);
+      sum.valueSum = Long.parseLong(parts[2]);
+      return sum;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("count %d, keySum %d, valueSum %d", count, keySum, valueSum);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
         return true;
       }
-      try (
-          RocksDB rocks  = DBUtils.newRocksDbReadOnly(this.dstDbPath);
-          org.rocksdb.ReadOptions r = new org.rocksdb.ReadOptions().setFillCache(false);
-          RocksIterator rocksIterator = rocks.newIterator(r)) {
-
-        // check
-        logger.info("check database {} start", this.dbName);
-        for (rocksIterator.seekToFirst(); rocksIterator.isValid(); rocksIterator.next()) {
-          byte[] key = rocksIterator.key();
-          byte[] value = rocksIterator.value();
-          dstDbKeyCount++;
-          dstDbKeySum = byteArrayToIntWithOne(dstDbKeySum, key);
-          dstDbValueSum = byteArrayToIntWithOne(dstDbValueSum, value);
-        }
-        logger.info("Check database {} end,dstDbKeyCount {}, dstDbKeySum {}, dstDbValueSum {},"
-                + "srcDbKeyCount {}, srcDbKeySum {}, srcDbValueSum {}",
-            dbName, dstDbKeyCount, dstDbKeySum, dstDbValueSum,
-            srcDbKeyCount, srcDbKeySum, srcDbValueSum);
-        return dstDbKeyCount == srcDbKeyCount && dstDbKeySum == srcDbKeySum
-            && dstDbValueSum == srcDbValueSum;
+      if (!(o instanceof Checksum)) {
+        return false;
       }
+      Checksum that = (Checksum) o;
+      return count == that.count && keySum == that.keySum && valueSum == that.valueSum;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(count, keySum, valueSum);
     }
   }
 
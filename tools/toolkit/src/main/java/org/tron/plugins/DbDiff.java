@@ -0,0 +1,309 @@
+package org.tron.plugins;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Ints;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.RocksDBException;
+import org.tron.plugins.utils.ByteArray;
+import org.tron.plugins.utils.DBUtils;
+import org.tron.plugins.utils.DbOptions;
+import org.tron.plugins.utils.JsonFormat;
+import org.tron.plugins.utils.Sha256Hash;
+import org.tron.plugins.utils.db.DBInterface;
+import org.tron.plugins.utils.db.DBIterator;
+import org.tron.plugins.utils.db.DbTool;
+import org.tron.plugins.utils.db.IteratorOptions;
+import org.tron.plugins.utils.db.KeyRange;
+import org.tron.plugins.utils.db.ParallelScanner;
+import org.tron.plugins.utils.db.RangePartitioner;
+import org.tron.protos.Protocol;
+import org.tron.protos.contract.AssetIssueContractOuterClass.AssetIssueContract;
+import org.tron.protos.contract.SmartContractOuterClass.SmartContract;
+import picocli.CommandLine;
+
+@Slf4j(topic = "db-diff")
+@CommandLine.Command(name = "diff",
+    description = "compare two databases store by store, only the key ranges whose hashes"
+        + " differ are split and hashed again, the differing keys are printed.",
+    exitCodeListHeading = "Exit Codes:%n",
+    exitCodeList = {
+        "0:no difference",
+        "1:differences found or diff failed, please check toolkit.log",
+        "404:database not exists"})
+public class DbDiff implements Callable<Integer> {
+
+  private static final int FANOUT = 16;
+  private static final int LEAF_KEYS = 1024;
+  private static final String CURRENT = "CURRENT";
+  private static final String NONE = "<none>";
+
+  private static final Map<String, Parser<? extends Message>> PARSERS =
+      ImmutableMap.<String, Parser<? extends Message>>builder()
+          .put("account", Protocol.Account.parser())
+          .put("witness", Protocol.Witness.parser())
+          .put("votes", Protocol.Votes.parser())
+          .put("block", Protocol.Block.parser())
+          .put("proposal", Protocol.Proposal.parser())
+          .put("exchange-v2", Protocol.Exchange.parser())
+          .put("DelegatedResource", Protocol.DelegatedResource.parser())
+          .put("transactionRetStore", Protocol.TransactionRet.parser())
+          .put("asset-issue-v2", AssetIssueContract.parser())
+          .put("contract", SmartContract.parser())
+          .build();
+
+  @CommandLine.Spec
+  CommandLine.Model.CommandSpec spec;
+
+  @CommandLine.Parameters(index = "0",
+      description = "left database path, such as output-directory/database")
+  private Path left;
+
+  @CommandLine.Parameters(index = "1",
+      description = "right database path")
+  private Path right;
+
+  @CommandLine.Option(names = {"--db"},
+      description = "db name to compare. Default: every db in both paths")
+  private List<String> dbs;
+
+  @CommandLine.Option(names = {"--threads"}, defaultValue = "1",
+      description = "threads to hash the ranges of each level. Default: ${DEFAULT-VALUE}")
+  private int threads;
+
+  @CommandLine.Option(names = {"--max-diffs"}, defaultValue = "100",
+      description = "stop a db after this many differing keys. Default: ${DEFAULT-VALUE}")
+  private int maxDiffs;
+
+  @CommandLine.Option(names = {"-h", "--help"}, help = true, description = "display a help message")
+  private boolean help;
+
+  @Override
+  public Integer call() throws Exception {
+    if (help) {
+      spec.commandLine().usage(System.out);
+      return 0;
+    }
+    DbOptions.use("diff", DbOptions.Profile.SCAN);
+    for (Path path : Arrays.asList(left, right)) {
+      if (!path.toFile().isDirectory()) {
+        logger.info(" {} does not exist.", path);
+        spec.commandLine().getErr().println(spec.commandLine().getColorScheme()
+            .errorText(String.format("%s does not exist.", path)));
+        return 404;
+      }
+    }
+    if (dbs == null || dbs.isEmpty()) {
+      dbs = Arrays.stream(Objects.requireNonNull(left.toFile().listFiles()))
+          .filter(f -> new File(f, CURRENT).exists())
+          .map(File::getName)
+          .filter(name -> new File(right.toFile(), name).isDirectory())
+          .sorted()
+          .collect(Collectors.toList());
+    }
+    int code = 0;
+    for (String name : dbs) {
+      if (!left.resolve(name).toFile().exists() || !right.resolve(name).toFile().exists()) {
+        spec.commandLine().getErr().println(spec.commandLine().getColorScheme()
+            .errorText(String.format("db: %s,not exists in both paths", name)));
+        code = 1;
+        continue;
+      }
+      try {
+        int diffs = diff(name);
+        spec.commandLine().getOut().format("db: %s,diffs: %d", name, diffs).println();
+        if (diffs > 0) {
+          code = 1;
+        }
+      } catch (RocksDBException | IOException | RuntimeException e) {
+        logger.error("diff db {} fail", name, e);
+        spec.commandLine().getErr().println(spec.commandLine().getColorScheme()
+            .errorText(String.format("db: %s,fail: %s", name, e.getMessage())));
+        code = 1;
+      }
+    }
+    spec.commandLine().getOut().println("diff task done.");
+    return code;
+  }
+
+  /**
+   * Hash the ranges level by level, the ranges whose count or hash differ are split into
+   * {@value #FANOUT} ranges for the next level, small or unsplittable ones are compared key
+   * by key. The first level splits by the left db, both dbs are read once for it.
+   */
+  private int diff(String name) throws IOException, RocksDBException {
+    try (DBInterface leftDb = DbTool.getReadOnlyDB(left, name);
+         DBInterface rightDb = DbTool.getReadOnlyDB(right, name)) {
+      boolean bytewise = RangePartitioner.isBytewiseOrdered(leftDb);
+      Comparator<byte[]> comparator = DBUtils.keyComparator(name);
+      List<KeyRange> level = RangePartitioner.partition(leftDb,
+          Math.max(FANOUT, threads * ParallelScanner.RANGES_PER_THREAD));
+      int diffs = 0;
+      int depth = 0;
+      while (!level.isEmpty() && diffs < maxDiffs) {
+        List<Summary> lefts = ParallelScanner.scan(leftDb, level, threads, Summary::of);
+        List<Summary> rights = ParallelScanner.scan(rightDb, level, threads, Summary::of);
+        List<KeyRange> next = new ArrayList<>();
+        int mismatched = 0;
+        for (int i = 0; i < level.size() && diffs < maxDiffs; i++) {
+          Summary l = lefts.get(i);
+          Summary r = rights.get(i);
+          if (l.equals(r)) {
+            continue;
+          }
+          mismatched++;
+          List<KeyRange> parts = bytewise && Math.max(l.count, r.count) > LEAF_KEYS
+              ? split(level.get(i), l, r) : Collections.emptyList();
+          if (parts.size() > 1) {
+            next.addAll(parts);
+          } else {
+            diffs += compare(name, leftDb, rightDb, level.get(i), comparator, maxDiffs - diffs);
+          }
+        }
+        logger.info("db: {}, depth: {}, {} of {} ranges differ.", name, depth++, mismatched,
+            level.size());
+        level = next;
+      }
+      return diffs;
+    }
+  }
+
+  private static List<KeyRange> split(KeyRange range, Summary l, Summary r) {
+    byte[] lo = min(l.first, r.first);
+    byte[] hi = l.last == null ? r.last : r.last == null ? l.last
+        : ByteArray.compareUnsigned(l.last, r.last) >= 0 ? l.last : r.last;
+    List<KeyRange> parts = new ArrayList<>();
+    byte[] start = range.getStart();
+    for (byte[] boundary : RangePartitioner.interpolate(lo, hi, FANOUT)) {
+      parts.add(new KeyRange(start, boundary));
+      start = boundary;
+    }
+    parts.add(new KeyRange(start, range.getEnd()));
+    return parts;
+  }
+
+  private static byte[] min(byte[] a, byte[] b) {
+    if (a == null || b == null) {
+      return a == null ? b : a;
+    }
+    return ByteArray.compareUnsigned(a, b) <= 0 ? a : b;
+  }
+
+  /**
+   * Merge the keys of both sides in the range and print the differing ones.
+   */
+  private int compare(String name, DBInterface leftDb, DBInterface rightDb, KeyRange range,
+                      Comparator<byte[]> comparator, int limit) throws IOException {
+    int diffs = 0;
+    try (DBIterator l = leftDb.iterator(IteratorOptions.scan(range));
+         DBIterator r = rightDb.iterator(IteratorOptions.scan(range))) {
+      l.seekToFirst();
+      r.seekToFirst();
+      while ((l.valid() || r.valid()) && diffs < limit) {
+        int c = !l.valid() ? 1 : !r.valid() ? -1 : comparator.compare(l.getKey(), r.getKey());
+        if (c < 0) {
+          print(name, l.getKey(), l.getValue(), null);
+          l.next();
+          diffs++;
+        } else if (c > 0) {
+          print(name, r.getKey(), null, r.getValue());
+          r.next();
+          diffs++;
+        } else {
+          if (!Arrays.equals(l.getValue(), r.getValue())) {
+            print(name, l.getKey(), l.getValue(), r.getValue());
+            diffs++;
+          }
+          l.next();
+          r.next();
+        }
+      }
+    }
+    return diffs;
+  }
+
+  private void print(String name, byte[] key, byte[] leftValue, byte[] rightValue) {
+    logger.info("db: {},key: {}", name, ByteArray.toHexString(key));
+    spec.commandLine().getOut().format("db: %s,key: %s%n  left: %s%n  right: %s", name,
+        ByteArray.toHexString(key), decode(name, leftValue), decode(name, rightValue))
+        .println();
+  }
+
+  private static String decode(String name, byte[] value) {
+    if (value == null) {
+      return NONE;
+    }
+    Parser<? extends Message> parser = PARSERS.get(name);
+    if (parser != null) {
+      try {
+        return JsonFormat.printToString(parser.parseFrom(value), true);
+      } catch (InvalidProtocolBufferException e) {
+        logger.debug("db: {}, value is not a {}", name, e.getMessage());
+      }
+    }
+    return ByteArray.toHexString(value);
+  }
+
+  /**
+   * Key count, bounds and content hash of a range.
+   */
+  private static class Summary {
+
+    private long count;
+    private byte[] first;
+    private byte[] last;
+    private byte[] hash;
+
+    private static Summary of(KeyRange range, DBIterator iterator) {
+      Summary summary = new Summary();
+      MessageDigest digest = Sha256Hash.newDigest();
+      iterator.visit((key, value) -> {
+        if (summary.first == null) {
+          summary.first = key;
+        }
+        summary.last = key;
+        // length prefixed, keys and values can not shift into each other
+        digest.update(Ints.toByteArray(key.length));
+        digest.update(key);
+        digest.update(Ints.toByteArray(value.length));
+        digest.update(value);
+        summary.count++;
+        return true;
+      });
+      summary.hash = digest.digest();
+      return summary;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Summary that = (Summary) o;
+      return count == that.count && Arrays.equals(hash, that.hash);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(count, Arrays.hashCode(hash));
+    }
+  }
+}
@@ -65,10 +65,13 @@ import org.tron.core.capsule.AccountCapsule;
 import org.tron.core.capsule.StorageRowCapsule;
 import org.tron.core.capsule.WitnessCapsule;
 import org.tron.plugins.utils.Constant;
+import org.tron.plugins.utils.DbOptions;
 import org.tron.plugins.utils.FileUtils;
 import org.tron.plugins.utils.db.DBInterface;
 import org.tron.plugins.utils.db.DBIterator;
+import org.tron.plugins.utils.db.DbSnapshot;
 import org.tron.plugins.utils.db.DbTool;
+import org.tron.plugins.utils.db.WriteSession;
 import org.tron.protos.Protocol.Account;
 import org.tron.protos.Protocol.AccountType;
 import org.tron.protos.Protocol.Permission;
@@ -115,15 +118,15 @@ public class DbFork implements Callable<Integer> {
   @CommandLine.Option(names = {"-h", "--help"})
   private boolean help;
 
-  private void initStore() throws IOException, RocksDBException {
-    String srcDir = database + File.separator + "database";
+  private void initStore(String srcDir, DbSnapshot snapshot)
+      throws IOException, RocksDBException {
     witnessStore = DbTool.getDB(srcDir, WITNESS_STORE);
     witnessScheduleStore = DbTool.getDB(srcDir, WITNESS_SCHEDULE_STORE);
     accountStore = DbTool.getDB(srcDir, ACCOUNT_STORE);
     dynamicPropertiesStore = DbTool.getDB(srcDir, DYNAMIC_PROPERTY_STORE);
     accountAssetStore = DbTool.getDB(srcDir, ACCOUNT_ASSET);
-    assetIssueV2Store = DbTool.getDB(srcDir, ASSET_ISSUE_V2);
-    contractStore = DbTool.getDB(srcDir, CONTRACT_STORE);
+    assetIssueV2Store = snapshot.get(ASSET_ISSUE_V2);
+    contractStore = snapshot.get(CONTRACT_STORE);
     storageRowStore = DbTool.getDB(srcDir, STORAGE_ROW_STORE);
   }
 
@@ -133,6 +136,7 @@ public class DbFork implements Callable<Integer> {
       spec.commandLine().usage(System.out);
       return 0;
     }
+    DbOptions.use("fork", DbOptions.Profile.DEFAULT);
 
     File dbFile = Paths.get(database).toFile();
     if (!dbFile.exists() || !dbFile.isDirectory()) {
@@ -155,15 +159,28 @@ public class DbFork implements Callable<Integer> {
       System.exit(-1);
     }
 
-    initStore();
+    String srcDir = database + File.separator + "database";
+    // only read by the fork, both are read at one state
+    try (DbSnapshot snapshot = DbTool.getSnapshot(srcDir, false, ASSET_ISSUE_V2,
+        CONTRACT_STORE)) {
+      initStore(srcDir, snapshot);
+      fork(forkConfig);
+    } finally {
+      DbTool.close();
+    }
+    return 0;
+  }
 
+  private void fork(Config forkConfig) throws IOException {
     if (!retain) {
       logger.info("Erase the previous witnesses and active witnesses.");
       spec.commandLine().getOut().println("Erase the previous witnesses and active witnesses.");
       witnessScheduleStore.delete(ACTIVE_WITNESSES);
-      DBIterator iterator = witnessStore.iterator();
-      for (iterator.seekToFirst(); iterator.valid(); iterator.next()) {
-        witnessStore.delete(iterator.getKey());
+      try (DBIterator iterator = witnessStore.iterator();
+           WriteSession witnessSession = witnessStore.newWriteSession()) {
+        for (iterator.seekToFirst(); iterator.valid(); iterator.next()) {
+          witnessSession.delete(iterator.getKey());
+        }
       }
     } else {
       logger.warn("Keep the previous witnesses and active witnesses.");
@@ -184,24 +201,34 @@ public class DbFork implements Callable<Integer> {
       }
 
       List<ByteString> witnessList = new ArrayList<>();
-      witnesses.stream().forEach(
-          w -> {
-            ByteString address = ByteString.copyFrom(
-                Commons.decodeFromBase58Check(w.getString(WITNESS_ADDRESS)));
-            WitnessCapsule witness = new WitnessCapsule(address);
-            witness.setIsJobs(true);
-            if (w.hasPath(WITNESS_VOTE) && w.getLong(WITNESS_VOTE) > 0) {
-              witness.setVoteCount(w.getLong(WITNESS_VOTE));
-            }
-            if (w.hasPath(WITNESS_URL)) {
-              witness.setUrl(w.getString(WITNESS_URL));
-            }
-            witnessStore.put(address.toByteArray(), witness.getData());
-            witnessList.add(witness.getAddress());
-          });
+      // written before sorting, the sort reads the vote count back from the store
+      try (WriteSession witnessSession = witnessStore.newWriteSession()) {
+        witnesses.stream().forEach(
+            w -> {
+              ByteString address = ByteString.copyFrom(
+                  Commons.decodeFromBase58Check(w.getString(WITNESS_ADDRESS)));
+              WitnessCapsule witness = new WitnessCapsule(address);
+              witness.setIsJobs(true);
+              if (w.hasPath(WITNESS_VOTE) && w.getLong(WITNESS_VOTE) > 0) {
+                witness.setVoteCount(w.getLong(WITNESS_VOTE));
+              }
+              if (w.hasPath(WITNESS_URL)) {
+                witness.setUrl(w.getString(WITNESS_URL));
+              }
+              witnessSession.put(address.toByteArray(), witness.getData());
+              witnessList.add(witness.getAddress());
+            });
+      }
 
-      witnessList.sort(Comparator.comparingLong((ByteString b) ->
-          new WitnessCapsule(witnessStore.get(b.toByteArray())).getVoteCount())
+      // one batch read instead of two point reads per comparison
+      List<byte[]> witnessValues = witnessStore.multiGet(witnessList.stream()
+          .map(ByteString::toByteArray).collect(Collectors.toList()));
+      Map<ByteString, Long> voteCounts = new HashMap<>();
+      for (int i = 0; i < witnessList.size(); i++) {
+        voteCounts.put(witnessList.get(i),
+            new WitnessCapsule(witnessValues.get(i)).getVoteCount());
+      }
+      witnessList.sort(Comparator.comparingLong((ByteString b) -> voteCounts.get(b))
           .reversed()
           .thenComparing(Comparator.comparingInt(ByteString::hashCode).reversed()));
       List<ByteString> activeWitnesses = witnessList.subList(0,
@@ -227,10 +254,21 @@ public class DbFork implements Callable<Integer> {
         spec.commandLine().getOut().println("no account listed in the config.");
       }
 
+      // read in one batch, an address listed twice reads what the first entry wrote
+      List<byte[]> addresses = new ArrayList<>(accounts.size());
+      for (Config a : accounts) {
+        addresses.add(Commons.decodeFromBase58Check(a.getString(ACCOUNT_ADDRESS)));
+      }
+      List<byte[]> values = accountStore.multiGet(addresses);
+      Map<ByteString, byte[]> accountValues = new HashMap<>();
+      for (int i = 0; i < addresses.size(); i++) {
+        accountValues.putIfAbsent(ByteString.copyFrom(addresses.get(i)), values.get(i));
+      }
+
       accounts.stream().forEach(
           a -> {
             byte[] address = Commons.decodeFromBase58Check(a.getString(ACCOUNT_ADDRESS));
-            byte[] value = accountStore.get(address);
+            byte[] value = accountValues.get(ByteString.copyFrom(address));
             Account account = null;
             try {
               account = ArrayUtils.isEmpty(value) ? null : Account.parseFrom(value);
@@ -286,6 +324,7 @@ public class DbFork implements Callable<Integer> {
             }
 
             accountStore.put(address, accountCapsule.getData());
+            accountValues.put(ByteString.copyFrom(address), accountCapsule.getData());
           });
       logger.info("{} accounts have been modified.", accounts.size());
       spec.commandLine().getOut().format("%d accounts have been modified.", accounts.size())
@@ -308,62 +347,63 @@ public class DbFork implements Callable<Integer> {
       }
 
       AtomicInteger cnt = new AtomicInteger();
+      try (WriteSession storageRowSession = storageRowStore.newWriteSession()) {
+        trc20Contracts.stream().forEach(
+            contract -> {
+              byte[] contractAddress = Commons
+                  .decodeFromBase58Check(contract.getString(TRC20_CONTRACT_ADDRESS));
+              if (contractStore.get(contractAddress) == null) {
+                spec.commandLine().getErr().format("TRC20 contract: %s not exists in the database.",
+                    contract.getString(TRC20_CONTRACT_ADDRESS)).println();
+                return;
+              }
 
-      trc20Contracts.stream().forEach(
-          contract -> {
-            byte[] contractAddress = Commons
-                .decodeFromBase58Check(contract.getString(TRC20_CONTRACT_ADDRESS));
-            if (contractStore.get(contractAddress) == null) {
-              spec.commandLine().getErr().format("TRC20 contract: %s not exists in the database.",
-                  contract.getString(TRC20_CONTRACT_ADDRESS)).println();
-              return;
-            }
-
-            SmartContract smartContract;
-            try {
-              smartContract = SmartContract.parseFrom(contractStore.get(contractAddress));
-            } catch (InvalidProtocolBufferException e) {
-              e.printStackTrace();
-              return;
-            }
-
-            int balancesSlotPosition = 0;
-            if (contract.getInt(TRC20_BALANCES_POSITION) > 0) {
-              balancesSlotPosition = contract.getInt(TRC20_BALANCES_POSITION);
-            }
-            byte[] addressWithPrefix = Commons
-                .decodeFromBase58Check(contract.getString(TRC20_ACCOUNT));
-            byte[] address = ByteArray.subArray(addressWithPrefix, 1, 21);
-            String paddedAddress = String
-                .format("%064x", new BigInteger(ByteArray.toHexString(address), 16));
-            String paddedSlot = String.format("%064x", balancesSlotPosition);
-            byte[] contractKey = Hash.sha3(ByteArray.fromHexString(
-                paddedAddress + paddedSlot));
-
-            byte[] addressHash;
-            byte[] trxHash = smartContract.getTrxHash().toByteArray();
-            if (ByteUtil.isNullOrZeroArray(trxHash)) {
-              addressHash = Hash.sha3(contractAddress);
-            } else {
-              addressHash = Hash.sha3(ByteUtil.merge(contractAddress, trxHash));
-            }
-
-            int contractVersion = smartContract.getVersion();
-            if (contractVersion == 1) {
-              contractKey = Hash.sha3(contractKey);
-            }
-            byte[] rowKey = new byte[contractKey.length];
-            arraycopy(addressHash, 0, rowKey, 0, 16);
-            arraycopy(contractKey, 16, rowKey, 16, 16);
+              SmartContract smartContract;
+              try {
+                smartContract = SmartContract.parseFrom(contractStore.get(contractAddress));
+              } catch (InvalidProtocolBufferException e) {
+                e.printStackTrace();
+                return;
+              }
 
-            String paddedBalance = String
-                .format("%064x", new BigInteger(contract.getString(TRC20_BALANCE), 10));
-            byte[] rowValue = ByteArray.fromHexString(paddedBalance);
-            StorageRowCapsule storageRowCapsule = new StorageRowCapsule(rowKey, rowValue);
+              int balancesSlotPosition = 0;
+              if (contract.getInt(TRC20_BALANCES_POSITION) > 0) {
+                balancesSlotPosition = contract.getInt(TRC20_BALANCES_POSITION);
+              }
+              byte[] addressWithPrefix = Commons
+                  .decodeFromBase58Check(contract.getString(TRC20_ACCOUNT));
+              byte[] address = ByteArray.subArray(addressWithPrefix, 1, 21);
+              String paddedAddress = String
+                  .format("%064x", new BigInteger(ByteArray.toHexString(address), 16));
+              String paddedSlot = String.format("%064x", balancesSlotPosition);
+              byte[] contractKey = Hash.sha3(ByteArray.fromHexString(
+                  paddedAddress + paddedSlot));
+
+              byte[] addressHash;
+              byte[] trxHash = smartContract.getTrxHash().toByteArray();
+              if (ByteUtil.isNullOrZeroArray(trxHash)) {
+                addressHash = Hash.sha3(contractAddress);
+              } else {
+                addressHash = Hash.sha3(ByteUtil.merge(contractAddress, trxHash));
+              }
 
-            storageRowStore.put(rowKey, storageRowCapsule.getData());
-            cnt.getAndIncrement();
-          });
+              int contractVersion = smartContract.getVersion();
+              if (contractVersion == 1) {
+                contractKey = Hash.sha3(contractKey);
+              }
+              byte[] rowKey = new byte[contractKey.length];
+              arraycopy(addressHash, 0, rowKey, 0, 16);
+              arraycopy(contractKey, 16, rowKey, 16, 16);
+
+              String paddedBalance = String
+                  .format("%064x", new BigInteger(contract.getString(TRC20_BALANCE), 10));
+              byte[] rowValue = ByteArray.fromHexString(paddedBalance);
+              StorageRowCapsule storageRowCapsule = new StorageRowCapsule(rowKey, rowValue);
+
+              storageRowSession.put(rowKey, storageRowCapsule.getData());
+              cnt.getAndIncrement();
+            });
+      }
       logger.info("{} TRC20 contracts have been modified.", cnt.get());
       spec.commandLine().getOut()
           .format("%d TRC20 contracts have been modified.", cnt.get())
@@ -402,8 +442,6 @@ public class DbFork implements Callable<Integer> {
           nextMaintenanceTime).println();
     }
 
-    DbTool.close();
-    return 0;
   }
 
   public static byte[] getActiveWitness(List<ByteString> witnesses) {
@@ -3,9 +3,8 @@ package org.tron.plugins;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.primitives.Bytes;
-import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -13,22 +12,40 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import java.util.stream.LongStream;
 import lombok.extern.slf4j.Slf4j;
 import me.tongfei.progressbar.ProgressBar;
 import org.rocksdb.RocksDBException;
 import org.tron.plugins.utils.ByteArray;
 import org.tron.plugins.utils.DBUtils;
+import org.tron.plugins.utils.DbOptions;
 import org.tron.plugins.utils.FileUtils;
+import org.tron.plugins.utils.Journal;
+import org.tron.plugins.utils.Sha256Hash;
+import org.tron.plugins.utils.db.CheckpointOverlay;
 import org.tron.plugins.utils.db.DBInterface;
 import org.tron.plugins.utils.db.DBIterator;
 import org.tron.plugins.utils.db.DbTool;
+import org.tron.plugins.utils.db.IteratorOptions;
+import org.tron.plugins.utils.db.KeyRange;
+import org.tron.plugins.utils.db.WriteSession;
+import org.tron.plugins.utils.db.WriteSessionOptions;
 import org.tron.protos.Protocol;
 import picocli.CommandLine;
 
@@ -49,7 +66,6 @@ public class DbLite implements Callable<Integer> {
   private static final String HISTORY_DIR_NAME = "history";
   private static final String INFO_FILE_NAME = "info.properties";
   private static final String BACKUP_DIR_PREFIX = ".bak_";
-  private static final String CHECKPOINT_DB = "tmp";
   private static final String BLOCK_DB_NAME = "block";
   private static final String BLOCK_INDEX_DB_NAME = "block-index";
   private static final String TRANS_DB_NAME = "trans";
@@ -57,6 +73,41 @@ public class DbLite implements Callable<Integer> {
   private static final String TRANSACTION_HISTORY_DB_NAME = "transactionHistoryStore";
   private static final String PROPERTIES_DB_NAME = "properties";
   private static final String TRANS_CACHE_DB_NAME = "trans-cache";
+  private static final String JOURNAL_SUFFIX = ".journal";
+  private static final String MERGE_JOURNAL = "merge" + JOURNAL_SUFFIX;
+
+  // journal keys, a phase key is present once the phase is done
+  private static final String JOURNAL_SOURCE = "source";
+  private static final String JOURNAL_BAK_DIR = "bak.dir";
+  private static final String JOURNAL_FILL_BLOCK = "fill.block";
+  private static final String JOURNAL_TRIM_BLOCK = "trim.block";
+  private static final String JOURNAL_SNAPSHOT_MIN = "snapshot.min";
+  private static final String JOURNAL_SNAPSHOT_MAX = "snapshot.max";
+  private static final String JOURNAL_HISTORY_MAX = "history.max";
+  private static final String PHASE_SPLIT = "phase.split";
+  private static final String PHASE_CHECKPOINT = "phase.checkpoint";
+  private static final String PHASE_FILL = "phase.fill";
+  private static final String PHASE_CHECK = "phase.check";
+  private static final String PHASE_BACKUP_COPY = "phase.backup.copy";
+  private static final String PHASE_BACKUP = "phase.backup";
+  private static final String PHASE_COPY = "phase.copy";
+  private static final String PHASE_TRIM = "phase.trim";
+  private static final String PHASE_MERGE = "phase.merge.";
+  private static final String PHASE_CLEAN = "phase.clean";
+
+  /**
+   * Blocks written or trimmed between two durable progress markers.
+   */
+  private static final long COMMIT_BLOCKS = 10_000;
+
+  /**
+   * Blocks in flight between two stages of the fill pipeline.
+   */
+  private static final int PIPELINE_QUEUE_SIZE = 256;
+  /**
+   * Blocks read with one multiGet of block-index and one of block.
+   */
+  private static final int READ_BATCH = 64;
 
   private static final List<String> archiveDbs = Arrays.asList(
       BLOCK_DB_NAME,
@@ -65,6 +116,19 @@ public class DbLite implements Callable<Integer> {
       TRANSACTION_RET_DB_NAME,
       TRANSACTION_HISTORY_DB_NAME);
 
+  /**
+   * The dataset is rebuilt from scratch on failure, so WAL is skipped and memtables
+   * are flushed when each write session closes.
+   */
+  private static final WriteSessionOptions DATASET_WRITE_OPTIONS = WriteSessionOptions.bulkLoad();
+
+  /**
+   * Merging writes into the lite database in place, keep the WAL and sync on close.
+   */
+  private static final WriteSessionOptions MERGE_WRITE_OPTIONS =
+      new WriteSessionOptions().flushSize(WriteSessionOptions.DEFAULT_FLUSH_SIZE * 4)
+          .syncOnClose(true);
+
   enum Operate { split, merge }
 
   enum Type { snapshot, history }
@@ -105,10 +169,26 @@ public class DbLite implements Callable<Integer> {
   private String datasetPath;
 
   @CommandLine.Option(
-      names = {"--help", "-h"},
+      names = {"--resume"},
+      description = "continue an interrupted split or merge from its journal,"
+          + " the finished phases are skipped.",
       order = 5)
+  private boolean resume;
+
+  @CommandLine.Option(
+      names = {"--help", "-h"},
+      order = 7)
   private boolean help;
 
+  @CommandLine.Option(
+      names = {"--threads"},
+      description = "threads to read and parse blocks, when filling the recent blocks of"
+          + " split and trimming the history of merge. Default: number of processors",
+      order = 6)
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  private Journal journal;
+
 
   @Override
   public Integer call() {
@@ -116,7 +196,11 @@ public class DbLite implements Callable<Integer> {
       spec.commandLine().usage(System.out);
       return 0;
     }
+    DbOptions.use("lite", DbOptions.Profile.BULK_WRITE);
     try {
+      if (threads <= 0) {
+        throw new IllegalArgumentException("threads must be positive: " + threads);
+      }
       switch (this.operate) {
         case split:
           if (Type.snapshot == this.type) {
@@ -153,17 +237,21 @@ public class DbLite implements Callable<Integer> {
     logger.info("Start create snapshot.");
     spec.commandLine().getOut().println("Start create snapshot.");
     long start = System.currentTimeMillis();
-    snapshotDir = Paths.get(snapshotDir, SNAPSHOT_DIR_NAME).toString();
+    journal = openJournal(Paths.get(snapshotDir, SNAPSHOT_DIR_NAME + JOURNAL_SUFFIX), sourceDir);
+    String destDir = Paths.get(snapshotDir, SNAPSHOT_DIR_NAME).toString();
     try {
-      hasEnoughBlock(sourceDir);
-      List<String> snapshotDbs = getSnapshotDbs(sourceDir);
-      split(sourceDir, snapshotDir, snapshotDbs);
-      mergeCheckpoint2Snapshot(sourceDir, snapshotDir);
+      runPhase(PHASE_SPLIT, () -> {
+        hasEnoughBlock(sourceDir);
+        List<String> snapshotDbs = getSnapshotDbs(sourceDir);
+        split(sourceDir, destDir, snapshotDbs);
+      });
+      runPhase(PHASE_CHECKPOINT, () -> mergeCheckpoint2Snapshot(sourceDir, destDir));
       // write genesisBlock , latest recent blocks and trans
-      fillSnapshotBlockAndTransDb(sourceDir, snapshotDir);
+      runPhase(PHASE_FILL, () -> fillSnapshotBlockAndTransDb(sourceDir, destDir));
       // save min block to info
-      generateInfoProperties(Paths.get(snapshotDir, INFO_FILE_NAME).toString(),
-          getSecondBlock(snapshotDir));
+      generateInfoProperties(Paths.get(destDir, INFO_FILE_NAME).toString(),
+          getSecondBlock(destDir));
+      journal.clear();
     } catch (IOException | RocksDBException e) {
       logger.error("Create snapshot failed, {}.", e.getMessage());
       spec.commandLine().getErr().println(spec.commandLine().getColorScheme()
@@ -186,18 +274,22 @@ public class DbLite implements Callable<Integer> {
     logger.info("Start create history.");
     spec.commandLine().getOut().println("Start create history.");
     long start = System.currentTimeMillis();
-    historyDir = Paths.get(historyDir, HISTORY_DIR_NAME).toString();
+    journal = openJournal(Paths.get(historyDir, HISTORY_DIR_NAME + JOURNAL_SUFFIX), sourceDir);
+    String destDir = Paths.get(historyDir, HISTORY_DIR_NAME).toString();
     try {
-      if (isLite(sourceDir)) {
-        throw new IllegalStateException(
-            String.format("Unavailable sourceDir: %s is not fullNode data.", sourceDir));
-      }
-      hasEnoughBlock(sourceDir);
-      split(sourceDir, historyDir, archiveDbs);
-      mergeCheckpoint2History(sourceDir, historyDir);
+      runPhase(PHASE_SPLIT, () -> {
+        if (isLite(sourceDir)) {
+          throw new IllegalStateException(
+              String.format("Unavailable sourceDir: %s is not fullNode data.", sourceDir));
+        }
+        hasEnoughBlock(sourceDir);
+        split(sourceDir, destDir, archiveDbs);
+      });
+      runPhase(PHASE_CHECKPOINT, () -> mergeCheckpoint2History(sourceDir, destDir));
       // save max block to info
-      generateInfoProperties(Paths.get(historyDir, INFO_FILE_NAME).toString(),
+      generateInfoProperties(Paths.get(destDir, INFO_FILE_NAME).toString(),
           getLatestBlockHeaderNum(sourceDir));
+      journal.clear();
     } catch (IOException | RocksDBException e) {
       logger.error("Create history failed, {}.", e.getMessage());
       spec.commandLine().getErr().println(spec.commandLine().getColorScheme()
@@ -220,28 +312,42 @@ public class DbLite implements Callable<Integer> {
     logger.info("Start merge history to lite node.");
     spec.commandLine().getOut().println("Start merge history to lite node.");
     long start = System.currentTimeMillis();
+    journal = openJournal(Paths.get(liteDir, MERGE_JOURNAL), historyDir);
     try {
-      // check historyDir is from lite data
-      if (isLite(historyDir)) {
-        throw new IllegalStateException(
-            String.format("Unavailable history: %s is not generated by fullNode data.",
-                historyDir));
-      }
       // 1. check block number and genesis block are compatible,
-      //    and return the block numbers of snapshot and history
-      BlockNumInfo blockNumInfo = checkAndGetBlockNumInfo(historyDir, liteDir);
+      //    and return the block numbers of snapshot and history,
+      //    after the backup they can only be read from the journal
+      runPhase(PHASE_CHECK, () -> {
+        // check historyDir is from lite data
+        if (isLite(historyDir)) {
+          throw new IllegalStateException(
+              String.format("Unavailable history: %s is not generated by fullNode data.",
+                  historyDir));
+        }
+        BlockNumInfo info = checkAndGetBlockNumInfo(historyDir, liteDir);
+        Map<String, String> values = Maps.newHashMap();
+        values.put(JOURNAL_SNAPSHOT_MIN, Long.toString(info.getSnapshotMinNum()));
+        values.put(JOURNAL_HISTORY_MAX, Long.toString(info.getHistoryMaxNum()));
+        values.put(JOURNAL_SNAPSHOT_MAX, Long.toString(info.getSnapshotMaxNum()));
+        journal.putAll(values);
+      });
+      BlockNumInfo blockNumInfo = new BlockNumInfo(
+          Long.parseLong(journal.get(JOURNAL_SNAPSHOT_MIN)),
+          Long.parseLong(journal.get(JOURNAL_HISTORY_MAX)),
+          Long.parseLong(journal.get(JOURNAL_SNAPSHOT_MAX)));
       // 2. move archive dbs to bak
-      backupArchiveDbs(liteDir);
+      runPhase(PHASE_BACKUP, () -> backupArchiveDbs(liteDir));
       // 3. copy history data to liteDir
-      copyHistory2Database(historyDir, liteDir);
+      runPhase(PHASE_COPY, () -> copyHistory2Database(historyDir, liteDir));
       // 4. delete the extra block data in history data
-      trimExtraHistory(liteDir, blockNumInfo);
+      runPhase(PHASE_TRIM, () -> trimExtraHistory(liteDir, blockNumInfo));
       // 5. merge bak to database
       mergeBak2Database(liteDir, blockNumInfo);
       // 6. delete bak dir
-      deleteBackupArchiveDbs(liteDir);
+      runPhase(PHASE_CLEAN, () -> deleteBackupArchiveDbs(liteDir));
       // 7. delete snapshot flag
       deleteSnapshotFlag(liteDir);
+      journal.clear();
     } catch (IOException | RocksDBException  e) {
       logger.error("Merge history data to database failed, {}.", e.getMessage());
       spec.commandLine().getErr().println(spec.commandLine().getColorScheme()
@@ -253,6 +359,53 @@ public class DbLite implements Callable<Integer> {
     spec.commandLine().getOut().format("Merge history finished, take %d s.", during).println();
   }
 
+  /**
+   * Open the journal of a split or merge. An existing journal means an interrupted run,
+   * which is only continued with --resume.
+   *
+   * @param file journal file
+   * @param source the source directory, must not change when resuming
+   * @return journal
+   */
+  private Journal openJournal(Path file, String source) {
+    Journal journal = new Journal(file);
+    if (journal.exists()) {
+      if (!resume) {
+        throw new IllegalStateException(String.format(
+            "Unfinished task found in %s, use --resume to continue it.", file));
+      }
+      if (!source.equals(journal.get(JOURNAL_SOURCE))) {
+        throw new IllegalStateException(String.format(
+            "Can not resume %s, it was started from %s, not %s.",
+            file, journal.get(JOURNAL_SOURCE), source));
+      }
+      logger.info("Resume from {}.", file);
+      spec.commandLine().getOut().format("Resume from %s.", file).println();
+    } else {
+      journal.put(JOURNAL_SOURCE, source);
+    }
+    return journal;
+  }
+
+  /**
+   * Run a phase unless the journal records it as done, then record it.
+   */
+  private void runPhase(String phase, Phase step) throws IOException, RocksDBException {
+    if (journal.contains(phase)) {
+      logger.info("Skip the finished {}.", phase);
+      spec.commandLine().getOut().format("Skip the finished %s.", phase).println();
+      return;
+    }
+    step.run();
+    journal.put(phase, Long.toString(System.currentTimeMillis()));
+  }
+
+  @FunctionalInterface
+  interface Phase {
+
+    void run() throws IOException, RocksDBException;
+  }
+
   private List<String> getSnapshotDbs(String sourceDir) {
     List<String> snapshotDbs = Lists.newArrayList();
     File basePath = new File(sourceDir);
@@ -279,6 +432,11 @@ public class DbLite implements Callable<Integer> {
       throw new RuntimeException(String.format("sourceDir: %s must be a directory ", sourceDir));
     }
     File destPath = new File(destDir);
+    if (resume && destPath.exists()) {
+      // a partial copy of the interrupted run
+      logger.info("Remove the unfinished {}.", destDir);
+      FileUtils.deleteDir(destPath);
+    }
     if (new File(destDir).exists()) {
       throw new RuntimeException(String.format(
           "destDir: %s is already exist, please remove it first", destDir));
@@ -293,16 +451,10 @@ public class DbLite implements Callable<Integer> {
     logger.info("Begin to merge checkpoint to dataset.");
     spec.commandLine().getOut().println("Begin to merge checkpoint to dataset.");
     try {
-      List<String> cpList = getCheckpointV2List(sourceDir);
-      if (cpList.size() > 0) {
-        for (String cp : cpList) {
-          DBInterface checkpointDb = DbTool.getDB(
-              sourceDir + "/" + DBUtils.CHECKPOINT_DB_V2, cp);
-          recover(checkpointDb, destDir, destDbs);
-        }
-      } else if (Paths.get(sourceDir, CHECKPOINT_DB).toFile().exists()) {
-        DBInterface tmpDb = DbTool.getDB(sourceDir, CHECKPOINT_DB);
-        recover(tmpDb, destDir, destDbs);
+      for (Path cp : CheckpointOverlay.checkpoints(sourceDir)) {
+        DBInterface checkpointDb = DbTool.getReadOnlyDB(cp.getParent().toString(),
+            cp.getFileName().toString());
+        recover(checkpointDb, destDir, destDbs);
       }
     } catch (IOException | RocksDBException e) {
       throw new RuntimeException(e);
@@ -311,7 +463,8 @@ public class DbLite implements Callable<Integer> {
 
   private void recover(DBInterface db, String destDir, List<String> destDbs)
       throws IOException, RocksDBException {
-    try (DBIterator iterator = db.iterator()) {
+    Map<String, WriteSession> sessions = Maps.newHashMap();
+    try (DBIterator iterator = db.iterator(IteratorOptions.scan(KeyRange.all()))) {
       for (iterator.seekToFirst(); iterator.hasNext(); iterator.next()) {
         byte[] key = iterator.getKey();
         byte[] value = iterator.getValue();
@@ -324,19 +477,25 @@ public class DbLite implements Callable<Integer> {
         byte[] realValue =
             value.length == 1 ? null : Arrays.copyOfRange(value, 1, value.length);
         if (destDbs != null && destDbs.contains(dbName)) {
-          DBInterface destDb = DbTool.getDB(destDir, dbName);
+          WriteSession destSession = sessions.get(dbName);
+          if (destSession == null) {
+            destSession = DbTool.getDB(destDir, dbName).newWriteSession(DATASET_WRITE_OPTIONS);
+            sessions.put(dbName, destSession);
+          }
           if (realValue != null) {
-            destDb.put(realKey, realValue);
+            destSession.put(realKey, realValue);
           } else {
             byte op = value[0];
             if (DBUtils.Operator.DELETE.getValue() == op) {
-              destDb.delete(realKey);
+              destSession.delete(realKey);
             } else {
-              destDb.put(realKey, new byte[0]);
+              destSession.put(realKey, new byte[0]);
             }
           }
         }
       }
+    } finally {
+      sessions.values().forEach(WriteSession::close);
     }
   }
 
@@ -353,30 +512,15 @@ public class DbLite implements Callable<Integer> {
   }
 
   private long getLatestBlockHeaderNum(String databaseDir) throws IOException, RocksDBException {
-    // query latest_block_header_number from checkpoint first
-    final String latestBlockHeaderNumber = "latest_block_header_number";
-    DBInterface checkpointDb = getCheckpointDb(databaseDir);
-    Long blockNumber = getLatestBlockHeaderNumFromCP(checkpointDb,
-        latestBlockHeaderNumber.getBytes());
-    if (blockNumber != null) {
-      return blockNumber;
-    }
-    // query from propertiesDb if checkpoint not contains latest_block_header_number
-    DBInterface propertiesDb = DbTool.getDB(databaseDir, PROPERTIES_DB_NAME);
-    return Optional.ofNullable(propertiesDb.get(ByteArray.fromString(latestBlockHeaderNumber)))
+    // the checkpoint view serves latest_block_header_number from the checkpoints first
+    DBInterface propertiesDb = DbTool.getCheckpointView(databaseDir, PROPERTIES_DB_NAME);
+    return Optional.ofNullable(propertiesDb.get(ByteArray.fromString(
+            "latest_block_header_number")))
             .map(ByteArray::toLong)
             .orElseThrow(
                 () -> new IllegalArgumentException("not found latest block header number"));
   }
 
-  private Long getLatestBlockHeaderNumFromCP(DBInterface db, byte[] key) {
-    byte[] value = db.get(Bytes.concat(simpleEncode(PROPERTIES_DB_NAME), key));
-    if (value != null && value.length > 1) {
-      return ByteArray.toLong(Arrays.copyOfRange(value, 1, value.length));
-    }
-    return null;
-  }
-
   /**
    * recent blocks, trans and genesis block.
    */
@@ -385,45 +529,181 @@ public class DbLite implements Callable<Integer> {
     logger.info("Begin to fill {} block, genesis block and trans to snapshot.", RECENT_BLKS);
     spec.commandLine().getOut().format(
         "Begin to fill %d block, genesis block and trans to snapshot.", RECENT_BLKS).println();
-    DBInterface sourceBlockIndexDb = DbTool.getDB(sourceDir, BLOCK_INDEX_DB_NAME);
-    DBInterface sourceBlockDb = DbTool.getDB(sourceDir, BLOCK_DB_NAME);
+    DBInterface sourceBlockIndexDb = DbTool.getReadOnlyDB(sourceDir, BLOCK_INDEX_DB_NAME);
+    DBInterface sourceBlockDb = DbTool.getReadOnlyDB(sourceDir, BLOCK_DB_NAME);
     // init snapshot db ,keep engine same as source
     DBInterface destBlockDb = DbTool.getDB(sourceDir, snapshotDir, BLOCK_DB_NAME);
     DBInterface destBlockIndexDb = DbTool.getDB(sourceDir, snapshotDir, BLOCK_INDEX_DB_NAME);
     DBInterface destTransDb = DbTool.getDB(sourceDir, snapshotDir, TRANS_DB_NAME);
-    // put genesis block and block-index into snapshot
-    long genesisBlockNum = 0L;
-    byte[] genesisBlockID = sourceBlockIndexDb.get(ByteArray.fromLong(genesisBlockNum));
-    destBlockIndexDb.put(ByteArray.fromLong(genesisBlockNum), genesisBlockID);
-    destBlockDb.put(genesisBlockID, sourceBlockDb.get(genesisBlockID));
-
+    // the views serve the checkpoint contents first, deleted keys read as null
+    DBInterface blockIndexView = DbTool.getCheckpointView(sourceDir, BLOCK_INDEX_DB_NAME);
+    DBInterface blockView = DbTool.getCheckpointView(sourceDir, BLOCK_DB_NAME);
     long latestBlockNum = getLatestBlockHeaderNum(sourceDir);
     long startIndex = latestBlockNum - RECENT_BLKS + 1;
-    // put the recent blocks and trans in snapshot
-    ProgressBar.wrap(LongStream.rangeClosed(startIndex, latestBlockNum), "fillBlockAndTrans")
-        .forEach(blockNum ->  {
-          try {
-            byte[] blockId = getDataFromSourceDB(sourceDir, BLOCK_INDEX_DB_NAME,
-                Longs.toByteArray(blockNum));
-            byte[] block = getDataFromSourceDB(sourceDir, BLOCK_DB_NAME, blockId);
+    String committed = journal.get(JOURNAL_FILL_BLOCK);
+    long from = committed == null ? startIndex : Long.parseLong(committed) + 1;
+    // put the recent blocks and trans in snapshot, the sessions are closed at every
+    // commit so the written blocks are durable before the progress is recorded
+    ExecutorService executor = Executors.newFixedThreadPool(threads * 2,
+        new ThreadFactoryBuilder().setNameFormat("fill-%d").setDaemon(true).build());
+    try (ProgressBar bar = new ProgressBar("fillBlockAndTrans", RECENT_BLKS)) {
+      bar.stepTo(from - startIndex);
+      for (long chunkStart = from; chunkStart <= latestBlockNum; chunkStart += COMMIT_BLOCKS) {
+        long chunkEnd = Math.min(latestBlockNum, chunkStart + COMMIT_BLOCKS - 1);
+        try (WriteSession blockSession = destBlockDb.newWriteSession(DATASET_WRITE_OPTIONS);
+             WriteSession blockIndexSession =
+                 destBlockIndexDb.newWriteSession(DATASET_WRITE_OPTIONS);
+             WriteSession transSession = destTransDb.newWriteSession(DATASET_WRITE_OPTIONS)) {
+          if (chunkStart == startIndex) {
+            // put genesis block and block-index into snapshot
+            long genesisBlockNum = 0L;
+            byte[] genesisBlockID = sourceBlockIndexDb.get(ByteArray.fromLong(genesisBlockNum));
+            blockIndexSession.put(ByteArray.fromLong(genesisBlockNum), genesisBlockID);
+            blockSession.put(genesisBlockID, sourceBlockDb.get(genesisBlockID));
+          }
+          readBlocks(executor, chunkStart, chunkEnd, (first, last) ->
+              readBlockBatch(blockIndexView, blockView, first, last, true), block -> {
             // put block
-            destBlockDb.put(blockId, block);
+            blockSession.put(block.id, block.data);
             // put block index
-            destBlockIndexDb.put(ByteArray.fromLong(blockNum), blockId);
+            blockIndexSession.put(ByteArray.fromLong(block.num), block.id);
             // put trans
-            long finalBlockNum = blockNum;
-            Protocol.Block.parseFrom(block).getTransactionsList().stream().map(
-                tc -> DBUtils.getTransactionId(tc).getBytes())
-                .map(bytes -> Maps.immutableEntry(bytes, Longs.toByteArray(finalBlockNum)))
-                .forEach(e -> destTransDb.put(e.getKey(), e.getValue()));
-          } catch (IOException | RocksDBException e) {
-            throw new RuntimeException(e.getMessage());
-          }
-        });
+            byte[] blockNumBytes = Longs.toByteArray(block.num);
+            block.transactionIds.forEach(id -> transSession.put(id, blockNumBytes));
+            bar.step();
+          });
+        }
+        journal.put(JOURNAL_FILL_BLOCK, Long.toString(chunkEnd));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
     // copy engine.properties for block、block-index、trans from source if exist
     copyEngineIfExist(sourceDir, snapshotDir, BLOCK_DB_NAME, BLOCK_INDEX_DB_NAME, TRANS_DB_NAME);
   }
 
+  /**
+   * Read blocks [from, to] through a bounded pipeline: {@code threads} readers, each on its
+   * own part of the range, feed {@code threads} parsers that hash the transactions, the
+   * parsed blocks are handed to the writer on the calling thread in no particular order.
+   *
+   * @param executor pool of at least 2 * threads threads
+   * @param from first block
+   * @param to last block
+   * @param reader reads a batch of consecutive blocks, a block without data is passed on
+   *     unparsed
+   * @param writer consumes every block once, on the calling thread
+   */
+  private void readBlocks(ExecutorService executor, long from, long to, BlockReader reader,
+                          Consumer<PipelineBlock> writer) throws IOException {
+    BlockingQueue<PipelineBlock> read = new ArrayBlockingQueue<>(PIPELINE_QUEUE_SIZE);
+    BlockingQueue<PipelineBlock> parsed = new ArrayBlockingQueue<>(PIPELINE_QUEUE_SIZE);
+    long total = to - from + 1;
+    int readers = (int) Math.min(threads, total);
+    long step = (total + readers - 1) / readers;
+    AtomicInteger readersLeft = new AtomicInteger(readers);
+    List<Future<?>> stages = Lists.newArrayList();
+    for (int i = 0; i < readers; i++) {
+      long rangeStart = from + i * step;
+      long rangeEnd = Math.min(to, rangeStart + step - 1);
+      stages.add(executor.submit(() -> {
+        try {
+          for (long num = rangeStart; num <= rangeEnd; num += READ_BATCH) {
+            for (PipelineBlock block : reader.read(num, Math.min(rangeEnd, num + READ_BATCH - 1))) {
+              read.put(block);
+            }
+          }
+        } finally {
+          if (readersLeft.decrementAndGet() == 0) {
+            for (int j = 0; j < threads; j++) {
+              read.put(PipelineBlock.END);
+            }
+          }
+        }
+        return null;
+      }));
+    }
+    for (int i = 0; i < threads; i++) {
+      stages.add(executor.submit(() -> {
+        for (PipelineBlock block = read.take(); block != PipelineBlock.END;
+             block = read.take()) {
+          if (block.data != null) {
+            for (Protocol.Transaction tc : Protocol.Block.parseFrom(block.data)
+                .getTransactionsList()) {
+              block.transactionIds.add(Sha256Hash.hash(true, tc.getRawData().toByteArray()));
+            }
+          }
+          parsed.put(block);
+        }
+        return null;
+      }));
+    }
+    try {
+      for (long written = 0; written < total; ) {
+        PipelineBlock block = parsed.poll(1, TimeUnit.SECONDS);
+        if (block == null) {
+          checkStages(stages);
+          continue;
+        }
+        writer.accept(block);
+        written++;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Blocks [first, last] with two batched reads, the ids from block-index, then the blocks.
+   *
+   * @param required whether a missing id or block is an error, otherwise the block is passed
+   *     on with whatever was found
+   */
+  private static List<PipelineBlock> readBlockBatch(DBInterface blockIndexDb, DBInterface blockDb,
+                                                    long first, long last, boolean required) {
+    List<byte[]> nums = Lists.newArrayListWithCapacity((int) (last - first + 1));
+    for (long num = first; num <= last; num++) {
+      nums.add(ByteArray.fromLong(num));
+    }
+    List<byte[]> ids = blockIndexDb.multiGet(nums);
+    Iterator<byte[]> data = blockDb.multiGet(ids.stream().filter(Objects::nonNull)
+        .collect(Collectors.toList())).iterator();
+    List<PipelineBlock> blocks = Lists.newArrayListWithCapacity(ids.size());
+    for (int i = 0; i < ids.size(); i++) {
+      byte[] id = ids.get(i);
+      byte[] block = id == null ? null : data.next();
+      if (required && (isEmptyBytes(id) || isEmptyBytes(block))) {
+        throw new RuntimeException(String.format("data not found in store, dbName: %s, key: %s",
+            isEmptyBytes(id) ? BLOCK_INDEX_DB_NAME : BLOCK_DB_NAME,
+            Arrays.toString(isEmptyBytes(id) ? nums.get(i) : id)));
+      }
+      blocks.add(new PipelineBlock(first + i, id, block));
+    }
+    return blocks;
+  }
+
+  private static void checkStages(List<Future<?>> stages) throws IOException {
+    for (Future<?> stage : stages) {
+      if (!stage.isDone()) {
+        continue;
+      }
+      try {
+        stage.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw cause instanceof RuntimeException
+            ? (RuntimeException) cause : new RuntimeException(cause);
+      }
+    }
+  }
+
   private void copyEngineIfExist(String source, String dest, String... dbNames) {
     for (String dbName : dbNames) {
       Path ori = Paths.get(source, dbName, DBUtils.FILE_ENGINE);
@@ -435,7 +715,7 @@ public class DbLite implements Callable<Integer> {
 
   private byte[] getGenesisBlockHash(String parentDir) throws IOException, RocksDBException {
     long genesisBlockNum = 0L;
-    DBInterface blockIndexDb = DbTool.getDB(parentDir, BLOCK_INDEX_DB_NAME);
+    DBInterface blockIndexDb = DbTool.getReadOnlyDB(parentDir, BLOCK_INDEX_DB_NAME);
     byte[] result = blockIndexDb.get(ByteArray.fromLong(genesisBlockNum));
     // when merge history, block-index db will be moved to bak dir and replaced by history
     // so should close this db and reopen it.
@@ -443,15 +723,6 @@ public class DbLite implements Callable<Integer> {
     return result;
   }
 
-  private static byte[] simpleEncode(String s) {
-    byte[] bytes = s.getBytes();
-    byte[] length = Ints.toByteArray(bytes.length);
-    byte[] r = new byte[4 + bytes.length];
-    System.arraycopy(length, 0, r, 0, 4);
-    System.arraycopy(bytes, 0, r, 4, bytes.length);
-    return r;
-  }
-
   private BlockNumInfo checkAndGetBlockNumInfo(String historyDir, String liteDir)
           throws IOException, RocksDBException {
     logger.info("Check the compatibility of this history.");
@@ -488,20 +759,39 @@ public class DbLite implements Callable<Integer> {
     return new BlockNumInfo(snapshotMinNum, historyMaxNum, snapshotMaxNum);
   }
 
-  private void backupArchiveDbs(String databaseDir) throws IOException {
-    Path bakDir = Paths.get(databaseDir, BACKUP_DIR_PREFIX + START_TIME);
+  /**
+   * The bak dir is named once and kept in the journal, a resumed merge uses the same one.
+   */
+  private Path getBakDir(String liteDir) {
+    String bakDir = journal.get(JOURNAL_BAK_DIR);
+    if (bakDir == null) {
+      bakDir = BACKUP_DIR_PREFIX + START_TIME;
+      journal.put(JOURNAL_BAK_DIR, bakDir);
+    }
+    return Paths.get(liteDir, bakDir);
+  }
+
+  private void backupArchiveDbs(String databaseDir) throws IOException, RocksDBException {
+    Path bakDir = getBakDir(databaseDir);
     logger.info("Backup the archive dbs to {}.", bakDir);
     spec.commandLine().getOut().format("Backup the archive dbs to %s.", bakDir).println();
-    if (!FileUtils.createDirIfNotExists(bakDir.toString())) {
-      throw new RuntimeException(String.format("create bak dir %s failed", bakDir));
-    }
-    FileUtils.copyDatabases(Paths.get(databaseDir), bakDir, archiveDbs);
+    // the originals are only deleted after the copy is recorded,
+    // so an unfinished copy can always be redone
+    runPhase(PHASE_BACKUP_COPY, () -> {
+      FileUtils.deleteDir(bakDir.toFile());
+      if (!FileUtils.createDirIfNotExists(bakDir.toString())) {
+        throw new RuntimeException(String.format("create bak dir %s failed", bakDir));
+      }
+      FileUtils.copyDatabases(Paths.get(databaseDir), bakDir, archiveDbs);
+    });
     archiveDbs.forEach(db -> FileUtils.deleteDir(new File(databaseDir, db)));
   }
 
   private void copyHistory2Database(String historyDir, String databaseDir) throws IOException {
     logger.info("Begin to copy history to database.");
     spec.commandLine().getOut().println("Begin to copy history to database.");
+    // the archive dbs are in bak, anything here is an unfinished copy
+    archiveDbs.forEach(db -> FileUtils.deleteDir(new File(databaseDir, db)));
     FileUtils.copyDatabases(Paths.get(historyDir), Paths.get(databaseDir), archiveDbs);
   }
 
@@ -524,26 +814,45 @@ public class DbLite implements Callable<Integer> {
     DBInterface tranRetDb = DbTool.getDB(liteDir, TRANSACTION_RET_DB_NAME);
 
 
-    ProgressBar.wrap(LongStream.rangeClosed(start, end)
-        .boxed()
-        .sorted((a, b) -> Long.compare(b, a)), "trimHistory").forEach(n -> {
-          try {
-            byte[] blockIdHash = blockIndexDb.get(ByteArray.fromLong(n));
-            Protocol.Block block = Protocol.Block.parseFrom(blockDb.get(blockIdHash));
+    // trim from the end down, the lowest trimmed block of every commit is recorded.
+    // block-index and transactionRetStore are keyed by block number, a chunk of them is
+    // one range delete, the blocks are read and parsed in parallel for the block ids and
+    // transaction ids
+    String committed = journal.get(JOURNAL_TRIM_BLOCK);
+    long to = committed == null ? end : Long.parseLong(committed) - 1;
+    ExecutorService executor = Executors.newFixedThreadPool(threads * 2,
+        new ThreadFactoryBuilder().setNameFormat("trim-%d").setDaemon(true).build());
+    try (ProgressBar bar = new ProgressBar("trimHistory", end - start + 1)) {
+      bar.stepTo(end - to);
+      for (long chunkEnd = to; chunkEnd >= start; chunkEnd -= COMMIT_BLOCKS) {
+        long chunkStart = Math.max(start, chunkEnd - COMMIT_BLOCKS + 1);
+        try (WriteSession blockIndexSession = blockIndexDb.newWriteSession(MERGE_WRITE_OPTIONS);
+             WriteSession blockSession = blockDb.newWriteSession(MERGE_WRITE_OPTIONS);
+             WriteSession transSession = transDb.newWriteSession(MERGE_WRITE_OPTIONS);
+             WriteSession tranRetSession = tranRetDb.newWriteSession(MERGE_WRITE_OPTIONS)) {
+          // blocks already trimmed by the interrupted run have no id
+          readBlocks(executor, chunkStart, chunkEnd, (first, last) ->
+              readBlockBatch(blockIndexDb, blockDb, first, last, false), block -> {
             // delete transactions
-            for (Protocol.Transaction e : block.getTransactionsList()) {
-              transDb.delete(DBUtils.getTransactionId(e).getBytes());
+            block.transactionIds.forEach(transSession::delete);
+            if (block.id != null) {
+              // delete block
+              blockSession.delete(block.id);
             }
-            // delete transaction result
-            tranRetDb.delete(ByteArray.fromLong(n));
-            // delete block
-            blockDb.delete(blockIdHash);
-            // delete block index
-            blockIndexDb.delete(ByteArray.fromLong(n));
-          } catch (IOException e) {
-            throw new RuntimeException(e);
-          }
-        });
+            bar.step();
+          });
+          byte[] rangeStart = ByteArray.fromLong(chunkStart);
+          byte[] rangeEnd = ByteArray.fromLong(chunkEnd + 1);
+          // delete transaction result
+          tranRetSession.deleteRange(rangeStart, rangeEnd);
+          // delete block index, after the blocks are read
+          blockIndexSession.deleteRange(rangeStart, rangeEnd);
+        }
+        journal.put(JOURNAL_TRIM_BLOCK, Long.toString(chunkStart));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
   }
 
   private void mergeBak2Database(String liteDir, BlockNumInfo blockNumInfo) throws
@@ -559,50 +868,39 @@ public class DbLite implements Callable<Integer> {
     }
 
 
-    Path bakDir = Paths.get(liteDir, BACKUP_DIR_PREFIX + START_TIME);
+    Path bakDir = getBakDir(liteDir);
     logger.info("Begin to merge {} to database, start {} end {}.", bakDir, start, end);
     spec.commandLine().getOut()
         .format("Begin to merge %s to database, start %d end %d.", bakDir, start, end).println();
-    byte[] head = ByteArray.fromLong(start);
-    // use seek to skip
+    // block numbers lead the keys of block, block-index and transactionRetStore, the engine
+    // stops at the end, the transaction dbs are keyed by hash and are merged whole
+    KeyRange blocks = new KeyRange(ByteArray.fromLong(start), ByteArray.fromLong(end + 1));
     archiveDbs.stream().parallel().forEach(dbName -> {
+      if (journal.contains(PHASE_MERGE + dbName)) {
+        logger.info("Skip the finished merge of {}.", dbName);
+        return;
+      }
       try {
-        DBInterface bakDb = DbTool.getDB(bakDir.toString(), dbName);
+        DBInterface bakDb = DbTool.getReadOnlyDB(bakDir.toString(), dbName);
         DBInterface destDb = DbTool.getDB(liteDir, dbName);
-        try (DBIterator iterator = bakDb.iterator()) {
-          if (TRANS_DB_NAME.equals(dbName) || TRANSACTION_HISTORY_DB_NAME.equals(dbName)) {
-            iterator.seekToFirst();
-          } else {
-            iterator.seek(head);
-          }
-          iterator.forEachRemaining(e -> destDb.put(e.getKey(), e.getValue()));
+        boolean byHash = TRANS_DB_NAME.equals(dbName)
+            || TRANSACTION_HISTORY_DB_NAME.equals(dbName);
+        try (DBIterator iterator = bakDb.iterator(
+            IteratorOptions.scan(byHash ? KeyRange.all() : blocks));
+             WriteSession destSession = destDb.newWriteSession(MERGE_WRITE_OPTIONS)) {
+          iterator.seekToFirst();
+          iterator.visit((key, value) -> {
+            destSession.put(key, value);
+            return true;
+          });
         }
+        journal.put(PHASE_MERGE + dbName, Long.toString(System.currentTimeMillis()));
       } catch (IOException | RocksDBException e) {
         throw new RuntimeException(e);
       }
     });
   }
 
-  private byte[] getDataFromSourceDB(String sourceDir, String dbName, byte[] key)
-          throws IOException, RocksDBException {
-    DBInterface sourceDb = DbTool.getDB(sourceDir, dbName);
-    DBInterface checkpointDb = getCheckpointDb(sourceDir);
-    // get data from tmp first.
-    byte[] valueFromTmp = checkpointDb.get(Bytes.concat(simpleEncode(dbName), key));
-    byte[] value;
-    if (isEmptyBytes(valueFromTmp)) {
-      value = sourceDb.get(key);
-    } else {
-      value = valueFromTmp.length == 1
-          ? null : Arrays.copyOfRange(valueFromTmp, 1, valueFromTmp.length);
-    }
-    if (isEmptyBytes(value)) {
-      throw new RuntimeException(String.format("data not found in store, dbName: %s, key: %s",
-              dbName, Arrays.toString(key)));
-    }
-    return value;
-  }
-
   /**
    * return true if byte array is null or length is 0.
    *
@@ -619,12 +917,12 @@ public class DbLite implements Callable<Integer> {
   private void deleteSnapshotFlag(String databaseDir) throws IOException, RocksDBException {
     logger.info("Delete the info file from {}.", databaseDir);
     spec.commandLine().getOut().format("Delete the info file from %s.", databaseDir).println();
-    Files.delete(Paths.get(databaseDir, INFO_FILE_NAME));
+    Files.deleteIfExists(Paths.get(databaseDir, INFO_FILE_NAME));
   }
 
   private void deleteBackupArchiveDbs(String liteDir) throws IOException, RocksDBException {
 
-    Path bakDir = Paths.get(liteDir, BACKUP_DIR_PREFIX + START_TIME);
+    Path bakDir = getBakDir(liteDir);
     logger.info("Begin to delete bak dir {}.", bakDir);
     spec.commandLine().getOut().format("Begin to delete bak dir %s.", bakDir).println();
     if (FileUtils.deleteDir(bakDir.toFile())) {
@@ -655,28 +953,17 @@ public class DbLite implements Callable<Integer> {
 
   private long getSecondBlock(String databaseDir) throws RocksDBException, IOException {
     long num = 0;
-    DBInterface sourceBlockIndexDb = DbTool.getDB(databaseDir, BLOCK_INDEX_DB_NAME);
-    DBIterator iterator = sourceBlockIndexDb.iterator();
-    iterator.seek(ByteArray.fromLong(1));
-    if (iterator.hasNext()) {
-      num =  Longs.fromByteArray(iterator.getKey());
+    DBInterface sourceBlockIndexDb = DbTool.getReadOnlyDB(databaseDir, BLOCK_INDEX_DB_NAME);
+    try (DBIterator iterator = sourceBlockIndexDb.iterator(new IteratorOptions()
+        .range(new KeyRange(ByteArray.fromLong(1), null)))) {
+      iterator.seekToFirst();
+      if (iterator.hasNext()) {
+        num = Longs.fromByteArray(iterator.getKey());
+      }
     }
     return num;
   }
 
-  private DBInterface getCheckpointDb(String sourceDir) throws IOException, RocksDBException {
-    List<String> cpList = getCheckpointV2List(sourceDir);
-    DBInterface checkpointDb;
-    if (cpList.size() > 0) {
-      String latestCp = cpList.get(cpList.size() - 1);
-      checkpointDb = DbTool.getDB(
-          sourceDir + "/" + DBUtils.CHECKPOINT_DB_V2, latestCp);
-    } else {
-      checkpointDb = DbTool.getDB(sourceDir, CHECKPOINT_DB);
-    }
-    return checkpointDb;
-  }
-
   @VisibleForTesting
   public static void setRecentBlks(long recentBlks) {
     RECENT_BLKS = recentBlks;
@@ -687,13 +974,25 @@ public class DbLite implements Callable<Integer> {
     RECENT_BLKS = 65536;
   }
 
-  private List<String> getCheckpointV2List(String sourceDir) {
-    File file = new File(Paths.get(sourceDir, DBUtils.CHECKPOINT_DB_V2).toString());
-    if (file.exists() && file.isDirectory() && file.list() != null) {
-      return Arrays.stream(Objects.requireNonNull(file.list())).sorted()
-          .collect(Collectors.toList());
+  @FunctionalInterface
+  private interface BlockReader {
+    List<PipelineBlock> read(long first, long last) throws IOException, RocksDBException;
+  }
+
+  static class PipelineBlock {
+
+    private static final PipelineBlock END = new PipelineBlock(-1, null, null);
+
+    private final long num;
+    private final byte[] id;
+    private final byte[] data;
+    private final List<byte[]> transactionIds = Lists.newArrayList();
+
+    PipelineBlock(long num, byte[] id, byte[] data) {
+      this.num = num;
+      this.id = id;
+      this.data = data;
     }
-    return Lists.newArrayList();
   }
 
   static class BlockNumInfo {
@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -54,11 +55,13 @@ import org.tron.core.capsule.VotesCapsule;
 import org.tron.core.capsule.WitnessCapsule;
 import org.tron.core.exception.BadItemException;
 import org.tron.core.store.DelegationStore;
-import org.tron.plugins.utils.FileUtils;
+import org.tron.plugins.utils.DbOptions;
 import org.tron.plugins.utils.JsonFormat;
 import org.tron.plugins.utils.db.DBInterface;
 import org.tron.plugins.utils.db.DBIterator;
+import org.tron.plugins.utils.db.DbSnapshot;
 import org.tron.plugins.utils.db.DbTool;
+import org.tron.plugins.utils.db.ParallelScanner;
 import org.tron.protos.Protocol.Transaction.Contract.ContractType;
 import org.tron.protos.contract.WitnessContract.VoteWitnessContract;
 import picocli.CommandLine;
@@ -73,6 +76,8 @@ import picocli.CommandLine.Command;
         "n:Internal error: exception occurred, please check logs/toolkit.log"})
 public class DbQuery implements Callable<Integer> {
 
+  private static final int READ_BATCH = 64;
+
   @CommandLine.Spec
   CommandLine.Model.CommandSpec spec;
 
@@ -87,6 +92,11 @@ public class DbQuery implements Callable<Integer> {
           + " Default: ${DEFAULT-VALUE}")
   private String config;
 
+  @CommandLine.Option(names = {"--threads"},
+      defaultValue = "1",
+      description = "threads to scan the votes store. Default: ${DEFAULT-VALUE}")
+  private int threads;
+
   @CommandLine.Option(names = {"-h", "--help"})
   private boolean help;
 
@@ -97,6 +107,7 @@ public class DbQuery implements Callable<Integer> {
   private DBInterface blockStore;
   private DBInterface accountStore;
   private DBInterface delegationStore;
+  private DbSnapshot snapshot;
 
   boolean allWitness = false;
   List<String> witnessList = new ArrayList<>();
@@ -106,15 +117,23 @@ public class DbQuery implements Callable<Integer> {
   List<String> rewardAddressList = new ArrayList<>();
   Map<String, BigInteger> latestWitnessVi = new HashMap<>();
 
+  /**
+   * Read only, the stores are snapshots of checkpoint views, so the unflushed checkpoints
+   * are queried too, the database is left as the node wrote it, and all stores are read
+   * at one state even if the database is written meanwhile.
+   */
   private void initStore() throws IOException, RocksDBException {
     String srcDir = database + File.separator + "database";
-    witnessStore = DbTool.getDB(srcDir, WITNESS_STORE);
-    votesStore = DbTool.getDB(srcDir, VOTES_STORE);
-    dynamicPropertiesStore = DbTool.getDB(srcDir, DYNAMIC_PROPERTY_STORE);
-    blockIndexStore = DbTool.getDB(srcDir, BLOCK_INDEX_STORE);
-    blockStore = DbTool.getDB(srcDir, BLOCK_STORE);
-    accountStore = DbTool.getDB(srcDir, ACCOUNT_STORE);
-    delegationStore = DbTool.getDB(srcDir, DELEGATION_STORE);
+    snapshot = DbTool.getSnapshot(srcDir, true, WITNESS_STORE, VOTES_STORE,
+        DYNAMIC_PROPERTY_STORE, BLOCK_INDEX_STORE, BLOCK_STORE, ACCOUNT_STORE,
+        DELEGATION_STORE);
+    witnessStore = snapshot.get(WITNESS_STORE);
+    votesStore = snapshot.get(VOTES_STORE);
+    dynamicPropertiesStore = snapshot.get(DYNAMIC_PROPERTY_STORE);
+    blockIndexStore = snapshot.get(BLOCK_INDEX_STORE);
+    blockStore = snapshot.get(BLOCK_STORE);
+    accountStore = snapshot.get(ACCOUNT_STORE);
+    delegationStore = snapshot.get(DELEGATION_STORE);
   }
 
 
@@ -124,6 +143,7 @@ public class DbQuery implements Callable<Integer> {
       spec.commandLine().usage(System.out);
       return 0;
     }
+    DbOptions.use("query", DbOptions.Profile.POINT_READ);
 
     Config queryConfig;
     File file = Paths.get(config).toFile();
@@ -141,14 +161,13 @@ public class DbQuery implements Callable<Integer> {
       spec.commandLine().getErr().format("Database %s not exists!", database).println();
       return 1;
     }
-    File tmp = Paths.get(database, "database", "tmp").toFile();
-    if (tmp.exists()) {
-      FileUtils.deleteDir(tmp);
-    }
-
     initStore();
-    processVotes(queryConfig);
-    processRewards(queryConfig);
+    try {
+      processVotes(queryConfig);
+      processRewards(queryConfig);
+    } finally {
+      snapshot.close();
+    }
 
     DbTool.close();
     return 0;
@@ -171,12 +190,15 @@ public class DbQuery implements Callable<Integer> {
 
     Map<ByteString, WitnessCapsule> witnesses = new HashMap<>();
     Map<ByteString, Long> oldWitnessCnt = new HashMap<>();
-    DBIterator iterator = witnessStore.iterator();
-    WitnessCapsule witnessCapsule;
-    for (iterator.seekToFirst(); iterator.valid(); iterator.next()) {
-      witnessCapsule = new WitnessCapsule(iterator.getValue());
-      witnesses.put(ByteString.copyFrom(iterator.getKey()), witnessCapsule);
-      oldWitnessCnt.put(witnessCapsule.getAddress(), witnessCapsule.getVoteCount());
+    try (DBIterator iterator = witnessStore.iterator()) {
+      WitnessCapsule witnessCapsule;
+      for (iterator.seekToFirst(); iterator.valid(); iterator.next()) {
+        witnessCapsule = new WitnessCapsule(iterator.getValue());
+        witnesses.put(ByteString.copyFrom(iterator.getKey()), witnessCapsule);
+        oldWitnessCnt.put(witnessCapsule.getAddress(), witnessCapsule.getVoteCount());
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
     }
 
     Map<ByteString, Long> countWitness = countVote();
@@ -306,13 +328,28 @@ public class DbQuery implements Callable<Integer> {
 
   private Map<ByteString, Long> countVote() {
     final Map<ByteString, Long> countWitness = Maps.newHashMap();
-    DBIterator dbIterator = votesStore.iterator();
+    List<VoteCount> counts = ParallelScanner.scan(votesStore, threads,
+        (range, iterator) -> countVote(iterator));
     long sizeCount = 0;
-    dbIterator.seekToFirst();
+    for (VoteCount count : counts) {
+      voters.putAll(count.voters);
+      count.countWitness.forEach((address, voteCount) ->
+          countWitness.merge(address, voteCount, Long::sum));
+      sizeCount += count.size;
+    }
+    spec.commandLine().getOut().format("There are total %d new votes in this epoch", sizeCount)
+        .println();
+    logger.info("There are total {} new votes in this epoch", sizeCount);
+    return countWitness;
+  }
+
+  private VoteCount countVote(DBIterator dbIterator) {
+    VoteCount count = new VoteCount();
+    final Map<ByteString, Long> countWitness = count.countWitness;
     while (dbIterator.hasNext()) {
       Entry<byte[], byte[]> next = dbIterator.next();
       VotesCapsule votes = new VotesCapsule(next.getValue());
-      voters.put(ByteString.copyFrom(next.getKey()), votes);
+      count.voters.put(ByteString.copyFrom(next.getKey()), votes);
 
       votes.getOldVotes().forEach(vote -> {
         ByteString voteAddress = vote.getVoteAddress();
@@ -332,12 +369,16 @@ public class DbQuery implements Callable<Integer> {
           countWitness.put(voteAddress, voteCount);
         }
       });
-      sizeCount++;
+      count.size++;
     }
-    spec.commandLine().getOut().format("There are total %d new votes in this epoch", sizeCount)
-        .println();
-    logger.info("There are total {} new votes in this epoch", sizeCount);
-    return countWitness;
+    return count;
+  }
+
+  private static class VoteCount {
+
+    private final Map<ByteString, VotesCapsule> voters = new HashMap<>();
+    private final Map<ByteString, Long> countWitness = new HashMap<>();
+    private long size;
   }
 
   private void loadVotesTx() throws BadItemException {
@@ -348,35 +389,44 @@ public class DbQuery implements Callable<Integer> {
         .toLong(dynamicPropertiesStore.get(LATEST_BLOCK_HEADER_NUMBER));
     long startBlock =
         latestBlockNumber > maintenanceBlockCnt ? latestBlockNumber - maintenanceBlockCnt : 0;
-    long block;
-    for (block = startBlock; block <= latestBlockNumber; block++) {
-      byte[] blockHash = blockIndexStore.get(ByteArray.fromLong(block));
-      BlockCapsule blockCapsule = new BlockCapsule(blockStore.get(blockHash));
-
-      blockCapsule.getTransactions().forEach(txCapsule -> {
-        ContractType txType = txCapsule.getInstance().getRawData().getContract(0).getType();
-        if (!txType.equals(ContractType.VoteWitnessContract)) {
-          return;
-        }
-        try {
-          VoteWitnessContract voteWitnessContract = txCapsule.getInstance().getRawData()
-              .getContract(0)
-              .getParameter().unpack(VoteWitnessContract.class);
-          ByteString ownerAddress = voteWitnessContract.getOwnerAddress();
-          voteWitnessContract.getVotesList().forEach(vote -> {
-            if (voters.keySet().contains(ownerAddress)) {
-              votesTx.put(ownerAddress,
-                  new VoteWitnessTx(txCapsule.getTransactionId(), voteWitnessContract));
-            }
-          });
-        } catch (InvalidProtocolBufferException e) {
-          e.printStackTrace();
-          System.exit(-1);
-        }
-      });
+    // one batch of block ids and one batch of blocks per READ_BATCH blocks
+    for (long batchStart = startBlock; batchStart <= latestBlockNumber;
+         batchStart += READ_BATCH) {
+      List<byte[]> nums = new ArrayList<>(READ_BATCH);
+      for (long block = batchStart;
+           block <= Math.min(latestBlockNumber, batchStart + READ_BATCH - 1); block++) {
+        nums.add(ByteArray.fromLong(block));
+      }
+      for (byte[] blockData : blockStore.multiGet(blockIndexStore.multiGet(nums))) {
+        loadVotesTx(new BlockCapsule(blockData));
+      }
     }
   }
 
+  private void loadVotesTx(BlockCapsule blockCapsule) {
+    blockCapsule.getTransactions().forEach(txCapsule -> {
+      ContractType txType = txCapsule.getInstance().getRawData().getContract(0).getType();
+      if (!txType.equals(ContractType.VoteWitnessContract)) {
+        return;
+      }
+      try {
+        VoteWitnessContract voteWitnessContract = txCapsule.getInstance().getRawData()
+            .getContract(0)
+            .getParameter().unpack(VoteWitnessContract.class);
+        ByteString ownerAddress = voteWitnessContract.getOwnerAddress();
+        voteWitnessContract.getVotesList().forEach(vote -> {
+          if (voters.keySet().contains(ownerAddress)) {
+            votesTx.put(ownerAddress,
+                new VoteWitnessTx(txCapsule.getTransactionId(), voteWitnessContract));
+          }
+        });
+      } catch (InvalidProtocolBufferException e) {
+        e.printStackTrace();
+        System.exit(-1);
+      }
+    });
+  }
+
   private class VoteWitnessTx {
 
     private Sha256Hash txHash;
@@ -441,17 +491,29 @@ public class DbQuery implements Callable<Integer> {
 
   private void loadAccumulateWitnessVi() {
     long cycle = getCurrentCycle();
-    DBIterator iterator = witnessStore.iterator();
-    WitnessCapsule witnessCapsule;
-    for (iterator.seekToFirst(); iterator.valid(); iterator.next()) {
-      witnessCapsule = new WitnessCapsule(iterator.getValue());
-      accumulateWitnessVi(cycle, witnessCapsule.createDbKey(), witnessCapsule.getVoteCount());
+    List<byte[]> addresses = new ArrayList<>();
+    List<Long> voteCounts = new ArrayList<>();
+    try (DBIterator iterator = witnessStore.iterator()) {
+      iterator.seekToFirst();
+      iterator.visit((key, value) -> {
+        WitnessCapsule witnessCapsule = new WitnessCapsule(value);
+        addresses.add(witnessCapsule.createDbKey());
+        voteCounts.add(witnessCapsule.getVoteCount());
+        return true;
+      });
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    List<BigInteger> preVis = getWitnessVi(cycle - 1, addresses);
+    List<Long> rewards = getReward(cycle, addresses);
+    for (int i = 0; i < addresses.size(); i++) {
+      accumulateWitnessVi(cycle, addresses.get(i), voteCounts.get(i), preVis.get(i),
+          rewards.get(i));
     }
   }
 
-  private void accumulateWitnessVi(long cycle, byte[] address, long voteCount) {
-    BigInteger preVi = getWitnessVi(cycle - 1, address);
-    long reward = getReward(cycle, address);
+  private void accumulateWitnessVi(long cycle, byte[] address, long voteCount, BigInteger preVi,
+                                   long reward) {
     if (reward == 0 || voteCount == 0) { // Just forward pre vi
       if (!BigInteger.ZERO.equals(preVi)) { // Zero vi will not be record
         setWitnessVi(cycle, address, preVi);
@@ -489,8 +551,10 @@ public class DbQuery implements Callable<Integer> {
       return 0;
     }
     AccountCapsule accountCapsule = new AccountCapsule(accountValue);
-    long beginCycle = getBeginCycle(address);
-    long endCycle = getEndCycle(address);
+    List<byte[]> cycles = delegationStore.multiGet(
+        Arrays.asList(address, buildEndCycleKey(address)));
+    long beginCycle = cycles.get(0) == null ? 0 : ByteArray.toLong(cycles.get(0));
+    long endCycle = cycles.get(1) == null ? -1L : ByteArray.toLong(cycles.get(1));
     long currentCycle = getCurrentCycle();
 
     long reward = 0;
@@ -517,16 +581,6 @@ public class DbQuery implements Callable<Integer> {
     return reward + accountCapsule.getAllowance();
   }
 
-  private long getBeginCycle(byte[] address) {
-    byte[] beginCycleValue = delegationStore.get(address);
-    return beginCycleValue == null ? 0 : ByteArray.toLong(beginCycleValue);
-  }
-
-  private long getEndCycle(byte[] address) {
-    byte[] endCycleValue = delegationStore.get(buildEndCycleKey(address));
-    return endCycleValue == null ? -1L : ByteArray.toLong(endCycleValue);
-  }
-
   private byte[] buildEndCycleKey(byte[] address) {
     return ("end-" + Hex.toHexString(address)).getBytes();
   }
@@ -559,13 +613,16 @@ public class DbQuery implements Callable<Integer> {
     return value != null && ByteArray.toLong(value) == 1;
   }
 
-  private BigInteger getWitnessVi(long cycle, byte[] address) {
-    byte[] value = delegationStore.get(buildViKey(cycle, address));
-    if (value == null) {
-      return BigInteger.ZERO;
-    } else {
-      return new BigInteger(value);
+  /**
+   * Vi of the witnesses in one batch.
+   */
+  private List<BigInteger> getWitnessVi(long cycle, List<byte[]> addresses) {
+    List<BigInteger> vis = new ArrayList<>(addresses.size());
+    for (byte[] value : delegationStore.multiGet(addresses.stream()
+        .map(address -> buildViKey(cycle, address)).collect(Collectors.toList()))) {
+      vis.add(value == null ? BigInteger.ZERO : new BigInteger(value));
     }
+    return vis;
   }
 
   private byte[] buildViKey(long cycle, byte[] address) {
@@ -581,6 +638,18 @@ public class DbQuery implements Callable<Integer> {
     }
   }
 
+  /**
+   * Rewards of the witnesses in one batch.
+   */
+  private List<Long> getReward(long cycle, List<byte[]> addresses) {
+    List<Long> rewards = new ArrayList<>(addresses.size());
+    for (byte[] value : delegationStore.multiGet(addresses.stream()
+        .map(address -> buildRewardKey(cycle, address)).collect(Collectors.toList()))) {
+      rewards.add(value == null ? 0L : ByteArray.toLong(value));
+    }
+    return rewards;
+  }
+
   private byte[] buildRewardKey(long cycle, byte[] address) {
     return (cycle + "-" + Hex.toHexString(address) + "-reward").getBytes();
   }
@@ -594,6 +663,18 @@ public class DbQuery implements Callable<Integer> {
     }
   }
 
+  /**
+   * Votes of the witnesses in one batch.
+   */
+  private List<Long> getWitnessVote(long cycle, List<byte[]> addresses) {
+    List<Long> votes = new ArrayList<>(addresses.size());
+    for (byte[] value : delegationStore.multiGet(addresses.stream()
+        .map(address -> buildVoteKey(cycle, address)).collect(Collectors.toList()))) {
+      votes.add(value == null ? -1L : ByteArray.toLong(value));
+    }
+    return votes;
+  }
+
   private byte[] buildVoteKey(long cycle, byte[] address) {
     return (cycle + "-" + Hex.toHexString(address) + "-vote").getBytes();
   }
@@ -627,16 +708,18 @@ public class DbQuery implements Callable<Integer> {
       beginCycle = oldEndCycle;
     }
     if ((!isLatest && beginCycle < endCycle) || (isLatest && beginCycle <= endCycle)) {
-      for (Pair<byte[], Long> vote : srAddresses) {
-        byte[] srAddress = vote.getKey();
-        BigInteger beginVi = getWitnessVi(beginCycle - 1, srAddress);
-        BigInteger endVi;
-        if (!isLatest) {
-          endVi = getWitnessVi(endCycle - 1, srAddress);
-        } else {
-          endCycle = getCurrentCycle();
-          endVi = getWitnessViFromMap(endCycle, srAddress);
-        }
+      List<byte[]> addresses = srAddresses.stream().map(Pair::getKey)
+          .collect(Collectors.toList());
+      List<BigInteger> beginVis = getWitnessVi(beginCycle - 1, addresses);
+      List<BigInteger> endVis = isLatest ? null : getWitnessVi(endCycle - 1, addresses);
+      if (isLatest) {
+        endCycle = getCurrentCycle();
+      }
+      for (int i = 0; i < srAddresses.size(); i++) {
+        Pair<byte[], Long> vote = srAddresses.get(i);
+        BigInteger beginVi = beginVis.get(i);
+        BigInteger endVi = isLatest
+            ? getWitnessViFromMap(endCycle, vote.getKey()) : endVis.get(i);
         BigInteger deltaVi = endVi.subtract(beginVi);
         if (deltaVi.signum() <= 0) {
           continue;
@@ -653,11 +736,12 @@ public class DbQuery implements Callable<Integer> {
       List<Pair<byte[], Long>> votes) {
     long reward = 0;
     if (beginCycle < endCycle) {
-      for (Pair<byte[], Long> vote : votes) {
-        byte[] srAddress = vote.getKey();
-        BigInteger beginVi = getWitnessVi(beginCycle - 1, srAddress);
-        BigInteger endVi = getWitnessVi(endCycle - 1, srAddress);
-        BigInteger deltaVi = endVi.subtract(beginVi);
+      List<byte[]> addresses = votes.stream().map(Pair::getKey).collect(Collectors.toList());
+      List<BigInteger> beginVis = getWitnessVi(beginCycle - 1, addresses);
+      List<BigInteger> endVis = getWitnessVi(endCycle - 1, addresses);
+      for (int i = 0; i < votes.size(); i++) {
+        Pair<byte[], Long> vote = votes.get(i);
+        BigInteger deltaVi = endVis.get(i).subtract(beginVis.get(i));
         if (deltaVi.signum() <= 0) {
           continue;
         }
@@ -671,13 +755,16 @@ public class DbQuery implements Callable<Integer> {
 
   private long computeReward(long cycle, List<Pair<byte[], Long>> votes) {
     long reward = 0;
-    for (Pair<byte[], Long> vote : votes) {
-      byte[] srAddress = vote.getKey();
-      long totalReward = getReward(cycle, srAddress);
+    List<byte[]> addresses = votes.stream().map(Pair::getKey).collect(Collectors.toList());
+    List<Long> totalRewards = getReward(cycle, addresses);
+    List<Long> totalVotes = getWitnessVote(cycle, addresses);
+    for (int i = 0; i < votes.size(); i++) {
+      Pair<byte[], Long> vote = votes.get(i);
+      long totalReward = totalRewards.get(i);
       if (totalReward <= 0) {
         continue;
       }
-      long totalVote = getWitnessVote(cycle, srAddress);
+      long totalVote = totalVotes.get(i);
       if (totalVote == DelegationStore.REMARK || totalVote == 0) {
         continue;
       }
@@ -1,34 +1,43 @@
 package org.tron.plugins;
 
-import com.google.common.collect.Streams;
-import com.google.common.primitives.Bytes;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import me.tongfei.progressbar.ProgressBar;
 import org.rocksdb.RocksDBException;
+import org.tron.plugins.utils.ByteArray;
+import org.tron.plugins.utils.DbOptions;
 import org.tron.plugins.utils.MerkleRoot;
+import org.tron.plugins.utils.RootIndex;
 import org.tron.plugins.utils.Sha256Hash;
 import org.tron.plugins.utils.db.DBInterface;
 import org.tron.plugins.utils.db.DBIterator;
 import org.tron.plugins.utils.db.DbTool;
+import org.tron.plugins.utils.db.IteratorOptions;
+import org.tron.plugins.utils.db.KeyRange;
+import org.tron.plugins.utils.db.LiveFiles;
+import org.tron.plugins.utils.db.ParallelScanner;
+import org.tron.plugins.utils.db.RangePartitioner;
 import picocli.CommandLine;
 
 @Slf4j(topic = "db-root")
 @CommandLine.Command(name = "root",
-    description = "compute merkle root for tiny db. NOTE: large db may GC overhead limit exceeded.",
+    description = "compute merkle root for db, only one pending hash per tree level is kept.",
     exitCodeListHeading = "Exit Codes:%n",
     exitCodeList = {
         "0:Successful",
         "n:query failed,please check toolkit.log"})
 public class DbRoot implements Callable<Integer> {
 
+  private static final int INDEX_RANGES = 64;
+  private static final String INDEX_SUFFIX = ".root.json";
+
   @CommandLine.Spec
   CommandLine.Model.CommandSpec spec;
   @CommandLine.Parameters(index = "0", defaultValue = "output-directory/database",
@@ -39,6 +48,22 @@ public class DbRoot implements Callable<Integer> {
       description = "db name for show root")
   private List<String> dbs;
 
+  @CommandLine.Option(names = {"--threads"}, defaultValue = "1",
+      description = "threads to scan each db, the key space is split into ranges."
+          + " Default: ${DEFAULT-VALUE}")
+  private int threads;
+
+  @CommandLine.Option(names = {"--shards"}, defaultValue = "0",
+      description = "print the roots of at most this many shards, a shard is an aligned subtree"
+          + " of 2^k keys, 0 for none. Default: ${DEFAULT-VALUE}")
+  private int shards;
+
+  @CommandLine.Option(names = {"--index"},
+      description = "dir of the range indexes, only the ranges whose files changed since the"
+          + " last run are rehashed, prints the index root instead of the root, the index root"
+          + " of copies of the same data is the same")
+  private Path index;
+
   @CommandLine.Option(names = {"-h", "--help"}, help = true, description = "display a help message")
   private boolean help;
 
@@ -49,6 +74,7 @@ public class DbRoot implements Callable<Integer> {
       spec.commandLine().usage(System.out);
       return 0;
     }
+    DbOptions.use("root", DbOptions.Profile.SCAN);
     if (!db.toFile().exists()) {
       logger.info(" {} does not exist.", db);
       spec.commandLine().getErr().println(spec.commandLine().getColorScheme()
@@ -81,16 +107,28 @@ public class DbRoot implements Callable<Integer> {
 
   private Ret calcMerkleRoot(String name) {
     Ret info = new Ret();
-    try (DBInterface database = DbTool.getDB(this.db, name)) {
-      DBIterator iterator = database.iterator();
-      iterator.seekToFirst();
-      ArrayList<Sha256Hash> ids = Streams.stream(iterator)
-          .map(this::getHash)
-          .collect(Collectors.toCollection(ArrayList::new));
-      Sha256Hash root = MerkleRoot.root(ids);
+    try (DBInterface database = DbTool.getReadOnlyDB(this.db, name)) {
+      StringBuilder shardInfo = new StringBuilder();
+      Sha256Hash root;
+      if (index != null) {
+        Sha256Hash indexRoot = indexedRoot(database, name, shardInfo);
+        logger.info("db: {},index root: {}", database.getName(), indexRoot);
+        info.code = 0;
+        info.msg = String.format("db: %s,index root: %s", database.getName(), indexRoot)
+            + shardInfo;
+        return info;
+      } else if (threads <= 1 && shards <= 0) {
+        root = streamRoot(database);
+      } else {
+        Part part = parallelRoot(database);
+        root = part.accumulator.finish();
+        if (shards > 0) {
+          appendShards(database.getName(), part, shardInfo);
+        }
+      }
       logger.info("db: {},root: {}", database.getName(), root);
       info.code = 0;
-      info.msg = String.format("db: %s,root: %s", database.getName(), root);
+      info.msg = String.format("db: %s,root: %s", database.getName(), root) + shardInfo;
     } catch (RocksDBException | IOException e) {
       logger.error("calc db {} fail", name, e);
       info.code = 1;
@@ -100,9 +138,152 @@ public class DbRoot implements Callable<Integer> {
     return info;
   }
 
-  private Sha256Hash getHash(Map.Entry<byte[], byte[]> entry) {
-    return Sha256Hash.of(true,
-        Bytes.concat(entry.getKey(), entry.getValue()));
+  private Sha256Hash streamRoot(DBInterface database) throws IOException {
+    MerkleRoot.Accumulator accumulator = new MerkleRoot.Accumulator();
+    try (DBIterator iterator = database.iterator(IteratorOptions.scan(KeyRange.all()))) {
+      iterator.seekToFirst();
+      iterator.visit((key, value) -> {
+        accumulator.add(getHash(key, value));
+        return true;
+      });
+    }
+    return accumulator.finish();
+  }
+
+  /**
+   * Two passes over the same ranges: the keys of every range are counted to get its offset,
+   * then every range is accumulated from its offset and the parts are merged in key order.
+   * The ranges need not be aligned to the shards, a shard spanning two ranges is completed
+   * by the merge.
+   */
+  private Part parallelRoot(DBInterface database) {
+    List<KeyRange> ranges = threads <= 1 ? Collections.singletonList(KeyRange.all())
+        : RangePartitioner.partition(database, threads * ParallelScanner.RANGES_PER_THREAD);
+    List<Long> counts = ParallelScanner.scan(database, ranges, threads,
+        (range, iterator) -> iterator.count());
+    List<Long> offsets = new ArrayList<>(counts.size());
+    long total = 0;
+    for (long count : counts) {
+      offsets.add(total);
+      total += count;
+    }
+    int shardLevel = shardLevel(total);
+    long shardSize = shardLevel < 0 ? Long.MAX_VALUE : 1L << shardLevel;
+    List<Part> parts = ParallelScanner.scan(database, ranges, threads, (range, iterator) -> {
+      long offset = offsets.get(ranges.indexOf(range));
+      Part part = new Part(new MerkleRoot.Accumulator(offset, shardLevel), shardSize);
+      iterator.visit((key, value) -> {
+        if ((offset + part.accumulator.getCount()) % shardSize == 0) {
+          part.shardKeys.add(key);
+        }
+        part.accumulator.add(getHash(key, value));
+        return true;
+      });
+      return part;
+    });
+    Part merged = parts.get(0);
+    for (Part part : parts.subList(1, parts.size())) {
+      merged.accumulator.merge(part.accumulator);
+      merged.shardKeys.addAll(part.shardKeys);
+    }
+    return merged;
+  }
+
+  /**
+   * Root of the ranges of the index: every range is hashed on its own and the index root is
+   * the merkle root of the range roots. The first run splits the key space between the first
+   * and the last key into {@value #INDEX_RANGES} even steps, so copies of the same data get
+   * the same ranges and the same index root. Later runs on the same db keep the ranges and
+   * only rehash the ranges whose live files changed, an index of another db is discarded.
+   */
+  private Sha256Hash indexedRoot(DBInterface database, String name, StringBuilder out)
+      throws IOException {
+    Path file = index.resolve(name + INDEX_SUFFIX);
+    Path dir = db.resolve(name).toAbsolutePath().normalize();
+    String manifest = LiveFiles.manifest(dir);
+    RootIndex old = RootIndex.load(file);
+    if (old != null && !old.isOf(dir.toString(), manifest)) {
+      logger.info("db: {}, index {} was built from {} at {}, discarded", name, file,
+          old.getPath(), old.getManifest());
+      old = null;
+    }
+    List<KeyRange> ranges = old == null
+        ? RangePartitioner.split(database, Math.max(INDEX_RANGES,
+            threads * ParallelScanner.RANGES_PER_THREAD))
+        : old.getRanges().stream().map(RootIndex.Range::keyRange).collect(Collectors.toList());
+    List<LiveFiles.TableFile> files = LiveFiles.read(dir, database);
+    boolean bytewise = RangePartitioner.isBytewiseOrdered(database);
+    RootIndex current = new RootIndex();
+    current.setDb(name);
+    current.setPath(dir.toString());
+    current.setManifest(manifest);
+    List<KeyRange> stale = new ArrayList<>();
+    for (int i = 0; i < ranges.size(); i++) {
+      RootIndex.Range range = RootIndex.Range.of(ranges.get(i));
+      range.setFiles(LiveFiles.overlapping(files, ranges.get(i), bytewise));
+      RootIndex.Range previous = old == null ? null : old.getRanges().get(i);
+      if (previous != null && previous.getFiles().equals(range.getFiles())) {
+        range.setCount(previous.getCount());
+        range.setRoot(previous.getRoot());
+      } else {
+        stale.add(ranges.get(i));
+      }
+      current.getRanges().add(range);
+    }
+    List<MerkleRoot.Accumulator> rehashed = ParallelScanner.scan(database, stale, threads,
+        (range, iterator) -> {
+          MerkleRoot.Accumulator accumulator = new MerkleRoot.Accumulator();
+          iterator.visit((key, value) -> {
+            accumulator.add(getHash(key, value));
+            return true;
+          });
+          return accumulator;
+        });
+    List<Sha256Hash> roots = new ArrayList<>(ranges.size());
+    for (int i = 0, j = 0; i < ranges.size(); i++) {
+      RootIndex.Range range = current.getRanges().get(i);
+      if (j < stale.size() && stale.get(j) == ranges.get(i)) {
+        MerkleRoot.Accumulator accumulator = rehashed.get(j++);
+        range.setCount(accumulator.getCount());
+        range.setRoot(accumulator.finish().toString());
+      }
+      roots.add(Sha256Hash.wrap(ByteArray.fromHexString(range.getRoot())));
+    }
+    current.store(file);
+    logger.info("db: {}, {} of {} ranges rehashed, index: {}", name, stale.size(),
+        ranges.size(), file);
+    out.append(String.format(",ranges: %d,rehashed: %d", ranges.size(), stale.size()));
+    return MerkleRoot.root(roots);
+  }
+
+  /**
+   * The smallest k for which the keys fit in {@link #shards} shards of 2^k keys.
+   */
+  private int shardLevel(long total) {
+    if (shards <= 0) {
+      return -1;
+    }
+    int level = 0;
+    while (total > (long) shards << level) {
+      level++;
+    }
+    return level;
+  }
+
+  private void appendShards(String name, Part part, StringBuilder out) {
+    List<Sha256Hash> roots = part.accumulator.getShardRoots();
+    long total = part.accumulator.getCount();
+    for (int i = 0; i < roots.size(); i++) {
+      long count = Math.min(part.shardSize, total - i * part.shardSize);
+      String shard = String.format("db: %s,shard: %d,first: %s,count: %d,root: %s", name, i,
+          ByteArray.toHexString(part.shardKeys.get(i)), count, roots.get(i));
+      logger.info(shard);
+      out.append(System.lineSeparator()).append(shard);
+    }
+  }
+
+  private Sha256Hash getHash(byte[] key, byte[] value) {
+    return Sha256Hash.of(true, key, value);
   }
 
   private void printInfo(Ret ret) {
@@ -114,6 +295,18 @@ public class DbRoot implements Callable<Integer> {
     }
   }
 
+  private static class Part {
+    private final MerkleRoot.Accumulator accumulator;
+    private final long shardSize;
+    // first key of every shard that starts in the part
+    private final List<byte[]> shardKeys = new ArrayList<>();
+
+    private Part(MerkleRoot.Accumulator accumulator, long shardSize) {
+      this.accumulator = accumulator;
+      this.shardSize = shardSize;
+    }
+  }
+
   private static class Ret {
     private int code;
     private String msg;
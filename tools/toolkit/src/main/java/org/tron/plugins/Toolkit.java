@@ -1,6 +1,7 @@
 package org.tron.plugins;
 
 import java.util.concurrent.Callable;
+import org.tron.plugins.utils.db.DbTool;
 import picocli.CommandLine;
 
 @CommandLine.Command(subcommands = { CommandLine.HelpCommand.class, Db.class})
@@ -12,6 +13,14 @@ public class Toolkit implements Callable<Integer> {
     if (args == null || args.length == 0) {
       cli.usage(System.out);
     } else {
+      // every command reports the memory of its rocksdb, also when it failed
+      cli.setExecutionStrategy(parseResult -> {
+        try {
+          return new CommandLine.RunLast().execute(parseResult);
+        } finally {
+          DbTool.reportMemoryUsage(System.out);
+        }
+      });
       int exitCode = cli.execute(args);
       System.exit(exitCode);
     }
@@ -7,6 +7,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Comparator;
 import lombok.Getter;
 import org.iq80.leveldb.CompressionType;
 import org.iq80.leveldb.DB;
@@ -64,9 +65,45 @@ public class DBUtils {
   public static final String LEVELDB = "LEVELDB";
   public static final String ROCKSDB = "ROCKSDB";
 
+  public static final int LEVELDB_MAX_OPEN_FILES = 1000;
+  public static final int ROCKSDB_MAX_OPEN_FILES = 5000;
+
   public static DB newLevelDb(Path db) throws IOException {
+    return newLevelDb(db, LEVELDB_MAX_OPEN_FILES);
+  }
+
+  /**
+   * Open a leveldb with a limit on its open table files.
+   *
+   * @param db database path
+   * @param maxOpenFiles max open files of the table cache
+   * @return database
+   * @throws IOException open failed
+   */
+  public static DB newLevelDb(Path db, int maxOpenFiles) throws IOException {
     File file = db.toFile();
-    org.iq80.leveldb.Options dbOptions = newDefaultLevelDbOptions();
+    org.iq80.leveldb.Options dbOptions = newLevelDbOptions(DbOptions.of(file.getName()));
+    dbOptions.maxOpenFiles(maxOpenFiles);
+    if (MARKET_PAIR_PRICE_TO_ORDER.equalsIgnoreCase(file.getName())) {
+      dbOptions.comparator(new MarketOrderPriceComparatorForLevelDB());
+    }
+    return factory.open(file, dbOptions);
+  }
+
+  /**
+   * Open an existing leveldb to read it only. leveldbjni has no read-only mode, the db still
+   * takes its LOCK file, replays its log and may compact, but a missing db is never created.
+   *
+   * @param db database path
+   * @param maxOpenFiles max open files of the table cache
+   * @return database
+   * @throws IOException open failed or the db does not exist
+   */
+  public static DB newLevelDbReadOnly(Path db, int maxOpenFiles) throws IOException {
+    File file = db.toFile();
+    org.iq80.leveldb.Options dbOptions = newLevelDbOptions(DbOptions.of(file.getName()));
+    dbOptions.createIfMissing(false);
+    dbOptions.maxOpenFiles(maxOpenFiles);
     if (MARKET_PAIR_PRICE_TO_ORDER.equalsIgnoreCase(file.getName())) {
       dbOptions.comparator(new MarketOrderPriceComparatorForLevelDB());
     }
@@ -74,71 +111,126 @@ public class DBUtils {
   }
 
   public static org.iq80.leveldb.Options newDefaultLevelDbOptions() {
+    return newLevelDbOptions(DbOptions.of(null));
+  }
+
+  private static org.iq80.leveldb.Options newLevelDbOptions(DbOptions tuned) {
     org.iq80.leveldb.Options dbOptions = new org.iq80.leveldb.Options();
     dbOptions.createIfMissing(true);
     dbOptions.paranoidChecks(true);
     dbOptions.verifyChecksums(true);
     dbOptions.compressionType(CompressionType.SNAPPY);
-    dbOptions.blockSize(4 * 1024);
-    dbOptions.writeBufferSize(10 * 1024 * 1024);
-    dbOptions.cacheSize(10 * 1024 * 1024L);
-    dbOptions.maxOpenFiles(1000);
+    dbOptions.blockSize(tuned.getLevelDbBlockSize());
+    dbOptions.writeBufferSize(tuned.getLevelDbWriteBufferSize());
+    dbOptions.cacheSize(tuned.getLevelDbCacheSize());
+    dbOptions.maxOpenFiles(LEVELDB_MAX_OPEN_FILES);
     return dbOptions;
   }
 
-  private static Options newDefaultRocksDbOptions(boolean forBulkLoad) {
+  private static Options newDefaultRocksDbOptions(DbOptions tuned, boolean forBulkLoad) {
     Options options = new Options();
     options.setCreateIfMissing(true);
-    options.setIncreaseParallelism(1);
+    options.setIncreaseParallelism(tuned.getRocksDbParallelism());
     options.setNumLevels(7);
-    options.setMaxOpenFiles(5000);
-    options.setTargetFileSizeBase(64 * 1024 * 1024);
+    options.setMaxOpenFiles(ROCKSDB_MAX_OPEN_FILES);
+    options.setTargetFileSizeBase(tuned.getRocksDbTargetFileSizeBase());
     options.setTargetFileSizeMultiplier(1);
-    options.setMaxBytesForLevelBase(512 * 1024 * 1024);
-    options.setMaxBackgroundCompactions(Math.max(1, Runtime.getRuntime().availableProcessors()));
-    options.setLevel0FileNumCompactionTrigger(4);
+    options.setMaxBytesForLevelBase(tuned.getRocksDbMaxBytesForLevelBase());
+    options.setMaxBackgroundCompactions(tuned.getRocksDbMaxBackgroundCompactions());
+    options.setLevel0FileNumCompactionTrigger(tuned.getRocksDbLevel0FileNumCompactionTrigger());
     options.setLevelCompactionDynamicLevelBytes(true);
     final BlockBasedTableConfig tableCfg;
     options.setTableFormatConfig(tableCfg = new BlockBasedTableConfig());
-    tableCfg.setBlockSize(64 * 1024);
-    tableCfg.setBlockCacheSize(32 * 1024 * 1024);
+    tableCfg.setBlockSize(tuned.getRocksDbBlockSize());
+    tableCfg.setBlockCache(MemoryBudget.getBlockCache());
     tableCfg.setCacheIndexAndFilterBlocks(true);
-    tableCfg.setPinL0FilterAndIndexBlocksInCache(true);
-    tableCfg.setFilter(new BloomFilter(10, false));
+    tableCfg.setPinL0FilterAndIndexBlocksInCache(tuned.isRocksDbPinL0FilterAndIndexBlocks());
+    if (tuned.getRocksDbBloomBitsPerKey() > 0) {
+      tableCfg.setFilter(new BloomFilter(tuned.getRocksDbBloomBitsPerKey(), false));
+    }
     if (forBulkLoad) {
       options.prepareForBulkLoad();
     }
+    options.setWriteBufferSize(MemoryBudget.writeBufferSize());
+    options.setDbWriteBufferSize(MemoryBudget.dbWriteBufferSize());
+    return options;
+  }
+
+  /**
+   * Rocksdb options for the database as tuned by {@link DbOptions}, with the market
+   * comparator when needed. The caller closes the options.
+   *
+   * @param db database path
+   * @param forBulkLoad tune for bulk load
+   * @return options
+   */
+  public static Options newDefaultRocksDbOptions(Path db, boolean forBulkLoad) {
+    DbOptions tuned = DbOptions.of(db.getFileName().toString());
+    Options options = newDefaultRocksDbOptions(tuned, forBulkLoad);
+    if (MARKET_PAIR_PRICE_TO_ORDER.equalsIgnoreCase(db.getFileName().toString())) {
+      options.setComparator(new MarketOrderPriceComparatorForRockDB(new ComparatorOptions()));
+    }
     return options;
   }
 
   public static RocksDB newRocksDb(Path db) throws RocksDBException {
-    try (Options options = newDefaultRocksDbOptions(false)) {
-      if (MARKET_PAIR_PRICE_TO_ORDER.equalsIgnoreCase(db.getFileName().toString())) {
-        options.setComparator(new MarketOrderPriceComparatorForRockDB(new ComparatorOptions()));
-      }
+    return newRocksDb(db, ROCKSDB_MAX_OPEN_FILES);
+  }
+
+  /**
+   * Open a rocksdb with a limit on its open table files.
+   *
+   * @param db database path
+   * @param maxOpenFiles max open files of the table cache
+   * @return database
+   * @throws RocksDBException open failed
+   */
+  public static RocksDB newRocksDb(Path db, int maxOpenFiles) throws RocksDBException {
+    try (Options options = newDefaultRocksDbOptions(db, false)) {
+      options.setMaxOpenFiles(maxOpenFiles);
       return  RocksDB.open(options, db.toString());
     }
   }
 
   public static RocksDB newRocksDbForBulkLoad(Path db) throws RocksDBException {
-    try (Options options = newDefaultRocksDbOptions(true)) {
-      if (MARKET_PAIR_PRICE_TO_ORDER.equalsIgnoreCase(db.getFileName().toString())) {
-        options.setComparator(new MarketOrderPriceComparatorForRockDB(new ComparatorOptions()));
-      }
+    try (Options options = newDefaultRocksDbOptions(db, true)) {
       return  RocksDB.open(options, db.toString());
     }
   }
 
 
   public static RocksDB newRocksDbReadOnly(Path db) throws RocksDBException {
-    try (Options options = newDefaultRocksDbOptions(false)) {
-      if (MARKET_PAIR_PRICE_TO_ORDER.equalsIgnoreCase(db.getFileName().toString())) {
-        options.setComparator(new MarketOrderPriceComparatorForRockDB(new ComparatorOptions()));
-      }
+    return newRocksDbReadOnly(db, ROCKSDB_MAX_OPEN_FILES);
+  }
+
+  /**
+   * Open a rocksdb to read it only, without its LOCK file, flushes or compactions. Several
+   * processes may read the db at once, also while a node writes it, the reader sees the
+   * db as of the open.
+   *
+   * @param db database path
+   * @param maxOpenFiles max open files of the table cache
+   * @return database
+   * @throws RocksDBException open failed or the db does not exist
+   */
+  public static RocksDB newRocksDbReadOnly(Path db, int maxOpenFiles) throws RocksDBException {
+    try (Options options = newDefaultRocksDbOptions(db, false)) {
+      options.setMaxOpenFiles(maxOpenFiles);
       return  RocksDB.openReadOnly(options, db.toString());
     }
   }
 
+  /**
+   * Key order of a db, unsigned bytewise except the market price db.
+   *
+   * @param dbName db name
+   * @return key comparator
+   */
+  public static Comparator<byte[]> keyComparator(String dbName) {
+    return MARKET_PAIR_PRICE_TO_ORDER.equalsIgnoreCase(dbName)
+        ? MarketUtils::comparePriceKey : ByteArray::compareUnsigned;
+  }
+
   public static String simpleDecode(byte[] bytes) {
     byte[] lengthBytes = Arrays.copyOf(bytes, 4);
     int length = Ints.fromByteArray(lengthBytes);
@@ -0,0 +1,311 @@
+package org.tron.plugins.utils;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigUtil;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Engine options of the databases opened by the toolkit, the ones {@link DBUtils} used to
+ * hard-code. A named {@link Profile} tunes them for a workload, every command selects the
+ * profile of its workload unless one is given with {@code db --profile}. A HOCON file given
+ * with {@code db --db-options} overrides them for all dbs or per db:
+ *
+ * <pre>
+ * profile = point-read
+ * rocksdb.parallelism = 8
+ * dbs {
+ *   account { profile = point-read, rocksdb.block-size = 16k }
+ *   block { leveldb.cache-size = 64m }
+ * }
+ * </pre>
+ *
+ * <p>The block size and the bloom filter only apply to the tables written afterwards. The
+ * RocksDB block cache and write buffers stay with {@link MemoryBudget}.
+ */
+@Slf4j(topic = "tool")
+public final class DbOptions {
+
+  private static final String PROFILE = "profile";
+  private static final String DBS = "dbs";
+  private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+  private static Profile selected;
+  private static Profile commandProfile = Profile.DEFAULT;
+  private static Config overrides = ConfigFactory.empty();
+
+  @Getter
+  private Profile profile = Profile.DEFAULT;
+  @Getter
+  private int levelDbBlockSize = 4 * 1024;
+  @Getter
+  private long levelDbCacheSize = 10 * 1024 * 1024L;
+  @Getter
+  private int levelDbWriteBufferSize = 10 * 1024 * 1024;
+  @Getter
+  private long rocksDbBlockSize = 64 * 1024L;
+  @Getter
+  private int rocksDbBloomBitsPerKey = 10;
+  @Getter
+  private int rocksDbParallelism = 1;
+  @Getter
+  private int rocksDbMaxBackgroundCompactions = PROCESSORS;
+  @Getter
+  private int rocksDbLevel0FileNumCompactionTrigger = 4;
+  @Getter
+  private long rocksDbTargetFileSizeBase = 64 * 1024 * 1024L;
+  @Getter
+  private long rocksDbMaxBytesForLevelBase = 512 * 1024 * 1024L;
+  @Getter
+  private boolean rocksDbPinL0FilterAndIndexBlocks = true;
+
+  public enum Profile {
+    /**
+     * The options the node writes its databases with.
+     */
+    DEFAULT("default"),
+    /**
+     * Large write buffers and parallel background work, for converting and splitting.
+     */
+    BULK_WRITE("bulk-write"),
+    /**
+     * Larger caches and smaller blocks, for random gets such as query.
+     */
+    POINT_READ("point-read"),
+    /**
+     * Small caches and larger blocks, for sequential scans such as root and diff.
+     */
+    SCAN("scan"),
+    /**
+     * Small caches and buffers, single threaded background work.
+     */
+    LOW_MEMORY("low-memory");
+
+    @Getter
+    private final String value;
+
+    Profile(String value) {
+      this.value = value;
+    }
+
+    /**
+     * The profile of a name.
+     *
+     * @param value profile name, such as point-read
+     * @return profile
+     */
+    public static Profile of(String value) {
+      for (Profile profile : values()) {
+        if (profile.value.equalsIgnoreCase(value)) {
+          return profile;
+        }
+      }
+      throw new IllegalArgumentException(String.format("unknown profile %s, expected one of %s",
+          value, Arrays.stream(values()).map(profile -> profile.value)
+              .collect(Collectors.joining(", "))));
+    }
+
+    private DbOptions options() {
+      DbOptions options = new DbOptions();
+      switch (this) {
+        case BULK_WRITE:
+          options.levelDbWriteBufferSize = 32 * 1024 * 1024;
+          options.rocksDbParallelism = PROCESSORS;
+          options.rocksDbLevel0FileNumCompactionTrigger = 8;
+          break;
+        case POINT_READ:
+          options.levelDbCacheSize = 64 * 1024 * 1024L;
+          options.rocksDbBlockSize = 16 * 1024L;
+          options.rocksDbParallelism = PROCESSORS;
+          break;
+        case SCAN:
+          options.levelDbBlockSize = 64 * 1024;
+          options.levelDbCacheSize = 4 * 1024 * 1024L;
+          options.rocksDbBlockSize = 256 * 1024L;
+          options.rocksDbPinL0FilterAndIndexBlocks = false;
+          break;
+        case LOW_MEMORY:
+          options.levelDbCacheSize = 4 * 1024 * 1024L;
+          options.levelDbWriteBufferSize = 4 * 1024 * 1024;
+          options.rocksDbMaxBackgroundCompactions = 1;
+          options.rocksDbPinL0FilterAndIndexBlocks = false;
+          break;
+        default:
+          break;
+      }
+      return options;
+    }
+  }
+
+  private DbOptions() {
+
+  }
+
+  /**
+   * Select the profile of every db, over the profiles of the commands and the file.
+   *
+   * @param profile profile name
+   */
+  public static synchronized void setProfile(String profile) {
+    selected = Profile.of(profile);
+  }
+
+  /**
+   * Load the overrides, applies to dbs opened afterwards.
+   *
+   * @param file HOCON file
+   */
+  public static synchronized void load(Path file) {
+    if (!file.toFile().isFile()) {
+      throw new IllegalArgumentException(String.format("db options file %s not exists", file));
+    }
+    Config config = ConfigFactory.parseFile(file.toFile());
+    // a bad file fails here rather than at the first open
+    validate(config);
+    if (config.hasPath(DBS)) {
+      for (String db : config.getObject(DBS).keySet()) {
+        validate(config.getConfig(dbPath(db)));
+      }
+    }
+    overrides = config;
+  }
+
+  /**
+   * Set the profile of the running command and log the effective options, a profile given
+   * with --profile or in the file wins.
+   *
+   * @param command command name
+   * @param profile profile of its workload
+   */
+  public static synchronized void use(String command, Profile profile) {
+    commandProfile = profile;
+    logger.info("Db options of {}: {}.", command, of(null));
+    if (overrides.hasPath(DBS)) {
+      for (String db : overrides.getObject(DBS).keySet()) {
+        logger.info("Db options of {} for {}: {}.", command, db, of(db));
+      }
+    }
+  }
+
+  /**
+   * The effective options of a db: its profile, then the options of all dbs in the file,
+   * then its own ones in the file.
+   *
+   * @param dbName db name, null for the options of all dbs
+   * @return options
+   */
+  public static synchronized DbOptions of(String dbName) {
+    Config db = dbName == null ? null : dbConfig(dbName);
+    Profile profile = selected;
+    if (profile == null && db != null && db.hasPath(PROFILE)) {
+      profile = Profile.of(db.getString(PROFILE));
+    }
+    if (profile == null && overrides.hasPath(PROFILE)) {
+      profile = Profile.of(overrides.getString(PROFILE));
+    }
+    if (profile == null) {
+      profile = commandProfile;
+    }
+    DbOptions options = profile.options();
+    options.profile = profile;
+    options.override(overrides);
+    if (db != null) {
+      options.override(db);
+    }
+    return options;
+  }
+
+  /**
+   * Forget the profiles and overrides.
+   */
+  static synchronized void reset() {
+    selected = null;
+    commandProfile = Profile.DEFAULT;
+    overrides = ConfigFactory.empty();
+  }
+
+  private static Config dbConfig(String dbName) {
+    String path = dbPath(dbName);
+    return overrides.hasPath(path) ? overrides.getConfig(path) : null;
+  }
+
+  // quoted, a db name with a dot is still one key
+  private static String dbPath(String dbName) {
+    return DBS + "." + ConfigUtil.quoteString(dbName);
+  }
+
+  private static void validate(Config config) {
+    if (config.hasPath(PROFILE)) {
+      Profile.of(config.getString(PROFILE));
+    }
+    new DbOptions().override(config);
+  }
+
+  private void override(Config config) {
+    if (config.hasPath("leveldb.block-size")) {
+      levelDbBlockSize = (int) positive(config, "leveldb.block-size");
+    }
+    if (config.hasPath("leveldb.cache-size")) {
+      levelDbCacheSize = positive(config, "leveldb.cache-size");
+    }
+    if (config.hasPath("leveldb.write-buffer-size")) {
+      levelDbWriteBufferSize = (int) positive(config, "leveldb.write-buffer-size");
+    }
+    if (config.hasPath("rocksdb.block-size")) {
+      rocksDbBlockSize = positive(config, "rocksdb.block-size");
+    }
+    if (config.hasPath("rocksdb.bloom-bits-per-key")) {
+      rocksDbBloomBitsPerKey = config.getInt("rocksdb.bloom-bits-per-key");
+    }
+    if (config.hasPath("rocksdb.parallelism")) {
+      rocksDbParallelism = config.getInt("rocksdb.parallelism");
+    }
+    if (config.hasPath("rocksdb.max-background-compactions")) {
+      rocksDbMaxBackgroundCompactions = config.getInt("rocksdb.max-background-compactions");
+    }
+    if (config.hasPath("rocksdb.level0-file-num-compaction-trigger")) {
+      rocksDbLevel0FileNumCompactionTrigger =
+          config.getInt("rocksdb.level0-file-num-compaction-trigger");
+    }
+    if (config.hasPath("rocksdb.target-file-size-base")) {
+      rocksDbTargetFileSizeBase = positive(config, "rocksdb.target-file-size-base");
+    }
+    if (config.hasPath("rocksdb.max-bytes-for-level-base")) {
+      rocksDbMaxBytesForLevelBase = positive(config, "rocksdb.max-bytes-for-level-base");
+    }
+    if (config.hasPath("rocksdb.pin-l0-filter-and-index-blocks")) {
+      rocksDbPinL0FilterAndIndexBlocks =
+          config.getBoolean("rocksdb.pin-l0-filter-and-index-blocks");
+    }
+    if (rocksDbBloomBitsPerKey < 0 || rocksDbParallelism <= 0
+        || rocksDbMaxBackgroundCompactions <= 0 || rocksDbLevel0FileNumCompactionTrigger <= 0) {
+      throw new IllegalArgumentException("db options must be positive: " + this);
+    }
+  }
+
+  private static long positive(Config config, String path) {
+    long bytes = config.getBytes(path);
+    if (bytes <= 0) {
+      throw new IllegalArgumentException(String.format("%s must be positive: %d", path, bytes));
+    }
+    return bytes;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT, "profile %s, leveldb block %d KB, cache %s,"
+            + " write buffer %s, rocksdb block %d KB, bloom %d bits, parallelism %d,"
+            + " background compactions %d, l0 compaction trigger %d, target file %s,"
+            + " level base %s, pin l0 %s", profile.value, levelDbBlockSize / 1024,
+        MemoryBudget.toMb(levelDbCacheSize), MemoryBudget.toMb(levelDbWriteBufferSize),
+        rocksDbBlockSize / 1024, rocksDbBloomBitsPerKey, rocksDbParallelism,
+        rocksDbMaxBackgroundCompactions, rocksDbLevel0FileNumCompactionTrigger,
+        MemoryBudget.toMb(rocksDbTargetFileSizeBase),
+        MemoryBudget.toMb(rocksDbMaxBytesForLevelBase), rocksDbPinL0FilterAndIndexBlocks);
+  }
+}
@@ -0,0 +1,119 @@
+package org.tron.plugins.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A small key-value progress file for resumable tasks.
+ *
+ * <p>Every update rewrites a temporary file, forces it to disk and atomically moves it over
+ * the journal, then forces the directory so the move itself survives a power loss. After a
+ * crash the journal holds either the old or the new state, never a torn one.
+ */
+public class Journal {
+
+  private final Path file;
+  private final Properties properties = new Properties();
+
+  /**
+   * Open a journal, the existing state is loaded when the file exists.
+   *
+   * @param file journal file
+   */
+  public Journal(Path file) {
+    this.file = file;
+    if (Files.exists(file)) {
+      try (InputStream in = Files.newInputStream(file)) {
+        properties.load(in);
+      } catch (IOException e) {
+        throw new RuntimeException(String.format("load journal %s failed", file), e);
+      }
+    }
+  }
+
+  public synchronized boolean exists() {
+    return Files.exists(file);
+  }
+
+  public synchronized String get(String key) {
+    return properties.getProperty(key);
+  }
+
+  public synchronized boolean contains(String key) {
+    return properties.containsKey(key);
+  }
+
+  public synchronized void put(String key, String value) {
+    properties.setProperty(key, value);
+    store();
+  }
+
+  /**
+   * Put several keys in one atomic update.
+   *
+   * @param values keys and values
+   */
+  public synchronized void putAll(Map<String, String> values) {
+    values.forEach(properties::setProperty);
+    store();
+  }
+
+  public synchronized void remove(String key) {
+    if (properties.remove(key) != null) {
+      store();
+    }
+  }
+
+  /**
+   * Forget all state and delete the journal file.
+   */
+  public synchronized void clear() {
+    properties.clear();
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      throw new RuntimeException(String.format("delete journal %s failed", file), e);
+    }
+  }
+
+  private void store() {
+    Path tmp = Paths.get(file.toString() + ".tmp");
+    try {
+      Files.createDirectories(file.toAbsolutePath().getParent());
+      try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        OutputStream out = Channels.newOutputStream(channel);
+        properties.store(out, "Generated by the application.  PLEASE DO NOT EDIT! ");
+        out.flush();
+        channel.force(true);
+      }
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      forceDir(file.toAbsolutePath().getParent());
+    } catch (IOException e) {
+      throw new RuntimeException(String.format("write journal %s failed", file), e);
+    }
+  }
+
+  /**
+   * Some platforms, such as Windows, can not open a directory, the move is then as durable
+   * as the platform makes it.
+   */
+  private static void forceDir(Path dir) {
+    try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      // not supported here
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package org.tron.plugins.utils;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.Cache;
+import org.rocksdb.LRUCache;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.tron.plugins.utils.db.DbTool;
+
+/**
+ * Process-wide memory budget for the RocksDB databases opened by the toolkit.
+ *
+ * <p>All databases share one block cache, index and filter blocks are charged to it.
+ * rocksdbjni 5.15 has no WriteBufferManager, so the write buffer budget is split into one
+ * share per database {@link DbTool} may keep open and every database is capped at one share.
+ *
+ * <p>Every database records its memory usage before it is closed, the last usage of every
+ * db name is reported at the end of a command.
+ */
+@Slf4j(topic = "tool")
+public final class MemoryBudget {
+
+  public static final long DEFAULT_CACHE_MB = 256;
+  public static final long DEFAULT_WRITE_BUFFER_MB = 256;
+
+  private static final long MB = 1024 * 1024L;
+  private static final long MIN_WRITE_BUFFER = 4 * MB;
+  private static final long MAX_WRITE_BUFFER = 64 * MB;
+
+  private static long cacheBytes = DEFAULT_CACHE_MB * MB;
+  private static long writeBufferBytes = DEFAULT_WRITE_BUFFER_MB * MB;
+  private static Cache blockCache;
+  // db name -> block cache, memtables, table readers
+  private static final Map<String, long[]> usage = new ConcurrentHashMap<>();
+
+  private MemoryBudget() {
+
+  }
+
+  /**
+   * Set the shared block cache size, only effective before the first database is opened.
+   *
+   * @param mb cache size in MB
+   */
+  public static synchronized void setCacheMb(long mb) {
+    if (mb <= 0) {
+      throw new IllegalArgumentException("cache size must be positive: " + mb);
+    }
+    if (blockCache != null && mb * MB != cacheBytes) {
+      logger.warn("Block cache already created with {} MB, ignore {} MB.",
+          cacheBytes / MB, mb);
+      return;
+    }
+    cacheBytes = mb * MB;
+  }
+
+  /**
+   * Set the write buffer budget, applies to databases opened afterwards.
+   *
+   * @param mb write buffer budget in MB
+   */
+  public static synchronized void setWriteBufferMb(long mb) {
+    if (mb <= 0) {
+      throw new IllegalArgumentException("write buffer size must be positive: " + mb);
+    }
+    writeBufferBytes = mb * MB;
+  }
+
+  public static synchronized long getCacheBytes() {
+    return cacheBytes;
+  }
+
+  /**
+   * The block cache shared by all databases, created on first use.
+   *
+   * @return shared block cache
+   */
+  public static synchronized Cache getBlockCache() {
+    if (blockCache == null) {
+      blockCache = new LRUCache(cacheBytes);
+      logger.info("Shared block cache: {} MB, write buffer budget: {} MB.",
+          cacheBytes / MB, writeBufferBytes / MB);
+    }
+    return blockCache;
+  }
+
+  /**
+   * Memtable limit of one database, the sum of all its write buffers.
+   *
+   * @return bytes
+   */
+  public static synchronized long dbWriteBufferSize() {
+    return Math.max(MIN_WRITE_BUFFER,
+        Math.min(MAX_WRITE_BUFFER * 2, writeBufferBytes / DbTool.getMaxOpenDbs()));
+  }
+
+  /**
+   * Size of a single memtable, half of the database limit so one can be flushed
+   * while the other is written.
+   *
+   * @return bytes
+   */
+  public static long writeBufferSize() {
+    return Math.min(MAX_WRITE_BUFFER, dbWriteBufferSize() / 2);
+  }
+
+  /**
+   * Record the memory a database uses now, called before it is closed.
+   *
+   * @param name db name
+   * @param db open database
+   */
+  public static void record(String name, RocksDB db) {
+    usage.put(name, new long[] {property(db, "rocksdb.block-cache-usage"),
+        property(db, "rocksdb.cur-size-all-mem-tables"),
+        property(db, "rocksdb.estimate-table-readers-mem")});
+  }
+
+  /**
+   * Log and print the recorded usage against the budget and forget it, nothing if no
+   * database recorded any.
+   *
+   * @param out where to print the usage
+   */
+  public static synchronized void report(PrintStream out) {
+    if (usage.isEmpty()) {
+      return;
+    }
+    long blockCache = 0;
+    long memTables = 0;
+    long tableReaders = 0;
+    for (long[] db : usage.values()) {
+      // the block cache is shared, every db reports the same usage
+      blockCache = Math.max(blockCache, db[0]);
+      memTables += db[1];
+      tableReaders += db[2];
+    }
+    String report = String.format("Memory usage of %d rocksdb: block cache %s of %s,"
+            + " memtables %s, write buffer budget %s, table readers %s.", usage.size(),
+        toMb(blockCache), toMb(cacheBytes), toMb(memTables), toMb(writeBufferBytes),
+        toMb(tableReaders));
+    usage.clear();
+    logger.info(report);
+    out.println(report);
+  }
+
+  private static long property(RocksDB db, String property) {
+    try {
+      return db.getLongProperty(property);
+    } catch (RocksDBException e) {
+      logger.warn("Get {} failed: {}.", property, e.getMessage());
+      return 0;
+    }
+  }
+
+  public static String toMb(long bytes) {
+    return String.format("%.1f MB", bytes / (double) MB);
+  }
+}
@@ -1,5 +1,6 @@
 package org.tron.plugins.utils;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -55,9 +56,168 @@ public class MerkleRoot {
     return leaf;
   }
 
+  /**
+   * Streaming form of {@link #root(List)}: hashes are added one by one and only one
+   * pending hash per tree level is kept, O(log n) memory for n hashes.
+   *
+   * <p>Level l keeps the root of the last complete 2^l subtree still waiting for its right
+   * sibling, adding a hash carries upwards like incrementing a binary counter. A partial
+   * subtree at the end is promoted unchanged, the same as an odd leaf of {@link #root(List)}.
+   *
+   * <p>Consecutive parts of the hash list can be accumulated in parallel: a part that starts
+   * at offset o is created with {@link #Accumulator(long)}, the subtrees it shares with the
+   * hashes before it are kept aside, and {@link #merge(Accumulator)} completes them when
+   * the parts are merged in order.
+   *
+   * <p>With a shard level k the roots of the aligned 2^k subtrees are collected as well,
+   * they are the nodes of level k of the tree and {@link #root(List)} of them is the root.
+   */
+  public static class Accumulator {
+
+    // a subtree covering hashes before the offset, only the accumulator before knows it
+    private static final Sha256Hash MISSING = new Sha256Hash(new byte[Sha256Hash.LENGTH]);
+
+    private final long offset;
+    private final int shardLevel;
+    private long count;
+    private final List<Sha256Hash> levels = new ArrayList<>();
+    // right siblings of MISSING subtrees, in the order they were completed
+    private final List<Integer> borderLevels = new ArrayList<>();
+    private final List<Sha256Hash> borderHashes = new ArrayList<>();
+    // complete subtrees of the shard level, in key order
+    private final List<Sha256Hash> shards = new ArrayList<>();
+
+    public Accumulator() {
+      this(0, -1);
+    }
+
+    /**
+     * Accumulator for a part of the hash list.
+     *
+     * @param offset number of hashes before the part
+     * @param shardLevel level of the shard roots to collect, -1 for none
+     */
+    public Accumulator(long offset, int shardLevel) {
+      if (offset < 0) {
+        throw new IllegalArgumentException("negative offset: " + offset);
+      }
+      this.offset = offset;
+      this.shardLevel = shardLevel;
+      for (int level = 0; offset >>> level != 0; level++) {
+        levels.add((offset >>> level & 1) == 1 ? MISSING : null);
+      }
+    }
+
+    public void add(Sha256Hash hash) {
+      count++;
+      if (shardLevel == 0) {
+        shards.add(hash);
+      }
+      insert(0, hash);
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Append the hashes of the next part.
+     *
+     * @param next accumulator created with an offset of the hashes seen here
+     */
+    public void merge(Accumulator next) {
+      if (next.offset != offset + count || next.shardLevel != shardLevel) {
+        throw new IllegalArgumentException(String.format(
+            "part at %d does not follow %d hashes at %d", next.offset, count, offset));
+      }
+      for (int i = 0; i < next.borderLevels.size(); i++) {
+        insert(next.borderLevels.get(i), next.borderHashes.get(i));
+      }
+      for (int level = 0; level < next.levels.size(); level++) {
+        Sha256Hash hash = next.levels.get(level);
+        if (hash != null && hash != MISSING) {
+          while (levels.size() <= level) {
+            levels.add(null);
+          }
+          levels.set(level, hash);
+        }
+      }
+      shards.addAll(next.shards);
+      count += next.count;
+    }
+
+    /**
+     * The root of all hashes added and merged.
+     *
+     * @return merkle root, {@link Sha256Hash#ZERO_HASH} when empty
+     */
+    public Sha256Hash finish() {
+      Sha256Hash root = promote(levels.size());
+      return root == null ? Sha256Hash.ZERO_HASH : root;
+    }
+
+    /**
+     * Roots of the shards: every 2^k hashes from the first one, the last shard may be
+     * shorter and is promoted like an odd node.
+     *
+     * @return shard roots in key order, {@code root(shardRoots)} is {@link #finish()}
+     */
+    public List<Sha256Hash> getShardRoots() {
+      if (shardLevel < 0) {
+        throw new IllegalStateException("no shard level");
+      }
+      List<Sha256Hash> roots = new ArrayList<>(shards);
+      Sha256Hash tail = promote(Math.min(shardLevel, levels.size()));
+      if (tail != null) {
+        roots.add(tail);
+      }
+      return roots;
+    }
+
+    private Sha256Hash promote(int toLevel) {
+      if (offset != 0) {
+        throw new IllegalStateException("part at " + offset + " must be merged first");
+      }
+      Sha256Hash root = null;
+      for (Sha256Hash hash : levels.subList(0, toLevel)) {
+        if (hash != null) {
+          root = root == null ? hash : computeHash(hash, root);
+        }
+      }
+      return root;
+    }
+
+    private void insert(int level, Sha256Hash hash) {
+      Sha256Hash carry = hash;
+      while (levels.size() < level) {
+        levels.add(null);
+      }
+      for (; level < levels.size(); level++) {
+        Sha256Hash left = levels.get(level);
+        if (left == null) {
+          levels.set(level, carry);
+          return;
+        }
+        levels.set(level, null);
+        if (left == MISSING) {
+          if (carry != MISSING) {
+            borderLevels.add(level);
+            borderHashes.add(carry);
+          }
+          carry = MISSING;
+        } else {
+          carry = computeHash(left, carry);
+          if (level + 1 == shardLevel) {
+            shards.add(carry);
+          }
+        }
+      }
+      levels.add(carry);
+    }
+  }
+
   private static Sha256Hash computeHash(Sha256Hash leftHash, Sha256Hash rightHash) {
-    return Sha256Hash.of(true,
-        leftHash.getByteString().concat(rightHash.getByteString()).toByteArray());
+    return Sha256Hash.of(true, leftHash.getBytes(), rightHash.getBytes());
   }
 
   @Getter
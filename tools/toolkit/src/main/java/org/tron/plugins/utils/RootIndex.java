@@ -0,0 +1,115 @@
+package org.tron.plugins.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.alibaba.fastjson.JSON;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import lombok.Getter;
+import lombok.Setter;
+import org.tron.plugins.utils.db.KeyRange;
+
+/**
+ * Side index of a db root: the key boundaries of the ranges, the merkle root and key count
+ * of every range, and the live files the range was hashed from. A range is only rehashed
+ * when its files changed, the boundaries never change once the index exists.
+ *
+ * <p>File numbers and sizes only stand for the contents within one database, so the index
+ * also records the path and the MANIFEST of the database it was built from and is only
+ * reused for the same database.
+ */
+@Getter
+@Setter
+public class RootIndex {
+
+  private String db;
+  private String path;
+  private String manifest;
+  private List<Range> ranges = new ArrayList<>();
+
+  /**
+   * One range of the index, keys are hex, null for unbounded.
+   */
+  @Getter
+  @Setter
+  public static class Range {
+
+    private String start;
+    private String end;
+    private long count;
+    private String root;
+    private List<String> files = new ArrayList<>();
+
+    public KeyRange keyRange() {
+      return new KeyRange(start == null ? null : ByteArray.fromHexString(start),
+          end == null ? null : ByteArray.fromHexString(end));
+    }
+
+    public static Range of(KeyRange range) {
+      Range r = new Range();
+      r.start = range.getStart() == null ? null : ByteArray.toHexString(range.getStart());
+      r.end = range.getEnd() == null ? null : ByteArray.toHexString(range.getEnd());
+      return r;
+    }
+  }
+
+  /**
+   * Whether the index was built from this database: the same path and a MANIFEST of the same
+   * lineage. Every open writes a MANIFEST with a higher number than the one before, so a
+   * lower number means the database was restored or synced over since.
+   *
+   * @param path absolute path of the database
+   * @param manifest current MANIFEST, null for a database without one
+   * @return true if the ranges can be reused
+   */
+  public boolean isOf(String path, String manifest) {
+    if (!Objects.equals(this.path, path)) {
+      return false;
+    }
+    if (this.manifest == null || manifest == null) {
+      return Objects.equals(this.manifest, manifest);
+    }
+    return manifestNumber(manifest) >= manifestNumber(this.manifest);
+  }
+
+  private static long manifestNumber(String manifest) {
+    try {
+      return Long.parseLong(manifest.substring(manifest.lastIndexOf('-') + 1));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Load an index.
+   *
+   * @param file index file
+   * @return the index, null if the file does not exist
+   * @throws IOException read failed
+   */
+  public static RootIndex load(Path file) throws IOException {
+    if (!Files.exists(file)) {
+      return null;
+    }
+    return JSON.parseObject(new String(Files.readAllBytes(file), UTF_8), RootIndex.class);
+  }
+
+  /**
+   * Write the index to a temporary file and move it over the old one.
+   *
+   * @param file index file
+   * @throws IOException write failed
+   */
+  public void store(Path file) throws IOException {
+    Path tmp = Paths.get(file.toString() + ".tmp");
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    Files.write(tmp, JSON.toJSONString(this, true).getBytes(UTF_8));
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+}
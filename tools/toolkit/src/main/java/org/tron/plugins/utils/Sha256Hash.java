@@ -41,6 +41,11 @@ public class Sha256Hash implements Serializable, Comparable<Sha256Hash> {
 
   public static final int LENGTH = 32; // bytes
   public static final Sha256Hash ZERO_HASH = wrap(new byte[LENGTH]);
+  // digests are stateful and not thread safe, one per thread, reset before every use
+  private static final ThreadLocal<MessageDigest> SHA256_DIGEST =
+      ThreadLocal.withInitial(Sha256Hash::newDigest);
+  private static final ThreadLocal<SM3Digest> SM3_DIGEST =
+      ThreadLocal.withInitial(Sha256Hash::newSM3Digest);
   private final byte[] bytes;
 
   /**
@@ -75,6 +80,18 @@ public class Sha256Hash implements Serializable, Comparable<Sha256Hash> {
     return wrap(hash(isSha256, contents));
   }
 
+  /**
+   * Creates a new instance containing the calculated (one-time) hash of the two byte arrays
+   * one after the other, the same as the hash of their concatenation without copying them.
+   *
+   * @param first the bytes hashed first
+   * @param second the bytes hashed after first
+   * @return a new instance containing the calculated (one-time) hash
+   */
+  public static Sha256Hash of(boolean isSha256, byte[] first, byte[] second) {
+    return wrap(hash(isSha256, first, second));
+  }
+
   /**
    * Creates a new instance containing the calculated (one-time) hash of the given file's contents.
    * The file contents are read fully into memory, so this method should only be used with small
@@ -106,6 +123,18 @@ public class Sha256Hash implements Serializable, Comparable<Sha256Hash> {
     }
   }
 
+  /**
+   * Returns the SHA-256 MessageDigest of the calling thread, reset. It must not be kept
+   * across calls of the other hash methods of this class on the same thread.
+   *
+   * @return the reset SHA-256 MessageDigest of the calling thread
+   */
+  public static MessageDigest threadDigest() {
+    MessageDigest digest = SHA256_DIGEST.get();
+    digest.reset();
+    return digest;
+  }
+
   /**
    * Returns a new SM3 MessageDigest instance. This is a convenience method which wraps the checked
    * exception that can never occur with a RuntimeException.
@@ -136,11 +165,11 @@ public class Sha256Hash implements Serializable, Comparable<Sha256Hash> {
    */
   public static byte[] hash(boolean isSha256, byte[] input, int offset, int length) {
     if (isSha256) {
-      MessageDigest digest = newDigest();
+      MessageDigest digest = threadDigest();
       digest.update(input, offset, length);
       return digest.digest();
     } else {
-      SM3Digest digest = newSM3Digest();
+      SM3Digest digest = threadSM3Digest();
       digest.update(input, offset, length);
       byte[] eHash = new byte[digest.getDigestSize()];
       digest.doFinal(eHash, 0);
@@ -149,6 +178,35 @@ public class Sha256Hash implements Serializable, Comparable<Sha256Hash> {
 
   }
 
+  /**
+   * Calculates the SHA-256 hash of the concatenation of two byte arrays without building it.
+   *
+   * @param first the bytes hashed first
+   * @param second the bytes hashed after first
+   * @return the hash (in big-endian order)
+   */
+  public static byte[] hash(boolean isSha256, byte[] first, byte[] second) {
+    if (isSha256) {
+      MessageDigest digest = threadDigest();
+      digest.update(first);
+      digest.update(second);
+      return digest.digest();
+    } else {
+      SM3Digest digest = threadSM3Digest();
+      digest.update(first, 0, first.length);
+      digest.update(second, 0, second.length);
+      byte[] eHash = new byte[digest.getDigestSize()];
+      digest.doFinal(eHash, 0);
+      return eHash;
+    }
+  }
+
+  private static SM3Digest threadSM3Digest() {
+    SM3Digest digest = SM3_DIGEST.get();
+    digest.reset();
+    return digest;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
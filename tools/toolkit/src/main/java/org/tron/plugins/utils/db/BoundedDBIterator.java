@@ -0,0 +1,117 @@
+package org.tron.plugins.utils.db;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link DBIterator} that only exposes the keys inside a {@link KeyRange}.
+ * Seeks are clamped to the range start and the iterator becomes invalid at the range end.
+ * When the engine already stops the wrapped iterator at the range end, such as RocksDB with
+ * an upper bound, the keys are not checked again and count and visit go to it directly.
+ */
+public class BoundedDBIterator implements DBIterator {
+
+  private final DBIterator iterator;
+  private final KeyRange range;
+  private final boolean engineBounded;
+
+  public BoundedDBIterator(DBIterator iterator, KeyRange range) {
+    this(iterator, range, false);
+  }
+
+  /**
+   * Bound an iterator to a range.
+   *
+   * @param iterator iterator to bound
+   * @param range keys to expose
+   * @param engineBounded the iterator already becomes invalid at the range end
+   */
+  public BoundedDBIterator(DBIterator iterator, KeyRange range, boolean engineBounded) {
+    this.iterator = iterator;
+    this.range = range;
+    this.engineBounded = engineBounded || range.getEnd() == null;
+  }
+
+  @Override
+  public boolean valid() {
+    return iterator.valid() && (engineBounded || !range.isAfter(iterator.getKey()));
+  }
+
+  @Override
+  public void seek(byte[] key) {
+    iterator.seek(range.isBefore(key) ? range.getStart() : key);
+  }
+
+  @Override
+  public void seekToFirst() {
+    if (range.getStart() == null) {
+      iterator.seekToFirst();
+    } else {
+      iterator.seek(range.getStart());
+    }
+  }
+
+  /**
+   * Only supported when the range has no upper bound, DBIterator can not step backwards.
+   */
+  @Override
+  public void seekToLast() {
+    if (range.getEnd() != null) {
+      throw new UnsupportedOperationException("seekToLast on a range with an upper bound");
+    }
+    iterator.seekToLast();
+  }
+
+  @Override
+  public boolean hasNext() {
+    return valid();
+  }
+
+  @Override
+  public byte[] getKey() {
+    return iterator.getKey();
+  }
+
+  @Override
+  public byte[] getValue() {
+    return iterator.getValue();
+  }
+
+  @Override
+  public Map.Entry<byte[], byte[]> next() {
+    if (!valid()) {
+      throw new NoSuchElementException();
+    }
+    return iterator.next();
+  }
+
+  /**
+   * Stops at the range end, the first key past it is read and skipped.
+   */
+  @Override
+  public long visit(Visitor visitor) {
+    if (engineBounded) {
+      return iterator.visit(visitor);
+    }
+    long[] visited = {0};
+    iterator.visit((key, value) -> {
+      if (range.isAfter(key)) {
+        return false;
+      }
+      visited[0]++;
+      return visitor.visit(key, value);
+    });
+    return visited[0];
+  }
+
+  @Override
+  public long count() {
+    return engineBounded ? iterator.count() : visit((key, value) -> true);
+  }
+
+  @Override
+  public void close() throws IOException {
+    iterator.close();
+  }
+}
@@ -0,0 +1,355 @@
+package org.tron.plugins.utils.db;
+
+import com.google.common.collect.Maps;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import org.tron.plugins.utils.DBUtils;
+
+/**
+ * A read-only view of a database with the not yet flushed checkpoint contents layered
+ * over it, the same data a node sees after recovering its checkpoints.
+ *
+ * <p>The checkpoint writes of one database are kept in memory, a checkpoint only holds
+ * the changes of the last few blocks. Deleted keys are kept as tombstones and hidden from
+ * both {@link #get(byte[])} and the iterator.
+ */
+public class CheckpointOverlay implements DBInterface {
+
+  // identity marker, an empty value written by the node is a different array
+  private static final byte[] TOMBSTONE = new byte[0];
+
+  private final DBInterface base;
+  private final NavigableMap<byte[], byte[]> overlay;
+  // a snapshot of the base is released with the view
+  private final boolean ownsBase;
+
+  /**
+   * Create a view of base with overlay on top.
+   *
+   * @param base the database
+   * @param overlay decoded checkpoint writes of the database, see {@link #index(List)}
+   */
+  public CheckpointOverlay(DBInterface base, NavigableMap<byte[], byte[]> overlay) {
+    this(base, overlay, false);
+  }
+
+  private CheckpointOverlay(DBInterface base, NavigableMap<byte[], byte[]> overlay,
+                            boolean ownsBase) {
+    this.base = base;
+    this.overlay = overlay;
+    this.ownsBase = ownsBase;
+  }
+
+  /**
+   * Checkpoint databases of a database dir, oldest first.
+   * The v2 checkpoints are used when present, otherwise the v1 tmp database if it exists.
+   *
+   * @param sourceDir database dir
+   * @return checkpoint paths, empty if there is no checkpoint
+   */
+  public static List<Path> checkpoints(String sourceDir) {
+    File v2 = Paths.get(sourceDir, DBUtils.CHECKPOINT_DB_V2).toFile();
+    String[] names = v2.isDirectory() ? v2.list() : null;
+    List<Path> paths = new ArrayList<>();
+    if (names != null && names.length > 0) {
+      Arrays.stream(names).sorted().forEach(name -> paths.add(v2.toPath().resolve(name)));
+    } else if (Paths.get(sourceDir, DBUtils.TMP).toFile().exists()) {
+      paths.add(Paths.get(sourceDir, DBUtils.TMP));
+    }
+    return paths;
+  }
+
+  /**
+   * Decode the checkpoints into one sorted map per database name, later checkpoints win.
+   *
+   * @param checkpoints checkpoint databases, oldest first
+   * @return database name to its checkpoint writes
+   */
+  public static Map<String, NavigableMap<byte[], byte[]>> index(List<DBInterface> checkpoints)
+      throws IOException {
+    Map<String, NavigableMap<byte[], byte[]>> index = Maps.newHashMap();
+    for (DBInterface checkpoint : checkpoints) {
+      try (DBIterator iterator = checkpoint.iterator()) {
+        for (iterator.seekToFirst(); iterator.valid(); iterator.next()) {
+          byte[] key = iterator.getKey();
+          byte[] value = iterator.getValue();
+          String dbName = DBUtils.simpleDecode(key);
+          byte[] realKey = Arrays.copyOfRange(key, dbName.getBytes().length + 4, key.length);
+          index.computeIfAbsent(dbName, name -> new TreeMap<>(DBUtils.keyComparator(name)))
+              .put(realKey, decode(value));
+        }
+      }
+    }
+    return index;
+  }
+
+  /**
+   * An empty overlay ordered like the database.
+   *
+   * @param dbName database name
+   * @return empty map
+   */
+  public static NavigableMap<byte[], byte[]> empty(String dbName) {
+    return Collections.unmodifiableNavigableMap(new TreeMap<>(DBUtils.keyComparator(dbName)));
+  }
+
+  private static byte[] decode(byte[] value) {
+    if (value.length > 1) {
+      return Arrays.copyOfRange(value, 1, value.length);
+    }
+    return DBUtils.Operator.DELETE.getValue() == value[0] ? TOMBSTONE : new byte[0];
+  }
+
+  @Override
+  public byte[] get(byte[] key) {
+    byte[] value = overlay.get(key);
+    if (value == null) {
+      return base.get(key);
+    }
+    return value == TOMBSTONE ? null : value;
+  }
+
+  /**
+   * Keys found in the overlay are answered from it, the rest are one batch to the base.
+   */
+  @Override
+  public List<byte[]> multiGet(List<byte[]> keys) {
+    List<byte[]> values = new ArrayList<>(keys.size());
+    List<byte[]> missing = new ArrayList<>();
+    for (byte[] key : keys) {
+      byte[] value = overlay.get(key);
+      values.add(value);
+      if (value == null) {
+        missing.add(key);
+      }
+    }
+    if (!missing.isEmpty()) {
+      Iterator<byte[]> found = base.multiGet(missing).iterator();
+      for (int i = 0; i < values.size(); i++) {
+        if (values.get(i) == null) {
+          values.set(i, found.next());
+        }
+      }
+    }
+    values.replaceAll(value -> value == TOMBSTONE ? null : value);
+    return values;
+  }
+
+  @Override
+  public void put(byte[] key, byte[] value) {
+    throw new UnsupportedOperationException("checkpoint view is read-only");
+  }
+
+  @Override
+  public void delete(byte[] key) {
+    throw new UnsupportedOperationException("checkpoint view is read-only");
+  }
+
+  @Override
+  public WriteSession newWriteSession(WriteSessionOptions options) {
+    throw new UnsupportedOperationException("checkpoint view is read-only");
+  }
+
+  /**
+   * The base is bounded by the engine, the overlay keys by the merged iterator.
+   */
+  @Override
+  public DBIterator iterator(IteratorOptions options) {
+    DBIterator iterator = new OverlayIterator(base.iterator(options));
+    return options.getRange().isAll() ? iterator
+        : new BoundedDBIterator(iterator, options.getRange());
+  }
+
+  @Override
+  public long approximateSize(byte[] start, byte[] end) {
+    return base.approximateSize(start, end);
+  }
+
+  @Override
+  public long size() {
+    try (DBIterator iterator = iterator()) {
+      iterator.seekToFirst();
+      return iterator.count();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public long estimatedSize() {
+    return base.estimatedSize();
+  }
+
+  /**
+   * The checkpoints are only read once, the overlay of the view is already fixed.
+   */
+  @Override
+  public DBInterface snapshot() {
+    return new CheckpointOverlay(base.snapshot(), overlay, true);
+  }
+
+  /**
+   * The base and checkpoint databases are owned by {@link DbTool}, only a snapshot of the
+   * base is released.
+   */
+  @Override
+  public void close() throws IOException {
+    if (ownsBase) {
+      base.close();
+    }
+  }
+
+  @Override
+  public String getName() {
+    return base.getName();
+  }
+
+  /**
+   * Merges the base iterator with the overlay, the overlay wins on equal keys.
+   */
+  private class OverlayIterator implements DBIterator {
+
+    private final DBIterator iterator;
+    private Map.Entry<byte[], byte[]> pending;
+    private byte[] key;
+    private byte[] value;
+
+    private OverlayIterator(DBIterator iterator) {
+      this.iterator = iterator;
+    }
+
+    private int compare(byte[] a, byte[] b) {
+      return overlay.comparator().compare(a, b);
+    }
+
+    /**
+     * Position at the smaller of the two sources, skipping tombstones and the base keys
+     * they shadow.
+     */
+    private void settle() {
+      while (true) {
+        byte[] baseKey = iterator.valid() ? iterator.getKey() : null;
+        if (pending == null && baseKey == null) {
+          key = null;
+          value = null;
+          return;
+        }
+        int c = pending == null ? 1 : baseKey == null ? -1 : compare(pending.getKey(), baseKey);
+        if (c > 0) {
+          key = baseKey;
+          value = iterator.getValue();
+          return;
+        }
+        if (pending.getValue() != TOMBSTONE) {
+          key = pending.getKey();
+          value = pending.getValue();
+          return;
+        }
+        if (c == 0) {
+          iterator.next();
+        }
+        pending = overlay.higherEntry(pending.getKey());
+      }
+    }
+
+    @Override
+    public boolean valid() {
+      return key != null;
+    }
+
+    @Override
+    public void seek(byte[] target) {
+      iterator.seek(target);
+      pending = overlay.ceilingEntry(target);
+      settle();
+    }
+
+    @Override
+    public void seekToFirst() {
+      iterator.seekToFirst();
+      pending = overlay.firstEntry();
+      settle();
+    }
+
+    /**
+     * The last live key of the view. DBIterator can not step backwards, so when the last
+     * base key is deleted by the overlay the view is scanned forward once.
+     */
+    @Override
+    public void seekToLast() {
+      iterator.seekToLast();
+      byte[] last = iterator.valid() ? iterator.getKey() : null;
+      if (last != null && overlay.get(last) == TOMBSTONE) {
+        last = null;
+        for (seekToFirst(); valid(); next()) {
+          last = key;
+        }
+      } else {
+        for (Map.Entry<byte[], byte[]> e : overlay.descendingMap().entrySet()) {
+          if (e.getValue() != TOMBSTONE) {
+            if (last == null || compare(e.getKey(), last) > 0) {
+              last = e.getKey();
+            }
+            break;
+          }
+        }
+      }
+      if (last == null) {
+        pending = null;
+        key = null;
+        value = null;
+      } else {
+        seek(last);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return valid();
+    }
+
+    @Override
+    public byte[] getKey() {
+      return key;
+    }
+
+    @Override
+    public byte[] getValue() {
+      return value;
+    }
+
+    @Override
+    public Map.Entry<byte[], byte[]> next() {
+      if (!valid()) {
+        throw new NoSuchElementException();
+      }
+      Map.Entry<byte[], byte[]> entry = new AbstractMap.SimpleImmutableEntry<>(key, value);
+      if (pending != null && compare(pending.getKey(), key) == 0) {
+        pending = overlay.higherEntry(key);
+      }
+      if (iterator.valid() && compare(iterator.getKey(), key) == 0) {
+        iterator.next();
+      }
+      settle();
+      return entry;
+    }
+
+    @Override
+    public void close() throws IOException {
+      iterator.close();
+    }
+  }
+
+}
@@ -2,20 +2,112 @@ package org.tron.plugins.utils.db;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 
 public interface DBInterface extends Closeable {
 
   byte[] get(byte[] key);
 
+  /**
+   * Read a batch of independent keys, engines that can read them in one call or in parallel
+   * override it, the default reads them one by one.
+   *
+   * @param keys keys to read, not null
+   * @return the values in the order of the keys, null for a missing key
+   */
+  default List<byte[]> multiGet(List<byte[]> keys) {
+    List<byte[]> values = new ArrayList<>(keys.size());
+    for (byte[] key : keys) {
+      values.add(get(key));
+    }
+    return values;
+  }
+
   void put(byte[] key, byte[] value);
 
   void delete(byte[] key);
 
-  DBIterator iterator();
+  /**
+   * Open a batched write session with default options.
+   *
+   * @return write session, must be closed to write the remaining operations
+   */
+  default WriteSession newWriteSession() {
+    return newWriteSession(new WriteSessionOptions());
+  }
+
+  /**
+   * Open a batched write session.
+   *
+   * @param options flush size, WAL and sync behavior
+   * @return write session, must be closed to write the remaining operations
+   */
+  WriteSession newWriteSession(WriteSessionOptions options);
+
+  /**
+   * Iterator over the whole database, without filling the block cache.
+   *
+   * @return iterator, must be closed
+   */
+  default DBIterator iterator() {
+    return iterator(new IteratorOptions());
+  }
+
+  /**
+   * Iterator bounded to a range, with engine read options.
+   *
+   * @param options range, readahead and cache behavior
+   * @return iterator, must be closed
+   */
+  DBIterator iterator(IteratorOptions options);
 
+  /**
+   * Approximate on-disk size of the keys in [start, end).
+   * Data that is only in the memtable or log is not counted.
+   *
+   * @param start start key, inclusive, not null
+   * @param end end key, exclusive, not null
+   * @return approximate bytes, 0 if the engine can not tell
+   */
+  long approximateSize(byte[] start, byte[] end);
+
+  /**
+   * Exact number of keys, scans the whole database.
+   *
+   * @return number of keys
+   */
   long size();
 
+  /**
+   * Exact number of keys, the key space is split into ranges which are counted in parallel.
+   *
+   * @param threads worker count
+   * @return number of keys
+   */
+  default long size(int threads) {
+    return ParallelScanner.scan(this, threads, (range, iterator) -> iterator.count())
+        .stream().mapToLong(Long::longValue).sum();
+  }
+
+  /**
+   * Cheap estimate of the number of keys without a full scan,
+   * meant for progress reporting and planning, never for verification.
+   *
+   * @return estimated number of keys
+   */
+  long estimatedSize();
+
+  /**
+   * A read-only view of the database as it is now, writes made afterwards are not seen by
+   * it and writes to it fail. Snapshots of several databases taken one after another are
+   * one consistent state as long as nothing writes in between.
+   *
+   * @return view, must be closed to release the snapshot
+   */
+  DBInterface snapshot();
+
   void close() throws IOException;
 
   String getName();
@@ -56,4 +56,50 @@ public interface DBIterator extends Iterator<Map.Entry<byte[], byte[]>>, Closeab
    * @return the value for the current entry
    */
   byte[] getValue();
+
+  /**
+   * Receives the entries of {@link #visit(Visitor)}.
+   */
+  @FunctionalInterface
+  interface Visitor {
+
+    /**
+     * Visit one entry, the arrays are not used by the iterator afterwards.
+     *
+     * @param key key of the entry
+     * @param value value of the entry
+     * @return true to go on, false to stop after this entry
+     */
+    boolean visit(byte[] key, byte[] value);
+  }
+
+  /**
+   * Visit the entries from the current position on. Each key and value is read once and no
+   * entry object is created per step, unlike {@link #getKey()}, {@link #getValue()} and
+   * {@link #next()} together. The iterator is left after the last visited entry.
+   *
+   * @param visitor receives the entries
+   * @return number of entries visited
+   */
+  default long visit(Visitor visitor) {
+    long visited = 0;
+    while (hasNext()) {
+      Map.Entry<byte[], byte[]> entry = next();
+      visited++;
+      if (!visitor.visit(entry.getKey(), entry.getValue())) {
+        break;
+      }
+    }
+    return visited;
+  }
+
+  /**
+   * Count the entries from the current position to the end, the keys and values are not
+   * read where the engine allows it. The iterator is left invalid.
+   *
+   * @return number of entries
+   */
+  default long count() {
+    return visit((key, value) -> true);
+  }
 }
@@ -0,0 +1,493 @@
+package org.tron.plugins.utils.db;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.RocksDBException;
+
+/**
+ * A database managed by {@link DbTool}, the engine behind it is opened on demand and may be
+ * closed by the LRU eviction of DbTool while the handle stays usable.
+ *
+ * <p>Every call, open iterator and open write session holds a reference to the engine, only
+ * an engine without references is closed. The next use of the handle opens it again.
+ *
+ * <p>A read-only handle opens the engine read-only every time, its writes throw.
+ */
+@Slf4j(topic = "tool")
+public class DbHandle implements DBInterface {
+
+  @Getter
+  private final String path;
+  private final String name;
+  @Getter
+  private final DbTool.DbType type;
+  @Getter
+  private final int maxOpenFiles;
+  @Getter
+  private volatile boolean readOnly;
+
+  private DBInterface db;
+  private int refs;
+  private boolean closed;
+  private volatile long lastUsed;
+
+  DbHandle(String path, String name, DbTool.DbType type, int maxOpenFiles,
+           boolean readOnly) {
+    this.path = path;
+    this.name = name;
+    this.type = type;
+    this.maxOpenFiles = maxOpenFiles;
+    this.readOnly = readOnly;
+  }
+
+  /**
+   * Open the engine, the first open reports its errors to the caller of DbTool.getDB.
+   */
+  synchronized void open() throws IOException, RocksDBException {
+    if (db == null) {
+      db = DbTool.open(path, name, type, maxOpenFiles, readOnly);
+      lastUsed = System.nanoTime();
+    }
+  }
+
+  private DBInterface acquire() {
+    DBInterface acquired;
+    boolean reopened = false;
+    synchronized (this) {
+      if (closed) {
+        throw new IllegalStateException(String.format("db %s is closed", path));
+      }
+      if (db == null) {
+        try {
+          db = DbTool.open(path, name, type, maxOpenFiles, readOnly);
+        } catch (IOException | RocksDBException e) {
+          throw new RuntimeException(String.format("reopen db %s failed", path), e);
+        }
+        reopened = true;
+        logger.debug("Reopened db {}.", path);
+      }
+      refs++;
+      lastUsed = System.nanoTime();
+      acquired = db;
+    }
+    if (reopened) {
+      DbTool.evict(this);
+    }
+    return acquired;
+  }
+
+  private synchronized void release() {
+    refs--;
+  }
+
+  synchronized boolean isOpen() {
+    return db != null;
+  }
+
+  long getLastUsed() {
+    return lastUsed;
+  }
+
+  /**
+   * Close the engine if nothing uses it, the handle opens it again when used. A memory db
+   * would lose its contents and is kept.
+   *
+   * @return whether the engine was closed
+   */
+  synchronized boolean closeIfIdle() throws IOException {
+    if (db == null || refs > 0 || type == DbTool.DbType.Memory) {
+      return false;
+    }
+    DBInterface idle = db;
+    db = null;
+    idle.close();
+    return true;
+  }
+
+  /**
+   * Let a read-only handle write: its engine is closed and opened again for writing, a memory
+   * db always writes and is kept. Checkpoint views over the handle keep working, they read
+   * through it.
+   *
+   * @return false if iterators, sessions or snapshots still hold the read-only engine
+   * @throws IOException leveldb error
+   * @throws RocksDBException rocksdb error
+   */
+  synchronized boolean makeWritable() throws IOException, RocksDBException {
+    if (!readOnly) {
+      return true;
+    }
+    if (refs > 0) {
+      return false;
+    }
+    if (type == DbTool.DbType.Memory) {
+      readOnly = false;
+      return true;
+    }
+    if (db != null) {
+      DBInterface idle = db;
+      db = null;
+      idle.close();
+    }
+    readOnly = false;
+    db = DbTool.open(path, name, type, maxOpenFiles, false);
+    lastUsed = System.nanoTime();
+    logger.debug("Reopened db {} for writing.", path);
+    return true;
+  }
+
+  /**
+   * Run on the engine if it is open, without opening it or touching its LRU position.
+   *
+   * @param consumer receives the engine
+   */
+  synchronized void ifOpen(Consumer<DBInterface> consumer) {
+    if (db != null) {
+      consumer.accept(db);
+    }
+  }
+
+  @Override
+  public byte[] get(byte[] key) {
+    DBInterface acquired = acquire();
+    try {
+      return acquired.get(key);
+    } finally {
+      release();
+    }
+  }
+
+  @Override
+  public List<byte[]> multiGet(List<byte[]> keys) {
+    DBInterface acquired = acquire();
+    try {
+      return acquired.multiGet(keys);
+    } finally {
+      release();
+    }
+  }
+
+  @Override
+  public void put(byte[] key, byte[] value) {
+    DBInterface acquired = acquire();
+    try {
+      acquired.put(key, value);
+    } finally {
+      release();
+    }
+  }
+
+  @Override
+  public void delete(byte[] key) {
+    DBInterface acquired = acquire();
+    try {
+      acquired.delete(key);
+    } finally {
+      release();
+    }
+  }
+
+  @Override
+  public WriteSession newWriteSession(WriteSessionOptions options) {
+    DBInterface acquired = acquire();
+    try {
+      return new HandleWriteSession(acquired.newWriteSession(options));
+    } catch (RuntimeException e) {
+      release();
+      throw e;
+    }
+  }
+
+  @Override
+  public DBIterator iterator(IteratorOptions options) {
+    DBInterface acquired = acquire();
+    try {
+      return new HandleIterator(acquired.iterator(options));
+    } catch (RuntimeException e) {
+      release();
+      throw e;
+    }
+  }
+
+  @Override
+  public long approximateSize(byte[] start, byte[] end) {
+    DBInterface acquired = acquire();
+    try {
+      return acquired.approximateSize(start, end);
+    } finally {
+      release();
+    }
+  }
+
+  @Override
+  public long size() {
+    DBInterface acquired = acquire();
+    try {
+      return acquired.size();
+    } finally {
+      release();
+    }
+  }
+
+  @Override
+  public long estimatedSize() {
+    DBInterface acquired = acquire();
+    try {
+      return acquired.estimatedSize();
+    } finally {
+      release();
+    }
+  }
+
+  /**
+   * The snapshot holds a reference, the engine stays open until the snapshot is closed.
+   */
+  @Override
+  public DBInterface snapshot() {
+    DBInterface acquired = acquire();
+    try {
+      return new HandleSnapshot(acquired.snapshot());
+    } catch (RuntimeException e) {
+      release();
+      throw e;
+    }
+  }
+
+  /**
+   * Close the engine now if it is idle, the handle stays usable. DbTool.closeDB and
+   * DbTool.close close the handle for good.
+   */
+  @Override
+  public void close() throws IOException {
+    closeIfIdle();
+  }
+
+  /**
+   * Close the engine and refuse further use, called by DbTool only.
+   */
+  synchronized void dispose() throws IOException {
+    closed = true;
+    if (refs > 0) {
+      logger.warn("Close db {} with {} open iterators or sessions.", path, refs);
+    }
+    if (db != null) {
+      DBInterface open = db;
+      db = null;
+      open.close();
+    }
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Holds a reference to the engine until closed.
+   */
+  private class HandleIterator implements DBIterator {
+
+    private final DBIterator iterator;
+    private boolean released;
+
+    private HandleIterator(DBIterator iterator) {
+      this.iterator = iterator;
+    }
+
+    @Override
+    public boolean valid() {
+      return iterator.valid();
+    }
+
+    @Override
+    public void seek(byte[] key) {
+      iterator.seek(key);
+    }
+
+    @Override
+    public void seekToFirst() {
+      iterator.seekToFirst();
+    }
+
+    @Override
+    public void seekToLast() {
+      iterator.seekToLast();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return iterator.hasNext();
+    }
+
+    @Override
+    public Map.Entry<byte[], byte[]> next() {
+      return iterator.next();
+    }
+
+    @Override
+    public byte[] getKey() {
+      return iterator.getKey();
+    }
+
+    @Override
+    public byte[] getValue() {
+      return iterator.getValue();
+    }
+
+    @Override
+    public long visit(Visitor visitor) {
+      return iterator.visit(visitor);
+    }
+
+    @Override
+    public long count() {
+      return iterator.count();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!released) {
+        released = true;
+        try {
+          iterator.close();
+        } finally {
+          release();
+        }
+      }
+    }
+  }
+
+  /**
+   * Holds a reference to the engine until closed.
+   */
+  private class HandleWriteSession implements WriteSession {
+
+    private final WriteSession session;
+    private boolean released;
+
+    private HandleWriteSession(WriteSession session) {
+      this.session = session;
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+      session.put(key, value);
+    }
+
+    @Override
+    public void delete(byte[] key) {
+      session.delete(key);
+    }
+
+    @Override
+    public void deleteRange(byte[] start, byte[] end) {
+      session.deleteRange(start, end);
+    }
+
+    @Override
+    public void flush() {
+      session.flush();
+    }
+
+    @Override
+    public int pending() {
+      return session.pending();
+    }
+
+    @Override
+    public void close() {
+      if (!released) {
+        released = true;
+        try {
+          session.close();
+        } finally {
+          release();
+        }
+      }
+    }
+  }
+
+  /**
+   * Holds a reference to the engine until closed.
+   */
+  private class HandleSnapshot implements DBInterface {
+
+    private final DBInterface snapshot;
+    private boolean released;
+
+    private HandleSnapshot(DBInterface snapshot) {
+      this.snapshot = snapshot;
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+      return snapshot.get(key);
+    }
+
+    @Override
+    public List<byte[]> multiGet(List<byte[]> keys) {
+      return snapshot.multiGet(keys);
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+      snapshot.put(key, value);
+    }
+
+    @Override
+    public void delete(byte[] key) {
+      snapshot.delete(key);
+    }
+
+    @Override
+    public WriteSession newWriteSession(WriteSessionOptions options) {
+      return snapshot.newWriteSession(options);
+    }
+
+    @Override
+    public DBIterator iterator(IteratorOptions options) {
+      return snapshot.iterator(options);
+    }
+
+    @Override
+    public long approximateSize(byte[] start, byte[] end) {
+      return snapshot.approximateSize(start, end);
+    }
+
+    @Override
+    public long size() {
+      return snapshot.size();
+    }
+
+    @Override
+    public long estimatedSize() {
+      return snapshot.estimatedSize();
+    }
+
+    @Override
+    public DBInterface snapshot() {
+      return snapshot.snapshot();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!released) {
+        released = true;
+        try {
+          snapshot.close();
+        } finally {
+          release();
+        }
+      }
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+  }
+}
@@ -0,0 +1,321 @@
+package org.tron.plugins.utils.db;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Operation counts, latency histograms and bytes of the databases opened through
+ * {@link DbTool}, recorded by {@link InstrumentedDB} once enabled. At exit the stores are
+ * printed as a table, the most time consuming first, and written to a Prometheus textfile
+ * for the node exporter when one is given.
+ */
+@Slf4j(topic = "tool")
+public final class DbMetrics {
+
+  private static final String PREFIX = "tron:toolkit_db_";
+  // upper bounds of the latency buckets in nanoseconds, the last bucket is unbounded
+  private static final long[] BOUNDS = {
+      1_000L, 2_500L, 5_000L, 10_000L, 25_000L, 50_000L, 100_000L, 250_000L, 500_000L,
+      1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L,
+      100_000_000L, 250_000_000L, 500_000_000L, 1_000_000_000L, 10_000_000_000L};
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private static final Map<String, Store> stores = new ConcurrentHashMap<>();
+  private static volatile boolean enabled;
+  private static Path textfile;
+  private static Thread hook;
+
+  public enum Op {
+    GET,
+    PUT,
+    DELETE,
+    NEXT,
+    FLUSH
+  }
+
+  private DbMetrics() {
+
+  }
+
+  /**
+   * Record the databases opened afterwards, report them at exit.
+   *
+   * @param file Prometheus textfile written at exit, null for none
+   */
+  public static synchronized void enable(Path file) {
+    enabled = true;
+    if (file != null) {
+      textfile = file;
+    }
+    if (hook == null) {
+      hook = new Thread(() -> report(System.out), "db-metrics");
+      Runtime.getRuntime().addShutdownHook(hook);
+    }
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * The metrics of a database, the same for every instance opened from the same path.
+   *
+   * @param dir parent path of the db
+   * @param name db name
+   * @return store metrics
+   */
+  public static Store store(String dir, String name) {
+    return stores.computeIfAbsent(Paths.get(dir, name).toString(),
+        path -> new Store(Paths.get(dir).toString(), name));
+  }
+
+  /**
+   * Print the summary table and write the textfile, if any.
+   *
+   * @param out receives the table
+   */
+  public static synchronized void report(PrintStream out) {
+    if (stores.isEmpty()) {
+      return;
+    }
+    String table = table();
+    logger.info("Db metrics:{}{}", System.lineSeparator(), table);
+    out.print(table);
+    out.flush();
+    if (textfile != null) {
+      try {
+        write(textfile);
+        logger.info("Db metrics written to {}.", textfile);
+      } catch (IOException e) {
+        logger.error("Write db metrics to {} failed.", textfile, e);
+      }
+    }
+  }
+
+  /**
+   * Stop recording and forget the stores, the shutdown hook stays and reports nothing.
+   */
+  static synchronized void reset() {
+    enabled = false;
+    textfile = null;
+    stores.clear();
+  }
+
+  /**
+   * One row per store and operation, the stores with the most time spent first.
+   */
+  static String table() {
+    List<Store> sorted = new ArrayList<>(stores.values());
+    sorted.sort(Comparator.comparingLong(Store::totalNanos).reversed());
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format(Locale.ROOT, "%-40s %-6s %12s %10s %10s %10s %10s %10s%n",
+        "db", "op", "count", "total ms", "avg us", "p99 us", "read MB", "write MB"));
+    for (Store store : sorted) {
+      String path = Paths.get(store.dir, store.name).toString();
+      boolean first = true;
+      for (Op op : Op.values()) {
+        Latency latency = store.latencies[op.ordinal()];
+        long count = latency.count.sum();
+        if (count == 0) {
+          continue;
+        }
+        long nanos = latency.nanos.sum();
+        sb.append(String.format(Locale.ROOT, "%-40s %-6s %12d %10d %10.1f %10.1f %10s %10s%n",
+            first ? abbreviate(path) : "", op.name().toLowerCase(Locale.ROOT), count,
+            nanos / 1_000_000, nanos / 1000.0 / count, latency.percentile(0.99) / 1000.0,
+            first ? toMb(store.bytesRead.sum()) : "",
+            first ? toMb(store.bytesWritten.sum()) : ""));
+        first = false;
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * The metrics in the Prometheus text format, written to a temporary file and moved over
+   * the old one, the node exporter never reads a partial file.
+   */
+  static void write(Path file) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    String latency = PREFIX + "op_latency_seconds";
+    sb.append("# HELP ").append(latency).append(" toolkit db operation latency.\n");
+    sb.append("# TYPE ").append(latency).append(" histogram\n");
+    for (Store store : stores.values()) {
+      for (Op op : Op.values()) {
+        Latency l = store.latencies[op.ordinal()];
+        long count = l.count.sum();
+        if (count == 0) {
+          continue;
+        }
+        String labels = store.labels() + "op=\"" + op.name().toLowerCase(Locale.ROOT) + "\",";
+        long cumulative = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+          cumulative += l.buckets[i].sum();
+          sb.append(latency).append("_bucket{").append(labels).append("le=\"")
+              .append(BOUNDS[i] / NANOS_PER_SECOND).append("\",} ")
+              .append((double) cumulative).append('\n');
+        }
+        sb.append(latency).append("_bucket{").append(labels).append("le=\"+Inf\",} ")
+            .append((double) count).append('\n');
+        sb.append(latency).append("_count{").append(labels).append("} ")
+            .append((double) count).append('\n');
+        sb.append(latency).append("_sum{").append(labels).append("} ")
+            .append(l.nanos.sum() / NANOS_PER_SECOND).append('\n');
+      }
+    }
+    String bytes = PREFIX + "bytes_total";
+    sb.append("# HELP ").append(bytes).append(" toolkit db bytes read and written.\n");
+    sb.append("# TYPE ").append(bytes).append(" counter\n");
+    for (Store store : stores.values()) {
+      sb.append(bytes).append('{').append(store.labels()).append("type=\"read\",} ")
+          .append((double) store.bytesRead.sum()).append('\n');
+      sb.append(bytes).append('{').append(store.labels()).append("type=\"write\",} ")
+          .append((double) store.bytesWritten.sum()).append('\n');
+    }
+    Path tmp = Paths.get(file.toString() + ".tmp");
+    Path parent = file.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    Files.write(tmp, sb.toString().getBytes(UTF_8));
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static String abbreviate(String path) {
+    return path.length() <= 40 ? path : "..." + path.substring(path.length() - 37);
+  }
+
+  private static String toMb(long bytes) {
+    return String.format(Locale.ROOT, "%.1f", bytes / 1024.0 / 1024.0);
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  /**
+   * Metrics of one database.
+   */
+  public static class Store {
+
+    @Getter
+    private final String dir;
+    @Getter
+    private final String name;
+    private final Latency[] latencies = new Latency[Op.values().length];
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    private Store(String dir, String name) {
+      this.dir = dir;
+      this.name = name;
+      for (int i = 0; i < latencies.length; i++) {
+        latencies[i] = new Latency();
+      }
+    }
+
+    /**
+     * Record operations that took nanos together, each is put in the bucket of the average.
+     *
+     * @param op operation
+     * @param count number of operations
+     * @param nanos time of all of them
+     */
+    public void record(Op op, long count, long nanos) {
+      latencies[op.ordinal()].add(count, nanos);
+    }
+
+    public void read(long bytes) {
+      bytesRead.add(bytes);
+    }
+
+    public void written(long bytes) {
+      bytesWritten.add(bytes);
+    }
+
+    public long count(Op op) {
+      return latencies[op.ordinal()].count.sum();
+    }
+
+    public long getBytesRead() {
+      return bytesRead.sum();
+    }
+
+    public long getBytesWritten() {
+      return bytesWritten.sum();
+    }
+
+    private long totalNanos() {
+      long nanos = 0;
+      for (Latency latency : latencies) {
+        nanos += latency.nanos.sum();
+      }
+      return nanos;
+    }
+
+    private String labels() {
+      return "db=\"" + escape(name) + "\",dir=\"" + escape(dir) + "\",";
+    }
+  }
+
+  /**
+   * Latency histogram with fixed buckets.
+   */
+  private static class Latency {
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    private Latency() {
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    private void add(long n, long time) {
+      if (n <= 0) {
+        return;
+      }
+      long each = time / n;
+      int i = 0;
+      while (i < BOUNDS.length && each > BOUNDS[i]) {
+        i++;
+      }
+      buckets[i].add(n);
+      count.add(n);
+      nanos.add(time);
+    }
+
+    /**
+     * Upper bound of the bucket holding the quantile, the last bound for the open bucket.
+     */
+    private long percentile(double quantile) {
+      long total = count.sum();
+      long rank = (long) Math.ceil(total * quantile);
+      long cumulative = 0;
+      for (int i = 0; i < BOUNDS.length; i++) {
+        cumulative += buckets[i].sum();
+        if (cumulative >= rank) {
+          return BOUNDS[i];
+        }
+      }
+      return BOUNDS[BOUNDS.length - 1];
+    }
+  }
+}
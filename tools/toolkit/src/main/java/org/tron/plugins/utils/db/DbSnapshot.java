@@ -0,0 +1,56 @@
+package org.tron.plugins.utils.db;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Read-only snapshot views of several databases of one dir, taken one right after
+ * another, see {@link DbTool#getSnapshot(String, boolean, String...)}.
+ */
+@Slf4j(topic = "tool")
+public class DbSnapshot implements Closeable {
+
+  private final String sourceDir;
+  private final Map<String, DBInterface> views = new LinkedHashMap<>();
+
+  DbSnapshot(String sourceDir) {
+    this.sourceDir = sourceDir;
+  }
+
+  void add(String dbName, DBInterface view) {
+    views.put(dbName, view);
+  }
+
+  /**
+   * The view of a database.
+   *
+   * @param dbName db name
+   * @return read-only view
+   */
+  public DBInterface get(String dbName) {
+    DBInterface view = views.get(dbName);
+    if (view == null) {
+      throw new IllegalArgumentException(String.format("db %s is not in the snapshot of %s",
+          dbName, sourceDir));
+    }
+    return view;
+  }
+
+  /**
+   * Release the snapshots, the databases stay open.
+   */
+  @Override
+  public void close() {
+    for (Map.Entry<String, DBInterface> view : views.entrySet()) {
+      try {
+        view.getValue().close();
+      } catch (IOException | RuntimeException e) {
+        logger.error("release snapshot of {} failed", view.getKey(), e);
+      }
+    }
+    views.clear();
+  }
+}
@@ -3,14 +3,21 @@ package org.tron.plugins.utils.db;
 import com.google.common.collect.Maps;
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.rocksdb.RocksDBException;
 import org.tron.plugins.utils.DBUtils;
 import org.tron.plugins.utils.FileUtils;
+import org.tron.plugins.utils.MemoryBudget;
 
 
 @Slf4j(topic = "tool")
@@ -21,11 +28,59 @@ public class DbTool {
   private static final String FILE_SEPARATOR = File.separator;
   private static final String ROCKSDB = "ROCKSDB";
 
-  private static final Map<String, DBInterface> dbMap = Maps.newConcurrentMap();
+  public static final int DEFAULT_MAX_OPEN_DBS = 64;
+  public static final int DEFAULT_MAX_OPEN_FILES = 32768;
+  // leveldb raises a smaller max_open_files to 74
+  private static final int MIN_OPEN_FILES_PER_DB = 100;
+
+  private static volatile int maxOpenDbs = DEFAULT_MAX_OPEN_DBS;
+  private static volatile int maxOpenFiles = DEFAULT_MAX_OPEN_FILES;
+
+  private static final Map<String, DbHandle> dbMap = Maps.newConcurrentMap();
+  private static final Map<String, DBInterface> viewMap = Maps.newConcurrentMap();
+  private static final Map<String, DBInterface> instrumentedMap = Maps.newConcurrentMap();
+  private static final Map<String, Map<String, NavigableMap<byte[], byte[]>>> checkpointIndex =
+      Maps.newConcurrentMap();
 
   public enum DbType {
     LevelDB,
-    RocksDB
+    RocksDB,
+    /**
+     * {@link MemoryDBImpl}, only by name through {@link #getDB(String, String, DbType)}, the
+     * later lookups of the same db get it without the type. Never closed when idle.
+     */
+    Memory
+  }
+
+  /**
+   * Set how many managed dbs may be open at once, the least recently used idle ones are
+   * closed beyond it.
+   *
+   * @param dbs max open dbs
+   */
+  public static void setMaxOpenDbs(int dbs) {
+    if (dbs <= 0) {
+      throw new IllegalArgumentException("max open dbs must be positive: " + dbs);
+    }
+    maxOpenDbs = dbs;
+  }
+
+  public static int getMaxOpenDbs() {
+    return maxOpenDbs;
+  }
+
+  /**
+   * Set the table files all managed dbs may keep open together. Every db opened afterwards
+   * gets max open files / max open dbs of them, at least {@value #MIN_OPEN_FILES_PER_DB},
+   * and the least recently used idle dbs are closed beyond the total.
+   *
+   * @param files max open files
+   */
+  public static void setMaxOpenFiles(int files) {
+    if (files <= 0) {
+      throw new IllegalArgumentException("max open files must be positive: " + files);
+    }
+    maxOpenFiles = files;
   }
 
   /**
@@ -66,6 +121,8 @@ public class DbTool {
 
   /**
    * Get the DB object according to the specified path and engine.
+   * The db is a {@link DbHandle}, it may be closed when idle and is opened again on use.
+   * It is wrapped in an {@link InstrumentedDB} once {@link DbMetrics} is enabled.
    *
    * @param sourceDir to be open parent path
    * @param dbName database name
@@ -76,24 +133,153 @@ public class DbTool {
    */
   public static DBInterface getDB(String sourceDir, String dbName, DbType type)
       throws IOException, RocksDBException {
-    Path path = Paths.get(sourceDir, dbName);
-    if (dbMap.containsKey(path.toString())) {
-      return dbMap.get(path.toString());
+    return getDB(sourceDir, dbName, type, false);
+  }
+
+  /**
+   * Get the DB object to read it only, for the commands that analyse a database. A RocksDB
+   * is opened without its LOCK file, flushes and compactions, so several of them may read
+   * the same dir at once. A LevelDB cannot be opened so, it only refuses writes. Both fail
+   * rather than create a missing db. A db already open for writing is shared as is, a later
+   * {@link #getDB(String, String)} of an idle read-only db reopens it for writing.
+   *
+   * @param sourceDir the parent path of db
+   * @param dbName db dir name
+   * @return db object, its writes throw {@link UnsupportedOperationException}
+   * @throws IOException leveldb error
+   * @throws RocksDBException rocksdb error
+   */
+  public static DBInterface getReadOnlyDB(String sourceDir, String dbName)
+      throws IOException, RocksDBException {
+    return getDB(sourceDir, dbName, getDbType(sourceDir, dbName), true);
+  }
+
+  private static DBInterface getDB(String sourceDir, String dbName, DbType type,
+                                   boolean readOnly) throws IOException, RocksDBException {
+    String path = Paths.get(sourceDir, dbName).toString();
+    DbHandle handle = dbMap.get(path);
+    if (handle == null) {
+      synchronized (DbTool.class) {
+        handle = dbMap.get(path);
+        if (handle == null) {
+          handle = new DbHandle(path, dbName, type, openFilesPerDb(type), readOnly);
+          handle.open();
+          dbMap.put(path, handle);
+          evict(handle);
+        }
+      }
+    }
+    // an idle read-only db is reopened for writing, one still read is not
+    if (handle.isReadOnly() && !readOnly && !handle.makeWritable()) {
+      throw new IllegalStateException(String.format("db %s is open read-only and in use",
+          path));
     }
-    DBInterface db;
+    if (!DbMetrics.isEnabled()) {
+      return handle;
+    }
+    DbHandle db = handle;
+    return instrumentedMap.computeIfAbsent(path,
+        p -> new InstrumentedDB(db, DbMetrics.store(sourceDir, dbName)));
+  }
+
+  /**
+   * Record the operations of a db opened without DbTool once {@link DbMetrics} is enabled.
+   *
+   * @param db database
+   * @param sourceDir the parent path of db
+   * @return the db, instrumented if metrics are enabled
+   */
+  public static DBInterface instrument(DBInterface db, String sourceDir) {
+    return DbMetrics.isEnabled()
+        ? new InstrumentedDB(db, DbMetrics.store(sourceDir, db.getName())) : db;
+  }
+
+  /**
+   * Engine of a db, looking through the DbTool wrappers.
+   *
+   * @param db database
+   * @return engine, null for a db of no engine such as a checkpoint view
+   */
+  static DbType typeOf(DBInterface db) {
+    if (db instanceof InstrumentedDB) {
+      return typeOf(((InstrumentedDB) db).getDb());
+    }
+    if (db instanceof DbHandle) {
+      return ((DbHandle) db).getType();
+    }
+    if (db instanceof LevelDBImpl) {
+      return DbType.LevelDB;
+    }
+    if (db instanceof RocksDBImpl) {
+      return DbType.RocksDB;
+    }
+    if (db instanceof MemoryDBImpl) {
+      return DbType.Memory;
+    }
+    return null;
+  }
+
+  private static int openFilesPerDb(DbType type) {
+    int files = Math.max(MIN_OPEN_FILES_PER_DB, maxOpenFiles / maxOpenDbs);
+    switch (type) {
+      case LevelDB:
+        return Math.min(files, DBUtils.LEVELDB_MAX_OPEN_FILES);
+      case RocksDB:
+        return Math.min(files, DBUtils.ROCKSDB_MAX_OPEN_FILES);
+      default:
+        return 0;
+    }
+  }
+
+  static DBInterface open(String path, String dbName, DbType type, int maxOpenFiles,
+                          boolean readOnly) throws IOException, RocksDBException {
     switch (type) {
       case LevelDB:
-        db = openLevelDb(path, dbName);
-        dbMap.put(path.toString(), db);
-        break;
+        return readOnly
+            ? new LevelDBImpl(DBUtils.newLevelDbReadOnly(Paths.get(path), maxOpenFiles),
+                dbName, true)
+            : new LevelDBImpl(DBUtils.newLevelDb(Paths.get(path), maxOpenFiles), dbName);
       case RocksDB:
-        db = openRocksDb(path, dbName);
-        dbMap.put(path.toString(), db);
-        break;
+        return readOnly
+            ? new RocksDBImpl(DBUtils.newRocksDbReadOnly(Paths.get(path), maxOpenFiles),
+                dbName, true)
+            : new RocksDBImpl(DBUtils.newRocksDb(Paths.get(path), maxOpenFiles), dbName);
+      case Memory:
+        return new MemoryDBImpl(dbName);
       default:
         throw new IllegalStateException("Unexpected value: " + type);
     }
-    return db;
+  }
+
+  /**
+   * Close the least recently used idle dbs until the open ones are within the limits.
+   * Dbs in use are never closed, the limits are exceeded while all of them are in use.
+   *
+   * @param opened the db just opened, kept open
+   */
+  static synchronized void evict(DbHandle opened) {
+    List<DbHandle> open = dbMap.values().stream().filter(DbHandle::isOpen)
+        .sorted(Comparator.comparingLong(DbHandle::getLastUsed)).collect(Collectors.toList());
+    int dbs = open.size();
+    long files = open.stream().mapToLong(DbHandle::getMaxOpenFiles).sum();
+    for (DbHandle handle : open) {
+      if (dbs <= maxOpenDbs && files <= maxOpenFiles) {
+        return;
+      }
+      try {
+        if (handle != opened && handle.closeIfIdle()) {
+          dbs--;
+          files -= handle.getMaxOpenFiles();
+          logger.debug("Closed idle db {}, {} dbs open.", handle.getPath(), dbs);
+        }
+      } catch (IOException e) {
+        logger.warn("Close idle db {} failed: {}", handle.getPath(), e.getMessage());
+      }
+    }
+    if (dbs > maxOpenDbs || files > maxOpenFiles) {
+      logger.debug("{} dbs with {} files open are in use, limits {} dbs, {} files.", dbs,
+          files, maxOpenDbs, maxOpenFiles);
+    }
   }
 
   /**
@@ -114,14 +300,125 @@ public class DbTool {
     DbType type = getDbType(sourceDir.toString(), dbName);
     switch (type) {
       case LevelDB:
-        return openLevelDb(path, dbName);
+        return instrument(openLevelDb(path, dbName), sourceDir.toString());
+      case RocksDB:
+        return instrument(openRocksDb(path, dbName), sourceDir.toString());
+      default:
+        throw new IllegalStateException("Unexpected value: " + type);
+    }
+  }
+
+  /**
+   * Get the DB object to read it only, as {@link #getReadOnlyDB(String, String)},
+   *  not managed by dbMap.
+   *
+   * @param sourceDir the parent path of db
+   * @param dbName db dir name
+   *
+   * @return db object
+   *
+   * @throws IOException leveldb error
+   * @throws RocksDBException rocksdb error
+   */
+  public static DBInterface getReadOnlyDB(Path sourceDir, String dbName)
+      throws IOException, RocksDBException {
+    Path path = Paths.get(sourceDir.toString(), dbName);
+    DbType type = getDbType(sourceDir.toString(), dbName);
+    switch (type) {
+      case LevelDB:
+        return instrument(new LevelDBImpl(DBUtils.newLevelDbReadOnly(path,
+            DBUtils.LEVELDB_MAX_OPEN_FILES), dbName, true), sourceDir.toString());
       case RocksDB:
-        return openRocksDb(path, dbName);
+        return instrument(new RocksDBImpl(DBUtils.newRocksDbReadOnly(path), dbName, true),
+            sourceDir.toString());
       default:
         throw new IllegalStateException("Unexpected value: " + type);
     }
   }
 
+  /**
+   * Get a read-only view of the db with the checkpoint contents of sourceDir layered over it.
+   * The checkpoints are listed and indexed once per sourceDir, views are cached like dbs.
+   * The db and the checkpoints are opened by {@link #getReadOnlyDB(String, String)}.
+   *
+   * @param sourceDir the parent path of db
+   * @param dbName db dir name
+   *
+   * @return checkpoint view
+   *
+   * @throws IOException leveldb error
+   * @throws RocksDBException rocksdb error
+   */
+  public static DBInterface getCheckpointView(String sourceDir, String dbName)
+      throws IOException, RocksDBException {
+    String path = Paths.get(sourceDir, dbName).toString();
+    DBInterface view = viewMap.get(path);
+    if (view != null) {
+      return view;
+    }
+    synchronized (DbTool.class) {
+      view = viewMap.get(path);
+      if (view == null) {
+        NavigableMap<byte[], byte[]> overlay = getCheckpointIndex(sourceDir).get(dbName);
+        view = new CheckpointOverlay(getReadOnlyDB(sourceDir, dbName),
+            overlay == null ? CheckpointOverlay.empty(dbName) : overlay);
+        viewMap.put(path, view);
+      }
+      return view;
+    }
+  }
+
+  /**
+   * Snapshot views of several dbs of sourceDir, taken one right after another once all of
+   * them are open. Nothing in the process writes them in between, so reads across the
+   * views see one state while the dbs are written afterwards. Neither engine can snapshot
+   * several databases atomically, a process writing the dbs at the same time may land
+   * between two snapshots.
+   *
+   * @param sourceDir the parent path of the dbs
+   * @param checkpoint whether the unflushed checkpoints are layered over the dbs, as in
+   *     {@link #getCheckpointView(String, String)}
+   * @param dbNames db dir names
+   * @return snapshot, must be closed before the dbs are
+   * @throws IOException leveldb error
+   * @throws RocksDBException rocksdb error
+   */
+  public static DbSnapshot getSnapshot(String sourceDir, boolean checkpoint, String... dbNames)
+      throws IOException, RocksDBException {
+    List<DBInterface> dbs = new ArrayList<>(dbNames.length);
+    for (String dbName : dbNames) {
+      dbs.add(checkpoint ? getCheckpointView(sourceDir, dbName) : getDB(sourceDir, dbName));
+    }
+    DbSnapshot snapshot = new DbSnapshot(sourceDir);
+    try {
+      for (int i = 0; i < dbNames.length; i++) {
+        snapshot.add(dbNames[i], dbs.get(i).snapshot());
+      }
+    } catch (RuntimeException e) {
+      snapshot.close();
+      throw e;
+    }
+    return snapshot;
+  }
+
+  private static Map<String, NavigableMap<byte[], byte[]>> getCheckpointIndex(String sourceDir)
+      throws IOException, RocksDBException {
+    String key = Paths.get(sourceDir).toString();
+    Map<String, NavigableMap<byte[], byte[]>> index = checkpointIndex.get(key);
+    if (index == null) {
+      List<DBInterface> checkpoints = new ArrayList<>();
+      for (Path checkpoint : CheckpointOverlay.checkpoints(sourceDir)) {
+        checkpoints.add(getReadOnlyDB(checkpoint.getParent().toString(),
+            checkpoint.getFileName().toString()));
+      }
+      index = CheckpointOverlay.index(checkpoints);
+      logger.info("Indexed {} checkpoints of {}, {} dbs overlaid.", checkpoints.size(),
+          sourceDir, index.size());
+      checkpointIndex.put(key, index);
+    }
+    return index;
+  }
+
   /**
    * Close db.
    *
@@ -133,11 +430,13 @@ public class DbTool {
   public static void closeDB(String sourceDir, String dbName)
           throws IOException {
     Path path = Paths.get(sourceDir, dbName);
-    DBInterface db = dbMap.get(path.toString());
+    viewMap.remove(path.toString());
+    instrumentedMap.remove(path.toString());
+    DbHandle db = dbMap.get(path.toString());
     if (db != null) {
       try {
         dbMap.remove(path.toString());
-        db.close();
+        db.dispose();
       } catch (IOException e) {
         logger.error("close db {} error: {}", path, e);
         throw e;
@@ -149,11 +448,14 @@ public class DbTool {
    * Close all dbs.
    */
   public static void close() {
-    Iterator<Map.Entry<String, DBInterface>> iterator = dbMap.entrySet().iterator();
+    viewMap.clear();
+    instrumentedMap.clear();
+    checkpointIndex.clear();
+    Iterator<Map.Entry<String, DbHandle>> iterator = dbMap.entrySet().iterator();
     while (iterator.hasNext()) {
-      Map.Entry<String, DBInterface> next = iterator.next();
+      Map.Entry<String, DbHandle> next = iterator.next();
       try {
-        next.getValue().close();
+        next.getValue().dispose();
       } catch (IOException e) {
         logger.error("close db failed, db: {}", next.getKey(), e);
       }
@@ -161,6 +463,24 @@ public class DbTool {
     }
   }
 
+  /**
+   * Log and print the memory used by the RocksDB databases of the command against the
+   * {@link MemoryBudget}, the open ones as they are now and the closed ones as they were
+   * when closed.
+   *
+   * @param out where to print the usage
+   */
+  public static void reportMemoryUsage(PrintStream out) {
+    for (DbHandle handle : dbMap.values()) {
+      handle.ifOpen(db -> {
+        if (db instanceof RocksDBImpl) {
+          ((RocksDBImpl) db).recordMemoryUsage();
+        }
+      });
+    }
+    MemoryBudget.report(out);
+  }
+
   private static DbType getDbType(String sourceDir, String dbName) {
     String engineFile = String.format("%s%s%s%s%s", sourceDir, FILE_SEPARATOR,
             dbName, FILE_SEPARATOR, ENGINE_FILE);
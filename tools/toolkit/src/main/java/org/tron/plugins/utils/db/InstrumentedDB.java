@@ -0,0 +1,238 @@
+package org.tron.plugins.utils.db;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+
+/**
+ * Records the operations on a database in its {@link DbMetrics.Store}: gets, puts,
+ * deletes, iterator steps and write session flushes with their latency, and the bytes of
+ * the keys and values read and written.
+ */
+public class InstrumentedDB implements DBInterface {
+
+  @Getter
+  private final DBInterface db;
+  private final DbMetrics.Store metrics;
+
+  public InstrumentedDB(DBInterface db, DbMetrics.Store metrics) {
+    this.db = db;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public byte[] get(byte[] key) {
+    long start = System.nanoTime();
+    byte[] value = db.get(key);
+    metrics.record(DbMetrics.Op.GET, 1, System.nanoTime() - start);
+    metrics.read(key.length + (value == null ? 0 : value.length));
+    return value;
+  }
+
+  @Override
+  public List<byte[]> multiGet(List<byte[]> keys) {
+    long start = System.nanoTime();
+    List<byte[]> values = db.multiGet(keys);
+    metrics.record(DbMetrics.Op.GET, keys.size(), System.nanoTime() - start);
+    long bytes = 0;
+    for (int i = 0; i < keys.size(); i++) {
+      byte[] value = values.get(i);
+      bytes += keys.get(i).length + (value == null ? 0 : value.length);
+    }
+    metrics.read(bytes);
+    return values;
+  }
+
+  @Override
+  public void put(byte[] key, byte[] value) {
+    long start = System.nanoTime();
+    db.put(key, value);
+    metrics.record(DbMetrics.Op.PUT, 1, System.nanoTime() - start);
+    metrics.written(key.length + value.length);
+  }
+
+  @Override
+  public void delete(byte[] key) {
+    long start = System.nanoTime();
+    db.delete(key);
+    metrics.record(DbMetrics.Op.DELETE, 1, System.nanoTime() - start);
+    metrics.written(key.length);
+  }
+
+  @Override
+  public WriteSession newWriteSession(WriteSessionOptions options) {
+    return new InstrumentedWriteSession(db.newWriteSession(options));
+  }
+
+  @Override
+  public DBIterator iterator(IteratorOptions options) {
+    return new InstrumentedIterator(db.iterator(options));
+  }
+
+  @Override
+  public long approximateSize(byte[] start, byte[] end) {
+    return db.approximateSize(start, end);
+  }
+
+  @Override
+  public long size() {
+    return db.size();
+  }
+
+  @Override
+  public long estimatedSize() {
+    return db.estimatedSize();
+  }
+
+  @Override
+  public DBInterface snapshot() {
+    return new InstrumentedDB(db.snapshot(), metrics);
+  }
+
+  @Override
+  public void close() throws IOException {
+    db.close();
+  }
+
+  @Override
+  public String getName() {
+    return db.getName();
+  }
+
+  /**
+   * Times the steps, a visit or count is recorded as one sample of all its steps.
+   */
+  private class InstrumentedIterator implements DBIterator {
+
+    private final DBIterator iterator;
+
+    private InstrumentedIterator(DBIterator iterator) {
+      this.iterator = iterator;
+    }
+
+    @Override
+    public boolean valid() {
+      return iterator.valid();
+    }
+
+    @Override
+    public void seek(byte[] key) {
+      iterator.seek(key);
+    }
+
+    @Override
+    public void seekToFirst() {
+      iterator.seekToFirst();
+    }
+
+    @Override
+    public void seekToLast() {
+      iterator.seekToLast();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return iterator.hasNext();
+    }
+
+    @Override
+    public Map.Entry<byte[], byte[]> next() {
+      long start = System.nanoTime();
+      Map.Entry<byte[], byte[]> entry = iterator.next();
+      metrics.record(DbMetrics.Op.NEXT, 1, System.nanoTime() - start);
+      metrics.read(entry.getKey().length + entry.getValue().length);
+      return entry;
+    }
+
+    @Override
+    public byte[] getKey() {
+      return iterator.getKey();
+    }
+
+    @Override
+    public byte[] getValue() {
+      return iterator.getValue();
+    }
+
+    @Override
+    public long visit(Visitor visitor) {
+      long[] bytes = {0};
+      long start = System.nanoTime();
+      long visited = iterator.visit((key, value) -> {
+        bytes[0] += key.length + value.length;
+        return visitor.visit(key, value);
+      });
+      metrics.record(DbMetrics.Op.NEXT, visited, System.nanoTime() - start);
+      metrics.read(bytes[0]);
+      return visited;
+    }
+
+    @Override
+    public long count() {
+      long start = System.nanoTime();
+      long count = iterator.count();
+      metrics.record(DbMetrics.Op.NEXT, count, System.nanoTime() - start);
+      return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+      iterator.close();
+    }
+  }
+
+  /**
+   * Buffered puts and deletes are cheap, the ones that fill the batch carry its write.
+   */
+  private class InstrumentedWriteSession implements WriteSession {
+
+    private final WriteSession session;
+
+    private InstrumentedWriteSession(WriteSession session) {
+      this.session = session;
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+      long start = System.nanoTime();
+      session.put(key, value);
+      metrics.record(DbMetrics.Op.PUT, 1, System.nanoTime() - start);
+      metrics.written(key.length + value.length);
+    }
+
+    @Override
+    public void delete(byte[] key) {
+      long start = System.nanoTime();
+      session.delete(key);
+      metrics.record(DbMetrics.Op.DELETE, 1, System.nanoTime() - start);
+      metrics.written(key.length);
+    }
+
+    @Override
+    public void deleteRange(byte[] start, byte[] end) {
+      long begin = System.nanoTime();
+      session.deleteRange(start, end);
+      metrics.record(DbMetrics.Op.DELETE, 1, System.nanoTime() - begin);
+    }
+
+    @Override
+    public void flush() {
+      long start = System.nanoTime();
+      session.flush();
+      metrics.record(DbMetrics.Op.FLUSH, 1, System.nanoTime() - start);
+    }
+
+    @Override
+    public int pending() {
+      return session.pending();
+    }
+
+    @Override
+    public void close() {
+      long start = System.nanoTime();
+      session.close();
+      metrics.record(DbMetrics.Op.FLUSH, 1, System.nanoTime() - start);
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package org.tron.plugins.utils.db;
+
+import java.util.Arrays;
+import lombok.Getter;
+
+/**
+ * Options for {@link DBInterface#iterator(IteratorOptions)}.
+ */
+@Getter
+public class IteratorOptions {
+
+  /**
+   * Readahead for scans that read a range from start to end.
+   */
+  public static final long SCAN_READAHEAD = 2 * 1024 * 1024L;
+
+  /**
+   * Keys the iterator is bounded to, only for databases whose keys are ordered bytewise.
+   * RocksDB stops at the end itself with iterate_upper_bound, the other engines check the
+   * keys, seeks are clamped to the start for all of them.
+   */
+  private KeyRange range = KeyRange.all();
+
+  /**
+   * Bytes read ahead by RocksDB on sequential reads, 0 for the engine default.
+   */
+  private long readaheadSize = 0;
+
+  /**
+   * Whether the blocks read are put in the block cache, a scan read once should not evict
+   * the blocks of the point reads.
+   */
+  private boolean fillCache = false;
+
+  public IteratorOptions range(KeyRange range) {
+    this.range = range == null ? KeyRange.all() : range;
+    return this;
+  }
+
+  /**
+   * Bound the iterator to the keys starting with prefix. The databases have no prefix
+   * extractor, so this is the range from prefix to the first key after all of them rather
+   * than prefix_same_as_start.
+   *
+   * @param prefix key prefix
+   * @return this
+   */
+  public IteratorOptions prefix(byte[] prefix) {
+    return range(new KeyRange(prefix, prefixEnd(prefix)));
+  }
+
+  public IteratorOptions readaheadSize(long readaheadSize) {
+    if (readaheadSize < 0) {
+      throw new IllegalArgumentException("readaheadSize must not be negative: "
+          + readaheadSize);
+    }
+    this.readaheadSize = readaheadSize;
+    return this;
+  }
+
+  public IteratorOptions fillCache(boolean fillCache) {
+    this.fillCache = fillCache;
+    return this;
+  }
+
+  /**
+   * Options for a sequential scan of a range, with readahead and without filling the cache.
+   *
+   * @param range keys to scan
+   * @return scan options
+   */
+  public static IteratorOptions scan(KeyRange range) {
+    return new IteratorOptions().range(range).readaheadSize(SCAN_READAHEAD);
+  }
+
+  /**
+   * The first key after all keys starting with prefix.
+   *
+   * @param prefix key prefix
+   * @return the prefix with its last byte below 0xff incremented, null if there is none
+   */
+  static byte[] prefixEnd(byte[] prefix) {
+    for (int i = prefix.length - 1; i >= 0; i--) {
+      if (prefix[i] != (byte) 0xff) {
+        byte[] end = Arrays.copyOf(prefix, i + 1);
+        end[i]++;
+        return end;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("IteratorOptions{range=%s, readaheadSize=%d, fillCache=%b}",
+        range, readaheadSize, fillCache);
+  }
+}
@@ -0,0 +1,64 @@
+package org.tron.plugins.utils.db;
+
+import lombok.Getter;
+import org.tron.plugins.utils.ByteArray;
+
+/**
+ * A contiguous key range [start, end) in unsigned lexicographic order.
+ * A null start or end means the range is unbounded on that side.
+ */
+@Getter
+public class KeyRange {
+
+  private static final KeyRange ALL = new KeyRange(null, null);
+
+  private final byte[] start;
+  private final byte[] end;
+
+  public KeyRange(byte[] start, byte[] end) {
+    if (start != null && end != null && ByteArray.compareUnsigned(start, end) > 0) {
+      throw new IllegalArgumentException(String.format("start %s is after end %s",
+          ByteArray.toHexString(start), ByteArray.toHexString(end)));
+    }
+    this.start = start;
+    this.end = end;
+  }
+
+  public static KeyRange all() {
+    return ALL;
+  }
+
+  public boolean isAll() {
+    return start == null && end == null;
+  }
+
+  /**
+   * Whether the key is at or past the end of this range.
+   *
+   * @param key key to check
+   * @return true if the key is not before end
+   */
+  public boolean isAfter(byte[] key) {
+    return end != null && ByteArray.compareUnsigned(key, end) >= 0;
+  }
+
+  /**
+   * Whether the key is before the start of this range.
+   *
+   * @param key key to check
+   * @return true if the key is before start
+   */
+  public boolean isBefore(byte[] key) {
+    return start != null && ByteArray.compareUnsigned(key, start) < 0;
+  }
+
+  public boolean contains(byte[] key) {
+    return !isBefore(key) && !isAfter(key);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("[%s, %s)", start == null ? "-inf" : ByteArray.toHexString(start),
+        end == null ? "+inf" : ByteArray.toHexString(end));
+  }
+}
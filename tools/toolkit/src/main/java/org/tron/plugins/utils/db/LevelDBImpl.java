@@ -1,51 +1,182 @@
 package org.tron.plugins.utils.db;
 
-import com.google.common.collect.Streams;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import lombok.Getter;
 import org.iq80.leveldb.DB;
+import org.iq80.leveldb.Range;
 import org.iq80.leveldb.ReadOptions;
+import org.iq80.leveldb.Snapshot;
 
 
 public class LevelDBImpl implements DBInterface {
 
+  private static final int SAMPLE_POINTS = 16;
+  private static final int SAMPLE_ENTRIES = 64;
+  // smaller batches are not worth the hand-off to the common pool
+  private static final int PARALLEL_GETS = 64;
+
   private DB leveldb;
 
   @Getter
   private final String name;
+  // reads are pinned to it, null for the live database
+  private final Snapshot snapshot;
+  private final boolean readOnly;
 
   public LevelDBImpl(DB leveldb, String name) {
+    this(leveldb, name, false);
+  }
+
+  /**
+   * A db whose writes throw if readOnly, for a db opened by
+   * {@link org.tron.plugins.utils.DBUtils#newLevelDbReadOnly(java.nio.file.Path, int)}.
+   *
+   * @param leveldb database
+   * @param name db name
+   * @param readOnly refuse writes
+   */
+  public LevelDBImpl(DB leveldb, String name, boolean readOnly) {
+    this(leveldb, name, null, readOnly);
+  }
+
+  private LevelDBImpl(DB leveldb, String name, Snapshot snapshot, boolean readOnly) {
     this.leveldb = leveldb;
     this.name = name;
+    this.snapshot = snapshot;
+    this.readOnly = readOnly;
   }
 
   @Override
   public byte[] get(byte[] key) {
-    return leveldb.get(key);
+    return snapshot == null ? leveldb.get(key) : leveldb.get(key, readOptions());
+  }
+
+  /**
+   * LevelDB has no batched read, a large batch is read on the common fork join pool so
+   * the reads of different blocks overlap.
+   */
+  @Override
+  public List<byte[]> multiGet(List<byte[]> keys) {
+    if (keys.size() < PARALLEL_GETS) {
+      return DBInterface.super.multiGet(keys);
+    }
+    return keys.parallelStream().map(this::get).collect(Collectors.toList());
   }
 
   @Override
   public void put(byte[] key, byte[] value) {
+    checkWritable();
     leveldb.put(key, value);
   }
 
   @Override
   public void delete(byte[] key) {
+    checkWritable();
     leveldb.delete(key);
   }
 
   @Override
-  public DBIterator iterator() {
-    return new LevelDBIterator(leveldb.iterator(new ReadOptions().fillCache(false)));
+  public WriteSession newWriteSession(WriteSessionOptions options) {
+    checkWritable();
+    return new LevelDBWriteSession(leveldb, options);
+  }
+
+  /**
+   * LevelDB has neither upper bound nor readahead, the range is checked on the keys.
+   */
+  @Override
+  public DBIterator iterator(IteratorOptions options) {
+    DBIterator iterator = new LevelDBIterator(leveldb.iterator(
+        readOptions().fillCache(options.isFillCache())));
+    return options.getRange().isAll() ? iterator
+        : new BoundedDBIterator(iterator, options.getRange());
+  }
+
+  @Override
+  public long approximateSize(byte[] start, byte[] end) {
+    return leveldb.getApproximateSizes(new Range(start, end))[0];
   }
 
   @Override
   public long size() {
-    return Streams.stream(leveldb.iterator()).count();
+    try (DBIterator iterator = iterator()) {
+      iterator.seekToFirst();
+      return iterator.count();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * The approximate on-disk size of the whole key space divided by the average entry size,
+   * sampled at a few interpolated keys. On-disk blocks are compressed, so keys are rather
+   * under counted. A database whose data is still only in memtable or log is small and is
+   * counted exactly.
+   */
+  @Override
+  public long estimatedSize() {
+    try (DBIterator iterator = iterator()) {
+      iterator.seekToFirst();
+      if (!iterator.valid()) {
+        return 0;
+      }
+      byte[] first = iterator.getKey();
+      iterator.seekToLast();
+      byte[] last = iterator.getKey();
+      long bytes = approximateSize(first, RangePartitioner.successor(last));
+      if (bytes <= 0) {
+        return size();
+      }
+      List<byte[]> points = new ArrayList<>();
+      points.add(first);
+      points.addAll(RangePartitioner.interpolate(first, last, SAMPLE_POINTS));
+      long entries = 0;
+      long entryBytes = 0;
+      for (byte[] point : points) {
+        iterator.seek(point);
+        for (int i = 0; i < SAMPLE_ENTRIES && iterator.hasNext(); i++) {
+          Map.Entry<byte[], byte[]> entry = iterator.next();
+          entryBytes += entry.getKey().length + entry.getValue().length;
+          entries++;
+        }
+      }
+      return Math.max(entries, bytes * entries / Math.max(1, entryBytes));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * The database stays open for the snapshot, it must be closed before the database.
+   */
+  @Override
+  public DBInterface snapshot() {
+    if (snapshot != null) {
+      throw new UnsupportedOperationException(String.format("%s is a snapshot", name));
+    }
+    return new LevelDBImpl(leveldb, name, leveldb.getSnapshot(), true);
+  }
+
+  private ReadOptions readOptions() {
+    return new ReadOptions().snapshot(snapshot);
+  }
+
+  private void checkWritable() {
+    if (readOnly) {
+      throw new UnsupportedOperationException(String.format("db %s is read-only", name));
+    }
   }
 
   @Override
   public void close() throws IOException {
-    leveldb.close();
+    if (snapshot != null) {
+      snapshot.close();
+    } else {
+      leveldb.close();
+    }
   }
 }
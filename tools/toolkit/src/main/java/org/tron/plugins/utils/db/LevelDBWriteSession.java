@@ -0,0 +1,103 @@
+package org.tron.plugins.utils.db;
+
+import java.io.IOException;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.ReadOptions;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.WriteOptions;
+import org.tron.plugins.utils.ByteArray;
+
+/**
+ * LevelDB {@link WriteSession} backed by {@link WriteBatch}.
+ * LevelDB always writes the log, so {@link WriteSessionOptions#isDisableWal()} is ignored.
+ */
+public class LevelDBWriteSession implements WriteSession {
+
+  private final DB leveldb;
+  private final WriteSessionOptions options;
+  private WriteBatch batch;
+  private int pending;
+
+  public LevelDBWriteSession(DB leveldb, WriteSessionOptions options) {
+    this.leveldb = leveldb;
+    this.options = options;
+    this.batch = leveldb.createWriteBatch();
+  }
+
+  @Override
+  public void put(byte[] key, byte[] value) {
+    batch.put(key, value);
+    maybeFlush();
+  }
+
+  @Override
+  public void delete(byte[] key) {
+    batch.delete(key);
+    maybeFlush();
+  }
+
+  @Override
+  public void deleteRange(byte[] start, byte[] end) {
+    // make the buffered puts visible to the iterator, they are in the range too
+    flush();
+    try (DBIterator iterator = leveldb.iterator(new ReadOptions().fillCache(false))) {
+      for (iterator.seek(start); iterator.hasNext(); iterator.next()) {
+        byte[] key = iterator.peekNext().getKey();
+        if (ByteArray.compareUnsigned(key, end) >= 0) {
+          break;
+        }
+        delete(key);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public void flush() {
+    write(false);
+  }
+
+  @Override
+  public int pending() {
+    return pending;
+  }
+
+  @Override
+  public void close() {
+    if (batch == null) {
+      return;
+    }
+    try {
+      write(options.isSyncOnClose());
+    } finally {
+      closeBatch();
+    }
+  }
+
+  private void maybeFlush() {
+    if (++pending >= options.getFlushSize()) {
+      flush();
+    }
+  }
+
+  private void write(boolean sync) {
+    if (pending == 0 && !sync) {
+      return;
+    }
+    leveldb.write(batch, new WriteOptions().sync(sync));
+    closeBatch();
+    batch = leveldb.createWriteBatch();
+    pending = 0;
+  }
+
+  private void closeBatch() {
+    try {
+      batch.close();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    batch = null;
+  }
+}
@@ -0,0 +1,158 @@
+package org.tron.plugins.utils.db;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.iq80.leveldb.impl.FileMetaData;
+import org.iq80.leveldb.impl.LogMonitors;
+import org.iq80.leveldb.impl.LogReader;
+import org.iq80.leveldb.impl.VersionEdit;
+import org.iq80.leveldb.util.Slice;
+
+/**
+ * The live table files of a database, table files are immutable so a file name and size
+ * stand for its contents within one database. Used to tell which key ranges changed since
+ * an earlier scan of the same database.
+ *
+ * <p>LevelDB key ranges are read from the MANIFEST. rocksdbjni 5.15 has no
+ * getLiveFilesMetaData, the RocksDB files are listed without key ranges and overlap every
+ * range.
+ */
+@Slf4j(topic = "tool")
+public final class LiveFiles {
+
+  private static final String CURRENT = "CURRENT";
+  private static final String LOG_SUFFIX = ".log";
+  private static final String SST_SUFFIX = ".sst";
+  private static final String LDB_SUFFIX = ".ldb";
+
+  private LiveFiles() {
+
+  }
+
+  /**
+   * A live file, a null key range overlaps every range.
+   */
+  @Getter
+  public static class TableFile {
+
+    private final String name;
+    private final byte[] smallest;
+    private final byte[] largest;
+
+    TableFile(String name, byte[] smallest, byte[] largest) {
+      this.name = name;
+      this.smallest = smallest;
+      this.largest = largest;
+    }
+
+    boolean overlaps(KeyRange range) {
+      return smallest == null || largest == null
+          || !range.isBefore(largest) && !range.isAfter(smallest);
+    }
+  }
+
+  /**
+   * Live files of an open database.
+   *
+   * @param dir database dir
+   * @param db the database opened from dir, its recovered log is already in the tables
+   * @return live files, not empty log files included without key range
+   * @throws IOException listing failed
+   */
+  public static List<TableFile> read(Path dir, DBInterface db) throws IOException {
+    List<TableFile> files = new ArrayList<>();
+    boolean listTables = true;
+    if (DbTool.typeOf(db) == DbTool.DbType.LevelDB) {
+      try {
+        files.addAll(readManifest(dir));
+        listTables = false;
+      } catch (IOException | RuntimeException e) {
+        logger.warn("Read manifest of {} failed, use the file list: {}", dir, e.getMessage());
+      }
+    }
+    File[] listed = Objects.requireNonNull(dir.toFile().listFiles(), dir.toString());
+    for (File file : listed) {
+      String name = file.getName();
+      if (name.endsWith(LOG_SUFFIX) && file.length() > 0) {
+        // writes not in a table yet, the size tells appends apart
+        files.add(new TableFile(name + ":" + file.length(), null, null));
+      } else if (listTables && (name.endsWith(SST_SUFFIX) || name.endsWith(LDB_SUFFIX))) {
+        files.add(new TableFile(name + ":" + file.length(), null, null));
+      }
+    }
+    return files;
+  }
+
+  /**
+   * The MANIFEST the database is at, every open of LevelDB and RocksDB writes a new one with
+   * a higher number.
+   *
+   * @param dir database dir
+   * @return manifest file name, null if the dir holds no database
+   * @throws IOException read failed
+   */
+  public static String manifest(Path dir) throws IOException {
+    Path current = dir.resolve(CURRENT);
+    if (!Files.exists(current)) {
+      return null;
+    }
+    return new String(Files.readAllBytes(current), UTF_8).trim();
+  }
+
+  /**
+   * Names of the files overlapping a range, sorted.
+   *
+   * @param files live files
+   * @param range key range
+   * @param bytewise whether the database orders keys bytewise, otherwise all files overlap
+   * @return file names
+   */
+  public static List<String> overlapping(List<TableFile> files, KeyRange range,
+                                         boolean bytewise) {
+    TreeSet<String> names = new TreeSet<>();
+    for (TableFile file : files) {
+      if (!bytewise || file.overlaps(range)) {
+        names.add(file.getName());
+      }
+    }
+    return new ArrayList<>(names);
+  }
+
+  private static List<TableFile> readManifest(Path dir) throws IOException {
+    String manifest = manifest(dir);
+    if (manifest == null) {
+      throw new IOException("no CURRENT in " + dir);
+    }
+    Map<Long, FileMetaData> live = new TreeMap<>();
+    try (FileInputStream in = new FileInputStream(dir.resolve(manifest).toFile());
+         FileChannel channel = in.getChannel()) {
+      LogReader reader = new LogReader(channel, LogMonitors.logMonitor(), true, 0);
+      for (Slice record = reader.readRecord(); record != null; record = reader.readRecord()) {
+        VersionEdit edit = new VersionEdit(record);
+        // a file moved to the next level is deleted and added in the same edit
+        edit.getDeletedFiles().values().forEach(live::remove);
+        edit.getNewFiles().values().forEach(file -> live.put(file.getNumber(), file));
+      }
+    }
+    List<TableFile> files = new ArrayList<>(live.size());
+    live.values().forEach(file -> files.add(new TableFile(
+        file.getNumber() + ":" + file.getFileSize(),
+        file.getSmallest().getUserKey().getBytes(), file.getLargest().getUserKey().getBytes())));
+    logger.debug("{} live tables in {} of {}.", files.size(), manifest, dir);
+    return files;
+  }
+}
@@ -0,0 +1,114 @@
+package org.tron.plugins.utils.db;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import lombok.Getter;
+import org.tron.plugins.utils.DBUtils;
+
+/**
+ * A sorted in-memory database on a concurrent skip list, in the key order of the db name
+ * like the engines. Meant for tests and as a storage-free benchmark baseline, the contents
+ * are gone when it is closed.
+ *
+ * <p>Keys and values are copied in and out, callers may reuse or modify their arrays as
+ * with the engines.
+ */
+public class MemoryDBImpl implements DBInterface {
+
+  private final ConcurrentSkipListMap<byte[], byte[]> map;
+
+  @Getter
+  private final String name;
+  private final boolean readOnly;
+
+  public MemoryDBImpl(String name) {
+    this(name, DBUtils.keyComparator(name));
+  }
+
+  public MemoryDBImpl(String name, Comparator<byte[]> comparator) {
+    this(new ConcurrentSkipListMap<>(comparator), name, false);
+  }
+
+  private MemoryDBImpl(ConcurrentSkipListMap<byte[], byte[]> map, String name,
+                       boolean readOnly) {
+    this.map = map;
+    this.name = name;
+    this.readOnly = readOnly;
+  }
+
+  @Override
+  public byte[] get(byte[] key) {
+    byte[] value = map.get(key);
+    return value == null ? null : value.clone();
+  }
+
+  @Override
+  public void put(byte[] key, byte[] value) {
+    checkWritable();
+    map.put(key.clone(), value.clone());
+  }
+
+  @Override
+  public void delete(byte[] key) {
+    checkWritable();
+    map.remove(key);
+  }
+
+  @Override
+  public WriteSession newWriteSession(WriteSessionOptions options) {
+    checkWritable();
+    return new MemoryWriteSession(map, options);
+  }
+
+  @Override
+  public DBIterator iterator(IteratorOptions options) {
+    DBIterator iterator = new MemoryDBIterator(map);
+    return options.getRange().isAll() ? iterator
+        : new BoundedDBIterator(iterator, options.getRange());
+  }
+
+  /**
+   * The bytes of the keys and values in the range, exact rather than approximate.
+   */
+  @Override
+  public long approximateSize(byte[] start, byte[] end) {
+    long bytes = 0;
+    ConcurrentNavigableMap<byte[], byte[]> range = map.subMap(start, true, end, false);
+    for (Map.Entry<byte[], byte[]> entry : range.entrySet()) {
+      bytes += entry.getKey().length + entry.getValue().length;
+    }
+    return bytes;
+  }
+
+  @Override
+  public long size() {
+    return map.size();
+  }
+
+  @Override
+  public long estimatedSize() {
+    return map.size();
+  }
+
+  /**
+   * A copy of the skip list, the stored arrays are never modified and are shared.
+   */
+  @Override
+  public DBInterface snapshot() {
+    return new MemoryDBImpl(map.clone(), name, true);
+  }
+
+  private void checkWritable() {
+    if (readOnly) {
+      throw new UnsupportedOperationException(String.format("snapshot of %s is read-only",
+          name));
+    }
+  }
+
+  @Override
+  public void close() {
+    map.clear();
+  }
+}
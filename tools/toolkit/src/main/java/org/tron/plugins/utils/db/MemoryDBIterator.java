@@ -0,0 +1,86 @@
+package org.tron.plugins.utils.db;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Iterator of {@link MemoryDBImpl}, each step looks up the next key in the skip list.
+ * Like the skip list iterators it is weakly consistent, writes after its creation may or
+ * may not be seen.
+ */
+public class MemoryDBIterator implements DBIterator {
+
+  private final ConcurrentSkipListMap<byte[], byte[]> map;
+  private Map.Entry<byte[], byte[]> current;
+
+  public MemoryDBIterator(ConcurrentSkipListMap<byte[], byte[]> map) {
+    this.map = map;
+    this.current = map.firstEntry();
+  }
+
+  @Override
+  public boolean valid() {
+    return current != null;
+  }
+
+  @Override
+  public void seek(byte[] key) {
+    current = map.ceilingEntry(key);
+  }
+
+  @Override
+  public void seekToFirst() {
+    current = map.firstEntry();
+  }
+
+  @Override
+  public void seekToLast() {
+    current = map.lastEntry();
+  }
+
+  @Override
+  public boolean hasNext() {
+    return current != null;
+  }
+
+  @Override
+  public byte[] getKey() {
+    return current.getKey().clone();
+  }
+
+  @Override
+  public byte[] getValue() {
+    return current.getValue().clone();
+  }
+
+  @Override
+  public Map.Entry<byte[], byte[]> next() {
+    if (current == null) {
+      throw new NoSuchElementException();
+    }
+    Map.Entry<byte[], byte[]> entry = current;
+    current = map.higherEntry(entry.getKey());
+    return new AbstractMap.SimpleImmutableEntry<>(entry.getKey().clone(),
+        entry.getValue().clone());
+  }
+
+  /**
+   * Counted on the skip list, no entry is copied.
+   */
+  @Override
+  public long count() {
+    if (current == null) {
+      return 0;
+    }
+    long count = map.tailMap(current.getKey(), true).size();
+    current = null;
+    return count;
+  }
+
+  @Override
+  public void close() {
+
+  }
+}
@@ -0,0 +1,71 @@
+package org.tron.plugins.utils.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * {@link WriteSession} of {@link MemoryDBImpl}, the operations are buffered in order and
+ * applied one by one on flush. There is no log, {@link WriteSessionOptions#isDisableWal()}
+ * and {@link WriteSessionOptions#isSyncOnClose()} are ignored.
+ */
+public class MemoryWriteSession implements WriteSession {
+
+  private final ConcurrentSkipListMap<byte[], byte[]> map;
+  private final WriteSessionOptions options;
+  // key and value, a null value for a delete
+  private final List<byte[][]> batch = new ArrayList<>();
+
+  public MemoryWriteSession(ConcurrentSkipListMap<byte[], byte[]> map,
+                            WriteSessionOptions options) {
+    this.map = map;
+    this.options = options;
+  }
+
+  @Override
+  public void put(byte[] key, byte[] value) {
+    batch.add(new byte[][] {key.clone(), value.clone()});
+    maybeFlush();
+  }
+
+  @Override
+  public void delete(byte[] key) {
+    batch.add(new byte[][] {key.clone(), null});
+    maybeFlush();
+  }
+
+  @Override
+  public void deleteRange(byte[] start, byte[] end) {
+    // the buffered puts are in the range too
+    flush();
+    map.subMap(start, end).clear();
+  }
+
+  @Override
+  public void flush() {
+    for (byte[][] op : batch) {
+      if (op[1] == null) {
+        map.remove(op[0]);
+      } else {
+        map.put(op[0], op[1]);
+      }
+    }
+    batch.clear();
+  }
+
+  @Override
+  public int pending() {
+    return batch.size();
+  }
+
+  @Override
+  public void close() {
+    flush();
+  }
+
+  private void maybeFlush() {
+    if (batch.size() >= options.getFlushSize()) {
+      flush();
+    }
+  }
+}
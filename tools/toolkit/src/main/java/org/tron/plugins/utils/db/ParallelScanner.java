@@ -0,0 +1,114 @@
+package org.tron.plugins.utils.db;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Scan a database with one bounded iterator per {@link KeyRange} on a worker pool.
+ */
+@Slf4j(topic = "tool")
+public final class ParallelScanner {
+
+  /**
+   * Ranges per thread, more ranges than threads smooth out badly estimated ranges.
+   */
+  public static final int RANGES_PER_THREAD = 4;
+
+  private ParallelScanner() {
+
+  }
+
+  /**
+   * Work on one range.
+   *
+   * @param <T> per range result
+   */
+  @FunctionalInterface
+  public interface RangeTask<T> {
+
+    /**
+     * Scan one range.
+     *
+     * @param range the range
+     * @param iterator iterator bounded to the range, positioned at its first key
+     * @return result for the range
+     * @throws Exception any error, fails the whole scan
+     */
+    T scan(KeyRange range, DBIterator iterator) throws Exception;
+  }
+
+  /**
+   * Partition the database and scan it with {@code threads} workers.
+   *
+   * @param db database to scan
+   * @param threads worker count, 1 scans the whole database on the calling thread
+   * @param task work for each range
+   * @param <T> per range result
+   * @return results in key order of the ranges
+   */
+  public static <T> List<T> scan(DBInterface db, int threads, RangeTask<T> task) {
+    int partitions = threads <= 1 ? 1 : threads * RANGES_PER_THREAD;
+    return scan(db, RangePartitioner.partition(db, partitions), threads, task);
+  }
+
+  /**
+   * Scan the given ranges with {@code threads} workers.
+   *
+   * @param db database to scan
+   * @param ranges ordered ranges
+   * @param threads worker count
+   * @param task work for each range
+   * @param <T> per range result
+   * @return results in the order of the ranges
+   */
+  public static <T> List<T> scan(DBInterface db, List<KeyRange> ranges, int threads,
+                                 RangeTask<T> task) {
+    List<T> results = new ArrayList<>(ranges.size());
+    if (threads <= 1 || ranges.size() <= 1) {
+      for (KeyRange range : ranges) {
+        results.add(scanRange(db, range, task));
+      }
+      return results;
+    }
+    logger.info("Scan {} with {} threads in {} ranges.", db.getName(), threads, ranges.size());
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, ranges.size()),
+        new ThreadFactoryBuilder().setNameFormat("scan-" + db.getName() + "-%d")
+            .setDaemon(true).build());
+    try {
+      List<Future<T>> futures = new ArrayList<>(ranges.size());
+      for (KeyRange range : ranges) {
+        futures.add(executor.submit(() -> scanRange(db, range, task)));
+      }
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+      return results;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof RuntimeException
+          ? (RuntimeException) cause : new RuntimeException(cause);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static <T> T scanRange(DBInterface db, KeyRange range, RangeTask<T> task) {
+    try (DBIterator iterator = db.iterator(IteratorOptions.scan(range))) {
+      iterator.seekToFirst();
+      return task.scan(range, iterator);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException(String.format("scan %s %s failed", db.getName(), range), e);
+    }
+  }
+}
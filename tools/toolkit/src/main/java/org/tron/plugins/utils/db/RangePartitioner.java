@@ -0,0 +1,230 @@
+package org.tron.plugins.utils.db;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.plugins.utils.DBUtils;
+
+/**
+ * Split the key space of a database into contiguous {@link KeyRange}s of roughly equal size.
+ *
+ * <p>Candidate boundaries are interpolated between the first and the last key, the engine is
+ * probed for the approximate on-disk size between neighbouring candidates and the candidates are
+ * merged greedily into ranges. When the engine can not tell the sizes (data still in memtable or
+ * log) the interpolated boundaries are used as they are.
+ */
+@Slf4j(topic = "tool")
+public final class RangePartitioner {
+
+  private static final int PROBES_PER_RANGE = 8;
+  private static final int WINDOW_BYTES = 8;
+
+  private RangePartitioner() {
+
+  }
+
+  /**
+   * Split the database into at most {@code partitions} ranges, the first range has no lower
+   * bound and the last range has no upper bound, so the ranges always cover all keys.
+   * Databases with a custom comparator are never split.
+   *
+   * @param db database to split
+   * @param partitions expected number of ranges
+   * @return ordered, non-overlapping ranges
+   */
+  public static List<KeyRange> partition(DBInterface db, int partitions) {
+    if (partitions <= 1 || !isBytewiseOrdered(db)) {
+      return Collections.singletonList(KeyRange.all());
+    }
+    byte[][] bounds = firstAndLast(db);
+    if (bounds == null) {
+      return Collections.singletonList(KeyRange.all());
+    }
+    byte[] first = bounds[0];
+    byte[] last = bounds[1];
+    List<byte[]> points = new ArrayList<>();
+    points.add(first);
+    points.addAll(interpolate(first, last, partitions * PROBES_PER_RANGE));
+    points.add(successor(last));
+    if (points.size() <= 2) {
+      return Collections.singletonList(KeyRange.all());
+    }
+
+    long[] sizes = new long[points.size() - 1];
+    long total = 0;
+    for (int i = 0; i < sizes.length; i++) {
+      sizes[i] = Math.max(0, db.approximateSize(points.get(i), points.get(i + 1)));
+      total += sizes[i];
+    }
+    if (total == 0) {
+      Arrays.fill(sizes, 1);
+      total = sizes.length;
+    }
+
+    List<KeyRange> ranges = new ArrayList<>(partitions);
+    byte[] start = null;
+    long acc = 0;
+    // cut at the interior points only, the outer ranges stay unbounded
+    for (int i = 0; i < sizes.length - 1 && ranges.size() < partitions - 1; i++) {
+      acc += sizes[i];
+      if (acc * partitions >= total * (ranges.size() + 1)) {
+        byte[] cut = points.get(i + 1);
+        ranges.add(new KeyRange(start, cut));
+        start = cut;
+      }
+    }
+    ranges.add(new KeyRange(start, null));
+    logger.debug("Partition {} into {} ranges, approximate size: {}.",
+        db.getName(), ranges.size(), total);
+    return ranges;
+  }
+
+  /**
+   * Split the database into at most {@code partitions} ranges of even steps between its first
+   * and last key. Unlike {@link #partition} the ranges only depend on the keys, two copies
+   * holding the same keys are split the same way whatever their files look like.
+   *
+   * @param db database to split
+   * @param partitions expected number of ranges
+   * @return ordered, non-overlapping ranges covering all keys
+   */
+  public static List<KeyRange> split(DBInterface db, int partitions) {
+    if (partitions <= 1 || !isBytewiseOrdered(db)) {
+      return Collections.singletonList(KeyRange.all());
+    }
+    byte[][] bounds = firstAndLast(db);
+    if (bounds == null) {
+      return Collections.singletonList(KeyRange.all());
+    }
+    return fromBoundaries(interpolate(bounds[0], bounds[1], partitions));
+  }
+
+  private static byte[][] firstAndLast(DBInterface db) {
+    try (DBIterator iterator = db.iterator()) {
+      iterator.seekToFirst();
+      if (!iterator.valid()) {
+        return null;
+      }
+      byte[] first = iterator.getKey();
+      iterator.seekToLast();
+      return new byte[][] {first, iterator.getKey()};
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * The start keys of all ranges but the first, enough to rebuild the ranges.
+   *
+   * @param ranges ordered ranges from {@link #partition}
+   * @return interior boundaries
+   */
+  public static List<byte[]> boundaries(List<KeyRange> ranges) {
+    List<byte[]> boundaries = new ArrayList<>(ranges.size());
+    for (int i = 1; i < ranges.size(); i++) {
+      boundaries.add(ranges.get(i).getStart());
+    }
+    return boundaries;
+  }
+
+  /**
+   * Rebuild ranges from their interior boundaries.
+   *
+   * @param boundaries increasing keys from {@link #boundaries}
+   * @return ordered ranges covering all keys
+   */
+  public static List<KeyRange> fromBoundaries(List<byte[]> boundaries) {
+    List<KeyRange> ranges = new ArrayList<>(boundaries.size() + 1);
+    byte[] start = null;
+    for (byte[] boundary : boundaries) {
+      ranges.add(new KeyRange(start, boundary));
+      start = boundary;
+    }
+    ranges.add(new KeyRange(start, null));
+    return ranges;
+  }
+
+  public static boolean isBytewiseOrdered(DBInterface db) {
+    return !DBUtils.MARKET_PAIR_PRICE_TO_ORDER.equalsIgnoreCase(db.getName());
+  }
+
+  /**
+   * Keys strictly between lo and hi that split [lo, hi] into {@code parts} even steps,
+   * computed on the {@value #WINDOW_BYTES} bytes following the common prefix.
+   * Fewer keys are returned when the keys are too close to each other.
+   *
+   * @param lo lower key
+   * @param hi upper key, greater than lo
+   * @param parts number of steps
+   * @return increasing keys, may be empty
+   */
+  public static List<byte[]> interpolate(byte[] lo, byte[] hi, int parts) {
+    int prefix = commonPrefix(lo, hi);
+    BigInteger low = window(lo, prefix);
+    BigInteger diff = window(hi, prefix).subtract(low);
+    List<byte[]> keys = new ArrayList<>();
+    if (parts <= 1 || diff.compareTo(BigInteger.ONE) <= 0) {
+      return keys;
+    }
+    BigInteger steps = diff.min(BigInteger.valueOf(parts));
+    for (long i = 1; i < steps.longValue(); i++) {
+      BigInteger value = low.add(diff.multiply(BigInteger.valueOf(i)).divide(steps));
+      byte[] key = Arrays.copyOf(lo, prefix + WINDOW_BYTES);
+      for (int j = 0; j < WINDOW_BYTES; j++) {
+        key[prefix + j] = value.shiftRight(8 * (WINDOW_BYTES - 1 - j)).byteValue();
+      }
+      keys.add(key);
+    }
+    return keys;
+  }
+
+  /**
+   * Relative position of key inside [lo, hi], between 0 and 1.
+   *
+   * @param key key inside [lo, hi]
+   * @param lo lower key
+   * @param hi upper key
+   * @return estimated fraction of the key space before key
+   */
+  public static double position(byte[] key, byte[] lo, byte[] hi) {
+    int prefix = commonPrefix(lo, hi);
+    BigInteger low = window(lo, prefix);
+    double diff = window(hi, prefix).subtract(low).doubleValue();
+    if (diff <= 0) {
+      return 0;
+    }
+    double pos = window(key, prefix).subtract(low).doubleValue() / diff;
+    return Math.max(0, Math.min(1, pos));
+  }
+
+  /**
+   * The smallest key that is greater than key.
+   *
+   * @param key key
+   * @return key followed by a zero byte
+   */
+  public static byte[] successor(byte[] key) {
+    return Arrays.copyOf(key, key.length + 1);
+  }
+
+  private static int commonPrefix(byte[] a, byte[] b) {
+    int len = Math.min(a.length, b.length);
+    int i = 0;
+    while (i < len && a[i] == b[i]) {
+      i++;
+    }
+    return i;
+  }
+
+  private static BigInteger window(byte[] key, int offset) {
+    byte[] window = new byte[WINDOW_BYTES];
+    if (offset < key.length) {
+      System.arraycopy(key, offset, window, 0, Math.min(WINDOW_BYTES, key.length - offset));
+    }
+    return new BigInteger(1, window);
+  }
+}
@@ -2,14 +2,32 @@ package org.tron.plugins.utils.db;
 
 import java.io.IOException;
 import java.util.Map;
+import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.Slice;
 
 public class RockDBIterator implements DBIterator {
 
   private final RocksIterator iterator;
+  private final ReadOptions readOptions;
+  // referenced by readOptions, must outlive the iterator
+  private final Slice upperBound;
 
   public RockDBIterator(RocksIterator iterator) {
+    this(iterator, null, null);
+  }
+
+  /**
+   * Iterator owning its read options, they are closed with it.
+   *
+   * @param iterator native iterator
+   * @param readOptions the options the iterator was created with, may be null
+   * @param upperBound the iterate_upper_bound of readOptions, may be null
+   */
+  public RockDBIterator(RocksIterator iterator, ReadOptions readOptions, Slice upperBound) {
     this.iterator = iterator;
+    this.readOptions = readOptions;
+    this.upperBound = upperBound;
   }
 
   @Override
@@ -70,8 +88,35 @@ public class RockDBIterator implements DBIterator {
     };
   }
 
+  @Override
+  public long visit(Visitor visitor) {
+    long visited = 0;
+    boolean more = true;
+    while (more && iterator.isValid()) {
+      more = visitor.visit(iterator.key(), iterator.value());
+      iterator.next();
+      visited++;
+    }
+    return visited;
+  }
+
+  @Override
+  public long count() {
+    long count = 0;
+    for (; iterator.isValid(); iterator.next()) {
+      count++;
+    }
+    return count;
+  }
+
   @Override
   public void close() throws IOException {
     iterator.close();
+    if (readOptions != null) {
+      readOptions.close();
+    }
+    if (upperBound != null) {
+      upperBound.close();
+    }
   }
 }
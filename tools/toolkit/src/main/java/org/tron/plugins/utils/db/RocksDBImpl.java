@@ -1,9 +1,15 @@
 package org.tron.plugins.utils.db;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import lombok.Getter;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.Snapshot;
+import org.rocksdb.Slice;
+import org.tron.plugins.utils.MemoryBudget;
 
 public class RocksDBImpl implements DBInterface {
 
@@ -11,24 +17,76 @@ public class RocksDBImpl implements DBInterface {
 
   @Getter
   private final String name;
+  // reads are pinned to it, null for the live database
+  private final Snapshot snapshot;
+  private final org.rocksdb.ReadOptions snapshotOptions;
+  private final boolean readOnly;
 
   public RocksDBImpl(org.rocksdb.RocksDB rocksDB, String name) {
+    this(rocksDB, name, false);
+  }
+
+  /**
+   * A db whose writes throw if readOnly, for a db opened by
+   * {@link org.tron.plugins.utils.DBUtils#newRocksDbReadOnly(java.nio.file.Path, int)} they
+   * would fail in the engine anyway.
+   *
+   * @param rocksDB database
+   * @param name db name
+   * @param readOnly refuse writes
+   */
+  public RocksDBImpl(org.rocksdb.RocksDB rocksDB, String name, boolean readOnly) {
+    this(rocksDB, name, null, readOnly);
+  }
+
+  private RocksDBImpl(org.rocksdb.RocksDB rocksDB, String name, Snapshot snapshot,
+                      boolean readOnly) {
     this.rocksDB = rocksDB;
     this.name = name;
+    this.snapshot = snapshot;
+    this.readOnly = readOnly;
+    this.snapshotOptions = snapshot == null ? null
+        : new org.rocksdb.ReadOptions().setSnapshot(snapshot);
   }
 
   @Override
   public byte[] get(byte[] key) {
     try {
-      return rocksDB.get(key);
+      return snapshot == null ? rocksDB.get(key) : rocksDB.get(snapshotOptions, key);
     } catch (RocksDBException e) {
       e.printStackTrace();
     }
     return null;
   }
 
+  /**
+   * One native call for the batch. The result map of rocksdbjni 5.15 is keyed by the given
+   * arrays, the values are looked up by identity. A failed batch fails the caller rather than
+   * being retried key by key.
+   */
+  @Override
+  public List<byte[]> multiGet(List<byte[]> keys) {
+    if (keys.isEmpty()) {
+      return new ArrayList<>();
+    }
+    Map<byte[], byte[]> found;
+    try {
+      found = snapshot == null ? rocksDB.multiGet(keys)
+          : rocksDB.multiGet(snapshotOptions, keys);
+    } catch (RocksDBException e) {
+      throw new RuntimeException(String.format("multiGet %d keys of %s failed", keys.size(),
+          name), e);
+    }
+    List<byte[]> values = new ArrayList<>(keys.size());
+    for (byte[] key : keys) {
+      values.add(found.get(key));
+    }
+    return values;
+  }
+
   @Override
   public void put(byte[] key, byte[] value) {
+    checkWritable();
     try {
       rocksDB.put(key, value);
     } catch (RocksDBException e) {
@@ -38,6 +96,7 @@ public class RocksDBImpl implements DBInterface {
 
   @Override
   public void delete(byte[] key) {
+    checkWritable();
     try {
       rocksDB.delete(key);
     } catch (RocksDBException e) {
@@ -46,24 +105,113 @@ public class RocksDBImpl implements DBInterface {
   }
 
   @Override
-  public DBIterator iterator() {
-    return new RockDBIterator(rocksDB.newIterator(
-        new org.rocksdb.ReadOptions().setFillCache(false)));
+  public WriteSession newWriteSession(WriteSessionOptions options) {
+    checkWritable();
+    return new RocksDBWriteSession(rocksDB, options);
+  }
+
+  @Override
+  public DBIterator iterator(IteratorOptions options) {
+    org.rocksdb.ReadOptions readOptions = new org.rocksdb.ReadOptions()
+        .setFillCache(options.isFillCache());
+    if (snapshot != null) {
+      readOptions.setSnapshot(snapshot);
+    }
+    if (options.getReadaheadSize() > 0) {
+      readOptions.setReadaheadSize(options.getReadaheadSize());
+    }
+    KeyRange range = options.getRange();
+    Slice upperBound = null;
+    if (range.getEnd() != null) {
+      upperBound = new Slice(range.getEnd());
+      readOptions.setIterateUpperBound(upperBound);
+    }
+    DBIterator iterator = new RockDBIterator(rocksDB.newIterator(readOptions), readOptions,
+        upperBound);
+    // the upper bound stops the native iterator, only seeks are left to clamp
+    return range.isAll() ? iterator : new BoundedDBIterator(iterator, range, true);
+  }
+
+  /**
+   * rocksdbjni 5.15 exposes neither GetApproximateSizes nor the live file metadata,
+   * callers fall back to key interpolation.
+   */
+  @Override
+  public long approximateSize(byte[] start, byte[] end) {
+    return 0;
   }
 
   @Override
   public long size() {
-    RocksIterator iterator = rocksDB.newIterator();
     long size = 0;
-    for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
-      size++;
+    try (org.rocksdb.ReadOptions readOptions = new org.rocksdb.ReadOptions().setFillCache(false)
+        .setSnapshot(snapshot);
+         RocksIterator iterator = rocksDB.newIterator(readOptions)) {
+      for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+        size++;
+      }
     }
-    iterator.close();
     return size;
   }
 
+  /**
+   * The "rocksdb.estimate-num-keys" property, overwrites and deletions not yet compacted
+   * are counted too.
+   */
+  @Override
+  public long estimatedSize() {
+    return getLongProperty("rocksdb.estimate-num-keys");
+  }
+
+  /**
+   * Read an integer property, such as "rocksdb.cur-size-all-mem-tables".
+   *
+   * @param property property name
+   * @return property value, 0 if unknown
+   */
+  public long getLongProperty(String property) {
+    try {
+      return rocksDB.getLongProperty(property);
+    } catch (RocksDBException e) {
+      e.printStackTrace();
+    }
+    return 0;
+  }
+
+  /**
+   * Record the memory the database uses now with the {@link MemoryBudget}.
+   */
+  public void recordMemoryUsage() {
+    if (snapshot == null) {
+      MemoryBudget.record(name, rocksDB);
+    }
+  }
+
+  /**
+   * The database stays open for the snapshot, it must be closed before the database.
+   */
+  @Override
+  public DBInterface snapshot() {
+    if (snapshot != null) {
+      throw new UnsupportedOperationException(String.format("%s is a snapshot", name));
+    }
+    return new RocksDBImpl(rocksDB, name, rocksDB.getSnapshot(), true);
+  }
+
+  private void checkWritable() {
+    if (readOnly) {
+      throw new UnsupportedOperationException(String.format("db %s is read-only", name));
+    }
+  }
+
   @Override
   public void close() throws IOException {
-    rocksDB.close();
+    if (snapshot != null) {
+      rocksDB.releaseSnapshot(snapshot);
+      snapshotOptions.close();
+    } else {
+      recordMemoryUsage();
+      rocksDB.close();
+    }
   }
 }
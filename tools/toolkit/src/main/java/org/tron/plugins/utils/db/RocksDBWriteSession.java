@@ -0,0 +1,106 @@
+package org.tron.plugins.utils.db;
+
+import org.rocksdb.FlushOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+/**
+ * RocksDB {@link WriteSession} backed by {@link WriteBatch}.
+ */
+public class RocksDBWriteSession implements WriteSession {
+
+  private final RocksDB rocksDB;
+  private final WriteSessionOptions options;
+  private final WriteOptions writeOptions;
+  private final WriteBatch batch = new WriteBatch();
+  private int pending;
+  private boolean closed;
+
+  public RocksDBWriteSession(RocksDB rocksDB, WriteSessionOptions options) {
+    this.rocksDB = rocksDB;
+    this.options = options;
+    this.writeOptions = new WriteOptions().setDisableWAL(options.isDisableWal());
+  }
+
+  @Override
+  public void put(byte[] key, byte[] value) {
+    try {
+      batch.put(key, value);
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    }
+    maybeFlush();
+  }
+
+  @Override
+  public void delete(byte[] key) {
+    try {
+      batch.delete(key);
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    }
+    maybeFlush();
+  }
+
+  @Override
+  public void deleteRange(byte[] start, byte[] end) {
+    try {
+      batch.deleteRange(start, end);
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    }
+    maybeFlush();
+  }
+
+  @Override
+  public void flush() {
+    if (pending == 0) {
+      return;
+    }
+    try {
+      rocksDB.write(writeOptions, batch);
+      batch.clear();
+      pending = 0;
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public int pending() {
+    return pending;
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      if (options.isSyncOnClose()) {
+        writeOptions.setSync(!options.isDisableWal());
+      }
+      flush();
+      if (options.isSyncOnClose() && options.isDisableWal()) {
+        // nothing was logged, persist the memtables before reporting success
+        try (FlushOptions flushOptions = new FlushOptions().setWaitForFlush(true)) {
+          rocksDB.flush(flushOptions);
+        }
+      }
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    } finally {
+      batch.close();
+      writeOptions.close();
+    }
+  }
+
+  private void maybeFlush() {
+    if (++pending >= options.getFlushSize()) {
+      flush();
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package org.tron.plugins.utils.db;
+
+import java.io.Closeable;
+
+/**
+ * A batched write session on a {@link DBInterface}.
+ *
+ * <p>Puts and deletes are buffered in an engine write batch and written to the
+ * database every {@link WriteSessionOptions#getFlushSize()} operations, on {@link #flush()}
+ * and on {@link #close()}. Buffered operations are not visible to readers until flushed.
+ * A session is not thread-safe, use one session per writer thread.
+ */
+public interface WriteSession extends Closeable {
+
+  void put(byte[] key, byte[] value);
+
+  void delete(byte[] key);
+
+  /**
+   * Delete all keys in [start, end). RocksDB buffers a single range tombstone, LevelDB has
+   * none, the session flushes and then deletes the keys one by one, so memory stays bounded
+   * by the flush size. Only for databases whose keys are ordered bytewise.
+   *
+   * @param start first key, inclusive
+   * @param end last key, exclusive
+   */
+  void deleteRange(byte[] start, byte[] end);
+
+  /**
+   * Write all buffered operations to the database.
+   */
+  void flush();
+
+  /**
+   * Number of operations buffered and not yet flushed.
+   *
+   * @return pending operation count
+   */
+  int pending();
+
+  /**
+   * Flush the remaining operations, sync them if
+   * {@link WriteSessionOptions#isSyncOnClose()} is set, and release the batch.
+   */
+  @Override
+  void close();
+}
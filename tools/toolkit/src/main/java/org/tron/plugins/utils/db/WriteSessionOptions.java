@@ -0,0 +1,64 @@
+package org.tron.plugins.utils.db;
+
+import lombok.Getter;
+
+/**
+ * Options for {@link WriteSession}.
+ */
+@Getter
+public class WriteSessionOptions {
+
+  public static final int DEFAULT_FLUSH_SIZE = 1024;
+
+  /**
+   * Number of buffered operations that triggers a batch write.
+   */
+  private int flushSize = DEFAULT_FLUSH_SIZE;
+
+  /**
+   * Skip the write-ahead log, only honored by RocksDB.
+   * Data written without WAL is flushed to sst files when the session is closed with
+   * {@link #syncOnClose}, otherwise it may be lost if the process crashes.
+   */
+  private boolean disableWal = false;
+
+  /**
+   * Sync the last batch (and flush memtables when WAL is disabled) on close.
+   */
+  private boolean syncOnClose = false;
+
+  public WriteSessionOptions flushSize(int flushSize) {
+    if (flushSize <= 0) {
+      throw new IllegalArgumentException("flushSize must be positive: " + flushSize);
+    }
+    this.flushSize = flushSize;
+    return this;
+  }
+
+  public WriteSessionOptions disableWal(boolean disableWal) {
+    this.disableWal = disableWal;
+    return this;
+  }
+
+  public WriteSessionOptions syncOnClose(boolean syncOnClose) {
+    this.syncOnClose = syncOnClose;
+    return this;
+  }
+
+  /**
+   * Options for bulk loading that can be redone from scratch on failure:
+   * large batches, no WAL, memtables flushed and synced on close.
+   *
+   * @return bulk load options
+   */
+  public static WriteSessionOptions bulkLoad() {
+    return new WriteSessionOptions().flushSize(DEFAULT_FLUSH_SIZE * 4)
+        .disableWal(true).syncOnClose(true);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("WriteSessionOptions{flushSize=%d, disableWal=%b, syncOnClose=%b}",
+        flushSize, disableWal, syncOnClose);
+  }
+}
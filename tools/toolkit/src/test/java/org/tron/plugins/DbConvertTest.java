@@ -22,6 +22,21 @@ public class DbConvertTest extends DbTest {
     Assert.assertEquals(0, cli.execute(args));
   }
 
+  @Test
+  public void testRunWithSafeInParallel() throws IOException {
+    String[] args = new String[] { "db", "--cache-mb", "64", "--write-buffer-mb", "64",
+        "convert",  INPUT_DIRECTORY, temporaryFolder.newFolder().toString(),
+        "--safe", "--threads", "4"};
+    Assert.assertEquals(0, cli.execute(args));
+  }
+
+  @Test
+  public void testRunWithIngest() throws IOException {
+    String[] args = new String[] { "db", "convert",  INPUT_DIRECTORY,
+        temporaryFolder.newFolder().toString(), "--safe", "--ingest", "--threads", "2"};
+    Assert.assertEquals(0, cli.execute(args));
+  }
+
   @Test
   public void testHelp() {
     String[] args = new String[] {"db", "convert", "-h"};
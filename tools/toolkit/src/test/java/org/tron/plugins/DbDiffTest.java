@@ -0,0 +1,107 @@
+package org.tron.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rocksdb.RocksDBException;
+import org.tron.plugins.utils.ByteArray;
+import org.tron.plugins.utils.db.DBInterface;
+import org.tron.plugins.utils.db.DbTool;
+import picocli.CommandLine;
+
+public class DbDiffTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  CommandLine cli = new CommandLine(new Toolkit());
+
+  private static final String LEVEL_DB = "level";
+  private static final String ROCKS_DB = "rocks";
+
+  @Test
+  public void testDiff() throws IOException, RocksDBException {
+    String left = folder.newFolder().toString();
+    String right = folder.newFolder().toString();
+    for (String dir : new String[] {left, right}) {
+      fill(dir, LEVEL_DB, DbTool.DbType.LevelDB);
+      fill(dir, ROCKS_DB, DbTool.DbType.RocksDB);
+    }
+    String[] args = new String[] {"db", "diff", left, right, "--threads", "2"};
+    Assert.assertEquals(0, cli.execute(args));
+
+    try (DBInterface db = DbTool.getDB(Paths.get(right), LEVEL_DB)) {
+      db.put(ByteArray.fromLong(1500), ByteArray.fromLong(0));
+      db.delete(ByteArray.fromLong(2500));
+      db.put(ByteArray.fromLong(5000), ByteArray.fromLong(5000));
+    }
+    StringWriter out = capture();
+    Assert.assertEquals(1, cli.execute(args));
+    // changed, missing on the right and added on the right
+    Assert.assertEquals(Arrays.asList(key(1500), key(2500), key(5000)), diffKeys(out, LEVEL_DB));
+    Assert.assertTrue(diffKeys(out, ROCKS_DB).isEmpty());
+    Assert.assertTrue(out.toString(), out.toString().contains("db: " + LEVEL_DB + ",diffs: 3"));
+
+    args = new String[] {"db", "diff", left, right, "--db", ROCKS_DB};
+    Assert.assertEquals(0, cli.execute(args));
+    args = new String[] {"db", "diff", left, right, "--db", LEVEL_DB, "--max-diffs", "1"};
+    out = capture();
+    Assert.assertEquals(1, cli.execute(args));
+    Assert.assertEquals(Collections.singletonList(key(1500)), diffKeys(out, LEVEL_DB));
+  }
+
+  private StringWriter capture() {
+    StringWriter out = new StringWriter();
+    cli.setOut(new PrintWriter(out, true));
+    return out;
+  }
+
+  private static String key(long key) {
+    return ByteArray.toHexString(ByteArray.fromLong(key));
+  }
+
+  /**
+   * The printed keys of a db, sorted, the ranges of a parallel diff print in any order.
+   */
+  private static List<String> diffKeys(StringWriter out, String name) {
+    String prefix = "db: " + name + ",key: ";
+    return Arrays.stream(out.toString().split("\\R"))
+        .filter(line -> line.startsWith(prefix))
+        .map(line -> line.substring(prefix.length()))
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void testHelp() {
+    String[] args = new String[] {"db", "diff", "-h"};
+    Assert.assertEquals(0, cli.execute(args));
+  }
+
+  @Test
+  public void testNotExist() throws IOException {
+    File file = folder.newFolder();
+    String[] args = new String[] {"db", "diff", file.toString(),
+        Paths.get(file.getPath(), "none").toString()};
+    Assert.assertEquals(404, cli.execute(args));
+  }
+
+  private static void fill(String dir, String name, DbTool.DbType type)
+      throws IOException, RocksDBException {
+    DBInterface db = DbTool.getDB(dir, name, type);
+    for (long i = 0; i < 4000; i++) {
+      db.put(ByteArray.fromLong(i), ByteArray.fromLong(i));
+    }
+    DbTool.closeDB(dir, name);
+  }
+}
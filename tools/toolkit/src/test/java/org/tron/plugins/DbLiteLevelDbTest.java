@@ -2,12 +2,13 @@ package org.tron.plugins;
 
 import java.io.IOException;
 import org.junit.Test;
+import org.rocksdb.RocksDBException;
 
 
 public class DbLiteLevelDbTest  extends DbLiteTest {
 
   @Test
-  public void testToolsWithLevelDB() throws InterruptedException, IOException {
+  public void testToolsWithLevelDB() throws InterruptedException, IOException, RocksDBException {
     testTools("LEVELDB", 1);
   }
 }
@@ -2,11 +2,12 @@ package org.tron.plugins;
 
 import java.io.IOException;
 import org.junit.Test;
+import org.rocksdb.RocksDBException;
 
 public class DbLiteLevelDbV2Test extends DbLiteTest {
 
   @Test
-  public void testToolsWithLevelDBV2() throws InterruptedException, IOException {
+  public void testToolsWithLevelDBV2() throws InterruptedException, IOException, RocksDBException {
     testTools("LEVELDB", 2);
   }
 }
@@ -2,11 +2,12 @@ package org.tron.plugins;
 
 import java.io.IOException;
 import org.junit.Test;
+import org.rocksdb.RocksDBException;
 
 public class DbLiteRocksDbTest extends DbLiteTest {
 
   @Test
-  public void testToolsWithRocksDB() throws InterruptedException, IOException {
+  public void testToolsWithRocksDB() throws InterruptedException, IOException, RocksDBException {
     testTools("ROCKSDB", 1);
   }
 }
@@ -5,12 +5,23 @@ import io.grpc.ManagedChannelBuilder;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.ArrayUtils;
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.rules.TemporaryFolder;
+import org.rocksdb.RocksDBException;
 import org.tron.api.WalletGrpc;
 import org.tron.common.application.Application;
 import org.tron.common.application.ApplicationFactory;
@@ -23,7 +34,14 @@ import org.tron.core.config.DefaultConfig;
 import org.tron.core.config.args.Args;
 import org.tron.core.services.RpcApiService;
 import org.tron.core.services.interfaceOnSolidity.RpcApiServiceOnSolidity;
+import org.tron.plugins.utils.ByteArray;
+import org.tron.plugins.utils.DBUtils;
+import org.tron.plugins.utils.FileUtils;
+import org.tron.plugins.utils.Journal;
 import org.tron.plugins.utils.PublicMethod;
+import org.tron.plugins.utils.db.DBInterface;
+import org.tron.plugins.utils.db.DBIterator;
+import org.tron.plugins.utils.db.DbTool;
 import picocli.CommandLine;
 
 @Slf4j
@@ -87,7 +105,7 @@ public class DbLiteTest {
   }
 
   void testTools(String dbType, int checkpointVersion)
-      throws InterruptedException, IOException {
+      throws InterruptedException, IOException, RocksDBException {
     logger.info("dbType {}, checkpointVersion {}", dbType, checkpointVersion);
     dbPath = String.format("%s_%s_%d", dbPath, dbType, System.currentTimeMillis());
     init();
@@ -115,6 +133,7 @@ public class DbLiteTest {
     FileUtil.deleteDir(Paths.get(dbPath, databaseDir, "trans-cache").toFile());
     // generate snapshot
     cli.execute(argsForSnapshot);
+    testResume(dbPath + File.separator + databaseDir, Paths.get(dbPath, "snapshot"));
     // start fullNode
     startApp();
     // produce transactions
@@ -151,6 +170,102 @@ public class DbLiteTest {
     DbLite.reSetRecentBlks();
   }
 
+  /**
+   * Roll a finished split back to the state of one interrupted after the first recent block
+   * was filled and journaled, resume it and compare the result with the uninterrupted split.
+   */
+  private void testResume(String fnDataPath, Path expected)
+      throws IOException, RocksDBException {
+    String datasetPath = folder.newFolder().toString();
+    String[] args = new String[]{"-o", "split", "-t", "snapshot", "--fn-data-path",
+        fnDataPath, "--dataset-path", datasetPath};
+    Assert.assertEquals(0, cli.execute(args));
+    Path snapshot = Paths.get(datasetPath, "snapshot");
+    long filled = rollBackFill(snapshot.toString());
+    Files.delete(snapshot.resolve("info.properties"));
+    Path journal = Paths.get(datasetPath, "snapshot.journal");
+    Map<String, String> values = new HashMap<>();
+    values.put("source", fnDataPath);
+    values.put("phase.split", "0");
+    values.put("phase.checkpoint", "0");
+    values.put("fill.block", Long.toString(filled));
+    new Journal(journal).putAll(values);
+
+    // an unfinished task is only continued with --resume
+    Assert.assertNotEquals(0, cli.execute(args));
+    Assert.assertEquals(0, cli.execute(ArrayUtils.add(args, "--resume")));
+    Assert.assertFalse(Files.exists(journal));
+    assertSameDataset(expected, snapshot);
+  }
+
+  /**
+   * Delete the recent blocks after the first one and their transactions from a snapshot.
+   *
+   * @return the first recent block, the last one left filled
+   */
+  private static long rollBackFill(String snapshot) throws IOException, RocksDBException {
+    try {
+      DBInterface blockIndex = DbTool.getDB(snapshot, "block-index");
+      DBInterface block = DbTool.getDB(snapshot, "block");
+      DBInterface trans = DbTool.getDB(snapshot, "trans");
+      List<byte[]> nums = new ArrayList<>();
+      try (DBIterator iterator = blockIndex.iterator()) {
+        iterator.seek(ByteArray.fromLong(1));
+        for (; iterator.valid(); iterator.next()) {
+          nums.add(iterator.getKey());
+        }
+      }
+      Assert.assertTrue(nums.size() > 1);
+      long filled = ByteArray.toLong(nums.get(0));
+      for (byte[] num : nums.subList(1, nums.size())) {
+        block.delete(blockIndex.get(num));
+        blockIndex.delete(num);
+      }
+      List<byte[]> ids = new ArrayList<>();
+      try (DBIterator iterator = trans.iterator()) {
+        for (iterator.seekToFirst(); iterator.valid(); iterator.next()) {
+          if (ByteArray.toLong(iterator.getValue()) > filled) {
+            ids.add(iterator.getKey());
+          }
+        }
+      }
+      ids.forEach(trans::delete);
+      return filled;
+    } finally {
+      DbTool.close();
+    }
+  }
+
+  private static void assertSameDataset(Path expected, Path actual)
+      throws IOException, RocksDBException {
+    Assert.assertEquals(
+        FileUtils.readProperty(expected.resolve("info.properties").toString(),
+            DBUtils.SPLIT_BLOCK_NUM),
+        FileUtils.readProperty(actual.resolve("info.properties").toString(),
+            DBUtils.SPLIT_BLOCK_NUM));
+    try (Stream<Path> dirs = Files.list(expected)) {
+      for (Path dir : dirs.collect(Collectors.toList())) {
+        if (!Files.exists(dir.resolve("CURRENT"))) {
+          continue;
+        }
+        String name = dir.getFileName().toString();
+        try (DBInterface left = DbTool.getReadOnlyDB(expected, name);
+             DBInterface right = DbTool.getReadOnlyDB(actual, name);
+             DBIterator l = left.iterator();
+             DBIterator r = right.iterator()) {
+          l.seekToFirst();
+          r.seekToFirst();
+          for (; l.valid(); l.next(), r.next()) {
+            Assert.assertTrue(name, r.valid());
+            Assert.assertArrayEquals(name, l.getKey(), r.getKey());
+            Assert.assertArrayEquals(name, l.getValue(), r.getValue());
+          }
+          Assert.assertFalse(name, r.valid());
+        }
+      }
+    }
+  }
+
   private void generateSomeTransactions(int during) {
     during *= 1000; // ms
     int runTime = 0;
@@ -2,13 +2,20 @@ package org.tron.plugins;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.rocksdb.RocksDBException;
+import org.tron.plugins.utils.ByteArray;
 import org.tron.plugins.utils.DBUtils;
 import org.tron.plugins.utils.db.DBInterface;
 import org.tron.plugins.utils.db.DbTool;
@@ -52,6 +59,16 @@ public class DbRootTest {
     args = new String[] {"db", "root", database.toString(),
         "--db", EMPTY_DB};
     Assert.assertEquals(0, cli.execute(args));
+    args = new String[] {"db", "root", database.toString(),
+        "--db", NORMAL_DB, "--db", EMPTY_DB, "--threads", "2", "--shards", "4"};
+    Assert.assertEquals(0, cli.execute(args));
+    String index = folder.newFolder().toString();
+    args = new String[] {"db", "root", database.toString(),
+        "--db", NORMAL_DB, "--db", EMPTY_DB, "--index", index};
+    Assert.assertEquals(0, cli.execute(args));
+    Assert.assertTrue(Paths.get(index, NORMAL_DB + ".root.json").toFile().exists());
+    // the second run reuses the ranges of the index
+    Assert.assertEquals(0, cli.execute(args));
 
     try (DBInterface errorDb = new LevelDBImpl(
         DBUtils.newLevelDb(Paths.get(database.toString(), ERROR_DB)), ERROR_DB)) {
@@ -64,6 +81,55 @@ public class DbRootTest {
 
   }
 
+  @Test
+  public void testIndex() throws IOException {
+    File source = folder.newFolder("source");
+    try (DBInterface normal = DbTool.getDB(source.toString(), NORMAL_DB, DbTool.DbType.LevelDB)) {
+      for (int i = 0; i < 1000; i++) {
+        normal.put(ByteArray.fromInt(i), (NORMAL_DB + "-" + i).getBytes());
+      }
+    }
+    DbTool.close();
+    File copy = folder.newFolder("copy");
+    copy(source.toPath().resolve(NORMAL_DB), copy.toPath().resolve(NORMAL_DB));
+    String sourceIndex = folder.newFolder().toString();
+    String copyIndex = folder.newFolder().toString();
+
+    String first = indexRoot(source.toString(), sourceIndex);
+    Assert.assertTrue(first, first.endsWith(",rehashed: " + ranges(first)));
+    // the ranges only depend on the keys, a copy gets the same index root
+    String other = indexRoot(copy.toString(), copyIndex);
+    Assert.assertEquals(first, other);
+    Assert.assertTrue(indexRoot(source.toString(), sourceIndex).endsWith(",rehashed: 0"));
+    // the index of another db is discarded, not reused
+    other = indexRoot(copy.toString(), sourceIndex);
+    Assert.assertEquals(first, other);
+    Assert.assertTrue(indexRoot(copy.toString(), sourceIndex).endsWith(",rehashed: 0"));
+    Assert.assertTrue(indexRoot(source.toString(), sourceIndex).endsWith(
+        ",rehashed: " + ranges(first)));
+  }
+
+  private String indexRoot(String database, String index) {
+    StringWriter out = new StringWriter();
+    cli.setOut(new PrintWriter(out));
+    Assert.assertEquals(0, cli.execute("db", "root", database, "--db", NORMAL_DB,
+        "--index", index));
+    return out.toString().split(System.lineSeparator())[0];
+  }
+
+  private static String ranges(String line) {
+    return line.replaceAll(".*,ranges: (\\d+),.*", "$1");
+  }
+
+  private static void copy(Path from, Path to) throws IOException {
+    Files.createDirectories(to);
+    try (Stream<Path> files = Files.list(from)) {
+      for (Path file : files.collect(Collectors.toList())) {
+        Files.copy(file, to.resolve(file.getFileName()));
+      }
+    }
+  }
+
   @Test
   public void testHelp() {
     String[] args = new String[] {"db", "root", "-h"};
@@ -0,0 +1,112 @@
+package org.tron.plugins.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.iq80.leveldb.DB;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+
+public class DbOptionsTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @After
+  public void destroy() {
+    DbOptions.reset();
+  }
+
+  @Test
+  public void testProfile() {
+    Assert.assertEquals(DbOptions.Profile.DEFAULT, DbOptions.of("account").getProfile());
+    Assert.assertEquals(64 * 1024L, DbOptions.of("account").getRocksDbBlockSize());
+    Assert.assertEquals(1, DbOptions.of("account").getRocksDbParallelism());
+
+    DbOptions.use("query", DbOptions.Profile.POINT_READ);
+    Assert.assertEquals(DbOptions.Profile.POINT_READ, DbOptions.of("account").getProfile());
+    Assert.assertEquals(16 * 1024L, DbOptions.of("account").getRocksDbBlockSize());
+
+    // the selected profile wins over the one of the command
+    DbOptions.setProfile("Low-Memory");
+    DbOptions.use("query", DbOptions.Profile.POINT_READ);
+    Assert.assertEquals(DbOptions.Profile.LOW_MEMORY, DbOptions.of("account").getProfile());
+    Assert.assertEquals(1, DbOptions.of("account").getRocksDbMaxBackgroundCompactions());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownProfile() {
+    DbOptions.setProfile("fast");
+  }
+
+  @Test
+  public void testOverride() throws IOException {
+    Path file = write("profile = scan\n"
+        + "rocksdb.parallelism = 8\n"
+        + "dbs {\n"
+        + "  account { profile = point-read, rocksdb.bloom-bits-per-key = 16 }\n"
+        + "  block-index { leveldb.cache-size = 64m, rocksdb.parallelism = 2 }\n"
+        + "}\n");
+    DbOptions.load(file);
+    DbOptions.use("root", DbOptions.Profile.DEFAULT);
+
+    DbOptions account = DbOptions.of("account");
+    Assert.assertEquals(DbOptions.Profile.POINT_READ, account.getProfile());
+    Assert.assertEquals(16, account.getRocksDbBloomBitsPerKey());
+    Assert.assertEquals(8, account.getRocksDbParallelism());
+
+    DbOptions blockIndex = DbOptions.of("block-index");
+    Assert.assertEquals(DbOptions.Profile.SCAN, blockIndex.getProfile());
+    Assert.assertEquals(64 * 1024 * 1024L, blockIndex.getLevelDbCacheSize());
+    Assert.assertEquals(2, blockIndex.getRocksDbParallelism());
+
+    DbOptions block = DbOptions.of("block");
+    Assert.assertEquals(DbOptions.Profile.SCAN, block.getProfile());
+    Assert.assertEquals(256 * 1024L, block.getRocksDbBlockSize());
+    Assert.assertEquals(8, block.getRocksDbParallelism());
+  }
+
+  @Test
+  public void testInvalidFile() throws IOException {
+    try {
+      DbOptions.load(write("dbs.account.profile = fast\n"));
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("fast"));
+    }
+    try {
+      DbOptions.load(write("rocksdb.parallelism = 0\n"));
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals(1, DbOptions.of("account").getRocksDbParallelism());
+    }
+  }
+
+  @Test
+  public void testOpen() throws IOException, RocksDBException {
+    DbOptions.load(write("dbs.account { leveldb.block-size = 16k,"
+        + " rocksdb.bloom-bits-per-key = 0 }\n"));
+    DbOptions.use("test", DbOptions.Profile.BULK_WRITE);
+    try (DB db = DBUtils.newLevelDb(folder.newFolder("leveldb", "account").toPath())) {
+      db.put(ByteArray.fromLong(1), ByteArray.fromLong(1));
+      Assert.assertArrayEquals(ByteArray.fromLong(1), db.get(ByteArray.fromLong(1)));
+    }
+    try (RocksDB db = DBUtils.newRocksDb(folder.newFolder("rocksdb", "account").toPath())) {
+      db.put(ByteArray.fromLong(1), ByteArray.fromLong(1));
+      Assert.assertArrayEquals(ByteArray.fromLong(1), db.get(ByteArray.fromLong(1)));
+    }
+  }
+
+  private Path write(String content) throws IOException {
+    Path file = folder.newFile().toPath();
+    Files.write(file, content.getBytes(UTF_8));
+    return file;
+  }
+}
@@ -0,0 +1,40 @@
+package org.tron.plugins.utils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournalTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testReload() throws IOException {
+    Path file = Paths.get(folder.newFolder().toString(), "sub", "test.journal");
+    Journal journal = new Journal(file);
+    Assert.assertFalse(journal.exists());
+    journal.put("a", "1");
+    Map<String, String> values = new HashMap<>();
+    values.put("b", "2");
+    values.put("c", "3");
+    journal.putAll(values);
+    journal.remove("c");
+
+    Journal reloaded = new Journal(file);
+    Assert.assertTrue(reloaded.exists());
+    Assert.assertEquals("1", reloaded.get("a"));
+    Assert.assertEquals("2", reloaded.get("b"));
+    Assert.assertFalse(reloaded.contains("c"));
+
+    reloaded.clear();
+    Assert.assertFalse(reloaded.exists());
+    Assert.assertNull(new Journal(file).get("a"));
+  }
+}
@@ -0,0 +1,68 @@
+package org.tron.plugins.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rocksdb.RocksDBException;
+import org.tron.plugins.utils.db.DBInterface;
+import org.tron.plugins.utils.db.DbTool;
+
+public class MemoryBudgetTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @After
+  public void destroy() {
+    DbTool.close();
+    DbTool.setMaxOpenDbs(DbTool.DEFAULT_MAX_OPEN_DBS);
+    MemoryBudget.setWriteBufferMb(MemoryBudget.DEFAULT_WRITE_BUFFER_MB);
+    MemoryBudget.report(new PrintStream(new ByteArrayOutputStream()));
+  }
+
+  @Test
+  public void testWriteBufferShares() {
+    MemoryBudget.setWriteBufferMb(256);
+    DbTool.setMaxOpenDbs(4);
+    Assert.assertEquals(64 * 1024 * 1024L, MemoryBudget.dbWriteBufferSize());
+    DbTool.setMaxOpenDbs(32);
+    Assert.assertEquals(8 * 1024 * 1024L, MemoryBudget.dbWriteBufferSize());
+    // never below the minimum, however many dbs may be open
+    DbTool.setMaxOpenDbs(1024);
+    Assert.assertEquals(4 * 1024 * 1024L, MemoryBudget.dbWriteBufferSize());
+  }
+
+  @Test
+  public void testReport() throws IOException, RocksDBException {
+    String dir = folder.newFolder().toString();
+    DBInterface managed = DbTool.getDB(dir, "managed", DbTool.DbType.RocksDB);
+    managed.put(ByteArray.fromLong(1), ByteArray.fromLong(1));
+    DbTool.getDB(dir, "closed", DbTool.DbType.RocksDB)
+        .put(ByteArray.fromLong(1), ByteArray.fromLong(1));
+    DbTool.closeDB(dir, "closed");
+    Path path = folder.newFolder("unmanaged").toPath();
+    DBUtils.newRocksDb(path).close();
+    FileUtils.writeProperty(path.resolve("engine.properties").toString(), "ENGINE", "ROCKSDB");
+    try (DBInterface unmanaged = DbTool.getReadOnlyDB(path.getParent(), "unmanaged")) {
+      Assert.assertNull(unmanaged.get(ByteArray.fromLong(1)));
+    }
+
+    // the open db, the closed one and the unmanaged one
+    Assert.assertEquals("Memory usage of 3 rocksdb", report().split(":")[0]);
+    Assert.assertEquals("", report());
+  }
+
+  private String report() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DbTool.reportMemoryUsage(new PrintStream(out, true));
+    return new String(out.toByteArray(), UTF_8).trim();
+  }
+}
@@ -0,0 +1,75 @@
+package org.tron.plugins.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MerkleRootTest {
+
+  @Test
+  public void testAccumulator() {
+    for (int n = 0; n < 70; n++) {
+      List<Sha256Hash> hashes = hashes(n);
+      MerkleRoot.Accumulator accumulator = new MerkleRoot.Accumulator();
+      hashes.forEach(accumulator::add);
+      Assert.assertEquals(MerkleRoot.root(hashes), accumulator.finish());
+    }
+    Assert.assertEquals(Sha256Hash.ZERO_HASH, new MerkleRoot.Accumulator().finish());
+  }
+
+  @Test
+  public void testMerge() {
+    List<Sha256Hash> hashes = hashes(100);
+    Sha256Hash expected = MerkleRoot.root(hashes);
+    int[][] cuts = {{0, 100}, {0, 1, 100}, {0, 37, 64, 65, 100}, {0, 3, 3, 50, 99, 100}};
+    for (int[] cut : cuts) {
+      MerkleRoot.Accumulator accumulator = null;
+      for (int i = 0; i + 1 < cut.length; i++) {
+        MerkleRoot.Accumulator part = new MerkleRoot.Accumulator(cut[i], -1);
+        hashes.subList(cut[i], cut[i + 1]).forEach(part::add);
+        if (accumulator == null) {
+          accumulator = part;
+        } else {
+          accumulator.merge(part);
+        }
+      }
+      Assert.assertEquals(100, accumulator.getCount());
+      Assert.assertEquals(expected, accumulator.finish());
+    }
+  }
+
+  @Test
+  public void testShards() {
+    List<Sha256Hash> hashes = hashes(100);
+    MerkleRoot.Accumulator accumulator = new MerkleRoot.Accumulator(0, 4);
+    hashes.subList(0, 40).forEach(accumulator::add);
+    MerkleRoot.Accumulator part = new MerkleRoot.Accumulator(40, 4);
+    hashes.subList(40, 100).forEach(part::add);
+    accumulator.merge(part);
+    List<Sha256Hash> shards = accumulator.getShardRoots();
+    // 6 shards of 16 and the last 4 hashes
+    Assert.assertEquals(7, shards.size());
+    for (int i = 0; i < shards.size(); i++) {
+      Assert.assertEquals(MerkleRoot.root(hashes.subList(i * 16, Math.min(100, i * 16 + 16))),
+          shards.get(i));
+    }
+    Assert.assertEquals(MerkleRoot.root(hashes), MerkleRoot.root(shards));
+    Assert.assertEquals(MerkleRoot.root(hashes), accumulator.finish());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMergeGap() {
+    MerkleRoot.Accumulator accumulator = new MerkleRoot.Accumulator();
+    accumulator.add(Sha256Hash.ZERO_HASH);
+    accumulator.merge(new MerkleRoot.Accumulator(2, -1));
+  }
+
+  private static List<Sha256Hash> hashes(int n) {
+    List<Sha256Hash> hashes = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      hashes.add(Sha256Hash.of(true, ByteArray.fromInt(i)));
+    }
+    return hashes;
+  }
+}
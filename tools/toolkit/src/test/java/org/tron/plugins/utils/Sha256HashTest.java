@@ -0,0 +1,56 @@
+package org.tron.plugins.utils;
+
+import com.google.common.primitives.Bytes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Sha256HashTest {
+
+  private static final byte[] KEY = "key".getBytes();
+  private static final byte[] VALUE = "value".getBytes();
+
+  @Test
+  public void testTwoBuffers() {
+    byte[] concat = Bytes.concat(KEY, VALUE);
+    for (boolean isSha256 : new boolean[] {true, false}) {
+      Assert.assertEquals(Sha256Hash.of(isSha256, concat), Sha256Hash.of(isSha256, KEY, VALUE));
+      Assert.assertArrayEquals(Sha256Hash.hash(isSha256, VALUE),
+          Sha256Hash.hash(isSha256, concat, KEY.length, VALUE.length));
+    }
+    Assert.assertArrayEquals(Sha256Hash.newDigest().digest(concat),
+        Sha256Hash.hash(true, concat));
+  }
+
+  @Test
+  public void testThreadDigest() throws Exception {
+    // a digest left with pending input must not leak into the next hash
+    Sha256Hash.threadDigest().update(KEY);
+    Assert.assertArrayEquals(Sha256Hash.newDigest().digest(VALUE), Sha256Hash.hash(true, VALUE));
+
+    byte[] expected = Sha256Hash.hash(true, KEY, VALUE);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < 1000; j++) {
+            if (!Sha256Hash.of(true, KEY, VALUE).equals(Sha256Hash.wrap(expected))) {
+              return false;
+            }
+          }
+          return true;
+        }));
+      }
+      for (Future<Boolean> future : futures) {
+        Assert.assertTrue(future.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
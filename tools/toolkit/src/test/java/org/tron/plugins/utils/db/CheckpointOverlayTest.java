@@ -0,0 +1,119 @@
+package org.tron.plugins.utils.db;
+
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Ints;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rocksdb.RocksDBException;
+import org.tron.plugins.utils.ByteArray;
+import org.tron.plugins.utils.DBUtils;
+
+public class CheckpointOverlayTest {
+
+  private static final String NAME = "account";
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @After
+  public void destroy() {
+    DbTool.close();
+  }
+
+  @Test
+  public void testView() throws IOException, RocksDBException {
+    String dir = folder.newFolder().toString();
+    DBInterface db = DbTool.getDB(dir, NAME);
+    for (long i = 0; i < 10; i++) {
+      db.put(ByteArray.fromLong(i), ByteArray.fromLong(i));
+    }
+    // the older checkpoint is overridden by the newer one
+    DBInterface cp1 = DbTool.getDB(Paths.get(dir, DBUtils.CHECKPOINT_DB_V2).toString(), "1");
+    put(cp1, 3, DBUtils.Operator.MODIFY, ByteArray.fromLong(30));
+    put(cp1, 5, DBUtils.Operator.DELETE, null);
+    DBInterface cp2 = DbTool.getDB(Paths.get(dir, DBUtils.CHECKPOINT_DB_V2).toString(), "2");
+    put(cp2, 3, DBUtils.Operator.MODIFY, ByteArray.fromLong(31));
+    put(cp2, 9, DBUtils.Operator.DELETE, null);
+    put(cp2, 12, DBUtils.Operator.CREATE, ByteArray.fromLong(12));
+    put(cp2, 7, DBUtils.Operator.PUT, null);
+
+    DBInterface view = DbTool.getCheckpointView(dir, NAME);
+    Assert.assertSame(view, DbTool.getCheckpointView(dir, NAME));
+    Assert.assertArrayEquals(ByteArray.fromLong(31), view.get(ByteArray.fromLong(3)));
+    Assert.assertArrayEquals(ByteArray.fromLong(4), view.get(ByteArray.fromLong(4)));
+    Assert.assertNull(view.get(ByteArray.fromLong(5)));
+    Assert.assertArrayEquals(new byte[0], view.get(ByteArray.fromLong(7)));
+    Assert.assertArrayEquals(ByteArray.fromLong(12), view.get(ByteArray.fromLong(12)));
+    Assert.assertArrayEquals(ByteArray.fromLong(5), db.get(ByteArray.fromLong(5)));
+    List<byte[]> values = view.multiGet(Arrays.asList(ByteArray.fromLong(3),
+        ByteArray.fromLong(5), ByteArray.fromLong(4), ByteArray.fromLong(12),
+        ByteArray.fromLong(100)));
+    Assert.assertArrayEquals(ByteArray.fromLong(31), values.get(0));
+    Assert.assertNull(values.get(1));
+    Assert.assertArrayEquals(ByteArray.fromLong(4), values.get(2));
+    Assert.assertArrayEquals(ByteArray.fromLong(12), values.get(3));
+    Assert.assertNull(values.get(4));
+
+    List<Long> keys = new ArrayList<>();
+    try (DBIterator iterator = view.iterator()) {
+      for (iterator.seekToFirst(); iterator.valid(); iterator.next()) {
+        keys.add(ByteArray.toLong(iterator.getKey()));
+      }
+      Assert.assertEquals(9, keys.size());
+      Assert.assertFalse(keys.contains(5L));
+      Assert.assertFalse(keys.contains(9L));
+      Assert.assertEquals(12L, (long) keys.get(keys.size() - 1));
+
+      iterator.seek(ByteArray.fromLong(5));
+      Assert.assertEquals(6L, ByteArray.toLong(iterator.getKey()));
+      iterator.seekToLast();
+      Assert.assertEquals(12L, ByteArray.toLong(iterator.getKey()));
+    }
+    Assert.assertEquals(9, view.size());
+    Assert.assertEquals(9, view.size(2));
+
+    DbTool.closeDB(dir, NAME);
+    Assert.assertNotSame(view, DbTool.getCheckpointView(dir, NAME));
+  }
+
+  @Test
+  public void testLastKeyDeleted() throws IOException, RocksDBException {
+    String dir = folder.newFolder().toString();
+    DBInterface db = DbTool.getDB(dir, NAME);
+    for (long i = 0; i < 5; i++) {
+      db.put(ByteArray.fromLong(i), ByteArray.fromLong(i));
+    }
+    put(DbTool.getDB(dir, DBUtils.TMP), 4, DBUtils.Operator.DELETE, null);
+    DBInterface view = DbTool.getCheckpointView(dir, NAME);
+    try (DBIterator iterator = view.iterator()) {
+      iterator.seekToLast();
+      Assert.assertEquals(3L, ByteArray.toLong(iterator.getKey()));
+    }
+  }
+
+  @Test
+  public void testNoCheckpoint() throws IOException, RocksDBException {
+    String dir = folder.newFolder().toString();
+    DbTool.getDB(dir, NAME).put(ByteArray.fromLong(1), ByteArray.fromLong(1));
+    Assert.assertTrue(CheckpointOverlay.checkpoints(dir).isEmpty());
+    DBInterface view = DbTool.getCheckpointView(dir, NAME);
+    Assert.assertArrayEquals(ByteArray.fromLong(1), view.get(ByteArray.fromLong(1)));
+    Assert.assertFalse(new File(dir, DBUtils.TMP).exists());
+  }
+
+  private static void put(DBInterface checkpoint, long key, DBUtils.Operator op, byte[] value) {
+    byte[] name = NAME.getBytes();
+    checkpoint.put(Bytes.concat(Ints.toByteArray(name.length), name, ByteArray.fromLong(key)),
+        value == null ? new byte[] {op.getValue()} : Bytes.concat(new byte[] {op.getValue()},
+            value));
+  }
+}
@@ -0,0 +1,147 @@
+package org.tron.plugins.utils.db;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rocksdb.RocksDBException;
+import org.tron.plugins.utils.ByteArray;
+import org.tron.plugins.utils.DBUtils;
+import org.tron.plugins.utils.FileUtils;
+
+public class DbHandleTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @After
+  public void destroy() {
+    DbTool.close();
+    DbTool.setMaxOpenDbs(DbTool.DEFAULT_MAX_OPEN_DBS);
+    DbTool.setMaxOpenFiles(DbTool.DEFAULT_MAX_OPEN_FILES);
+  }
+
+  @Test
+  public void testLevelDb() throws IOException, RocksDBException {
+    testEvict(DbTool.DbType.LevelDB);
+  }
+
+  @Test
+  public void testRocksDb() throws IOException, RocksDBException {
+    testEvict(DbTool.DbType.RocksDB);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testClosed() throws IOException, RocksDBException {
+    String dir = folder.newFolder().toString();
+    DBInterface db = DbTool.getDB(dir, "a", DbTool.DbType.LevelDB);
+    DbTool.closeDB(dir, "a");
+    db.get(ByteArray.fromLong(1));
+  }
+
+  @Test
+  public void testReadOnlyLevelDb() throws IOException, RocksDBException {
+    testReadOnly(DbTool.DbType.LevelDB);
+  }
+
+  @Test
+  public void testReadOnlyRocksDb() throws IOException, RocksDBException {
+    testReadOnly(DbTool.DbType.RocksDB);
+  }
+
+  private void testReadOnly(DbTool.DbType type) throws IOException, RocksDBException {
+    String dir = folder.newFolder().toString();
+    DbTool.getDB(dir, "a", type).put(ByteArray.fromLong(1), ByteArray.fromLong(1));
+    DbTool.closeDB(dir, "a");
+    if (type == DbTool.DbType.RocksDB) {
+      FileUtils.writeProperty(Paths.get(dir, "a", DBUtils.FILE_ENGINE).toString(),
+          DBUtils.KEY_ENGINE, DBUtils.ROCKSDB);
+    }
+
+    DbHandle a = (DbHandle) DbTool.getReadOnlyDB(dir, "a");
+    Assert.assertTrue(a.isReadOnly());
+    Assert.assertEquals(type, a.getType());
+    Assert.assertArrayEquals(ByteArray.fromLong(1), a.get(ByteArray.fromLong(1)));
+    Assert.assertSame(a, DbTool.getReadOnlyDB(dir, "a"));
+    try {
+      a.put(ByteArray.fromLong(2), ByteArray.fromLong(2));
+      Assert.fail();
+    } catch (UnsupportedOperationException e) {
+      Assert.assertNull(a.get(ByteArray.fromLong(2)));
+    }
+    // opened read-only again after closed idle
+    a.close();
+    Assert.assertFalse(a.isOpen());
+    Assert.assertEquals(1, a.size());
+    try {
+      a.newWriteSession();
+      Assert.fail();
+    } catch (UnsupportedOperationException e) {
+      Assert.assertTrue(a.isOpen());
+    }
+
+    // a db still read is not reopened for writing
+    try (DBIterator iterator = a.iterator()) {
+      iterator.seekToFirst();
+      try {
+        DbTool.getDB(dir, "a");
+        Assert.fail();
+      } catch (IllegalStateException e) {
+        Assert.assertTrue(a.isReadOnly());
+      }
+    }
+    // an idle one is
+    Assert.assertSame(a, DbTool.getDB(dir, "a"));
+    Assert.assertFalse(a.isReadOnly());
+    a.put(ByteArray.fromLong(2), ByteArray.fromLong(2));
+    Assert.assertEquals(2, a.size());
+
+    // a missing db is not created, leveldb leaves its dir and lock file only
+    try {
+      DbTool.getReadOnlyDB(dir, "b");
+      Assert.fail();
+    } catch (IOException | RocksDBException e) {
+      Assert.assertFalse(Paths.get(dir, "b", "CURRENT").toFile().exists());
+    }
+  }
+
+  private void testEvict(DbTool.DbType type) throws IOException, RocksDBException {
+    DbTool.setMaxOpenDbs(2);
+    String dir = folder.newFolder().toString();
+    DbHandle a = (DbHandle) DbTool.getDB(dir, "a", type);
+    a.put(ByteArray.fromLong(1), ByteArray.fromLong(1));
+    DbHandle b = (DbHandle) DbTool.getDB(dir, "b", type);
+    b.put(ByteArray.fromLong(2), ByteArray.fromLong(2));
+    Assert.assertSame(a, DbTool.getDB(dir, "a", type));
+
+    // the least recently used one is closed for the third
+    DbHandle c = (DbHandle) DbTool.getDB(dir, "c", type);
+    Assert.assertFalse(a.isOpen());
+    Assert.assertTrue(b.isOpen());
+    Assert.assertTrue(c.isOpen());
+
+    // reopened on use, b is closed in turn
+    Assert.assertArrayEquals(ByteArray.fromLong(1), a.get(ByteArray.fromLong(1)));
+    Assert.assertTrue(a.isOpen());
+    Assert.assertFalse(b.isOpen());
+
+    // an open iterator keeps its db open beyond the limit
+    try (DBIterator iterator = c.iterator()) {
+      Assert.assertArrayEquals(ByteArray.fromLong(2), b.get(ByteArray.fromLong(2)));
+      Assert.assertTrue(c.isOpen());
+      Assert.assertFalse(a.isOpen());
+      a.get(ByteArray.fromLong(1));
+      Assert.assertTrue(c.isOpen());
+      iterator.seekToFirst();
+      Assert.assertFalse(iterator.valid());
+    }
+
+    // closing a managed db only closes the engine
+    a.close();
+    Assert.assertFalse(a.isOpen());
+    Assert.assertEquals(1, a.size());
+  }
+}
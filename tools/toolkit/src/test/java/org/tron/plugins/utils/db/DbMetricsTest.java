@@ -0,0 +1,83 @@
+package org.tron.plugins.utils.db;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rocksdb.RocksDBException;
+import org.tron.plugins.utils.ByteArray;
+
+public class DbMetricsTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @After
+  public void destroy() {
+    DbTool.close();
+    DbMetrics.reset();
+  }
+
+  @Test
+  public void testRecord() throws IOException, RocksDBException {
+    Path textfile = folder.getRoot().toPath().resolve("toolkit.prom");
+    DbMetrics.enable(textfile);
+    String dir = folder.newFolder().toString();
+    DBInterface db = DbTool.getDB(dir, "account", DbTool.DbType.Memory);
+    Assert.assertTrue(db instanceof InstrumentedDB);
+    Assert.assertSame(db, DbTool.getDB(dir, "account"));
+
+    try (WriteSession session = db.newWriteSession()) {
+      for (long i = 0; i < 10; i++) {
+        session.put(ByteArray.fromLong(i), ByteArray.fromLong(i));
+      }
+    }
+    db.get(ByteArray.fromLong(1));
+    db.multiGet(Arrays.asList(ByteArray.fromLong(2), ByteArray.fromLong(20)));
+    db.delete(ByteArray.fromLong(9));
+    try (DBIterator iterator = db.iterator()) {
+      iterator.seekToFirst();
+      iterator.next();
+      iterator.visit((key, value) -> true);
+    }
+
+    DbMetrics.Store store = DbMetrics.store(dir, "account");
+    Assert.assertEquals(10, store.count(DbMetrics.Op.PUT));
+    Assert.assertEquals(3, store.count(DbMetrics.Op.GET));
+    Assert.assertEquals(1, store.count(DbMetrics.Op.DELETE));
+    Assert.assertEquals(9, store.count(DbMetrics.Op.NEXT));
+    Assert.assertEquals(1, store.count(DbMetrics.Op.FLUSH));
+    Assert.assertEquals(10 * 16 + 8, store.getBytesWritten());
+    // three gets of which one missed, nine entries
+    Assert.assertEquals(16 + 16 + 8 + 9 * 16, store.getBytesRead());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DbMetrics.report(new PrintStream(out, true, "UTF-8"));
+    String table = new String(out.toByteArray(), UTF_8);
+    Assert.assertTrue(table, table.contains("account"));
+    Assert.assertTrue(table, table.contains("next"));
+
+    String metrics = new String(Files.readAllBytes(textfile), UTF_8);
+    Assert.assertTrue(metrics, metrics.contains("# TYPE tron:toolkit_db_op_latency_seconds"
+        + " histogram"));
+    Assert.assertTrue(metrics, metrics.contains("op=\"get\",le=\"+Inf\",} 3.0"));
+    Assert.assertTrue(metrics, metrics.contains("db=\"account\""));
+    Assert.assertTrue(metrics, metrics.contains("type=\"write\",} 168.0"));
+  }
+
+  @Test
+  public void testDisabled() throws IOException, RocksDBException {
+    DBInterface db = DbTool.getDB(folder.newFolder().toString(), "account",
+        DbTool.DbType.Memory);
+    Assert.assertTrue(db instanceof DbHandle);
+  }
+}
@@ -0,0 +1,130 @@
+package org.tron.plugins.utils.db;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rocksdb.RocksDBException;
+import org.tron.plugins.utils.ByteArray;
+
+public class DbSnapshotTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @After
+  public void destroy() {
+    DbTool.close();
+    DbTool.setMaxOpenDbs(DbTool.DEFAULT_MAX_OPEN_DBS);
+  }
+
+  @Test
+  public void testLevelDb() throws IOException, RocksDBException {
+    testSnapshot(DbTool.DbType.LevelDB);
+  }
+
+  @Test
+  public void testRocksDb() throws IOException, RocksDBException {
+    testSnapshot(DbTool.DbType.RocksDB);
+  }
+
+  @Test
+  public void testMemory() throws IOException, RocksDBException {
+    testSnapshot(DbTool.DbType.Memory);
+  }
+
+  @Test
+  public void testCheckpointView() throws IOException, RocksDBException {
+    String dir = folder.newFolder().toString();
+    DBInterface db = DbTool.getDB(dir, "account");
+    db.put(ByteArray.fromLong(1), ByteArray.fromLong(1));
+    try (DbSnapshot snapshot = DbTool.getSnapshot(dir, true, "account")) {
+      db.put(ByteArray.fromLong(1), ByteArray.fromLong(10));
+      Assert.assertArrayEquals(ByteArray.fromLong(1),
+          snapshot.get("account").get(ByteArray.fromLong(1)));
+    }
+    Assert.assertArrayEquals(ByteArray.fromLong(10),
+        DbTool.getCheckpointView(dir, "account").get(ByteArray.fromLong(1)));
+  }
+
+  @Test
+  public void testEvict() throws IOException, RocksDBException {
+    DbTool.setMaxOpenDbs(1);
+    String dir = folder.newFolder().toString();
+    DbHandle a = (DbHandle) DbTool.getDB(dir, "a", DbTool.DbType.LevelDB);
+    a.put(ByteArray.fromLong(1), ByteArray.fromLong(1));
+    try (DbSnapshot snapshot = DbTool.getSnapshot(dir, false, "a")) {
+      // the snapshot holds a, it stays open past the limit
+      DbTool.getDB(dir, "b", DbTool.DbType.LevelDB).put(ByteArray.fromLong(2),
+          ByteArray.fromLong(2));
+      Assert.assertTrue(a.isOpen());
+      Assert.assertArrayEquals(ByteArray.fromLong(1),
+          snapshot.get("a").get(ByteArray.fromLong(1)));
+    }
+    // released, a is idle and closed for the next one
+    DbTool.getDB(dir, "c", DbTool.DbType.LevelDB);
+    Assert.assertFalse(a.isOpen());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknown() throws IOException, RocksDBException {
+    String dir = folder.newFolder().toString();
+    DbTool.getDB(dir, "a", DbTool.DbType.Memory);
+    try (DbSnapshot snapshot = DbTool.getSnapshot(dir, false, "a")) {
+      snapshot.get("b");
+    }
+  }
+
+  private void testSnapshot(DbTool.DbType type) throws IOException, RocksDBException {
+    String dir = folder.newFolder().toString();
+    DBInterface a = DbTool.getDB(dir, "a", type);
+    DBInterface b = DbTool.getDB(dir, "b", type);
+    for (long i = 0; i < 10; i++) {
+      a.put(ByteArray.fromLong(i), ByteArray.fromLong(i));
+      b.put(ByteArray.fromLong(i), ByteArray.fromLong(i));
+    }
+
+    try (DbSnapshot snapshot = DbTool.getSnapshot(dir, false, "a", "b")) {
+      // written after the snapshot, none of it is seen
+      a.put(ByteArray.fromLong(1), ByteArray.fromLong(100));
+      a.put(ByteArray.fromLong(20), ByteArray.fromLong(20));
+      b.delete(ByteArray.fromLong(2));
+
+      DBInterface viewA = snapshot.get("a");
+      DBInterface viewB = snapshot.get("b");
+      Assert.assertArrayEquals(ByteArray.fromLong(1), viewA.get(ByteArray.fromLong(1)));
+      Assert.assertNull(viewA.get(ByteArray.fromLong(20)));
+      Assert.assertArrayEquals(ByteArray.fromLong(2), viewB.get(ByteArray.fromLong(2)));
+      List<byte[]> values = viewA.multiGet(Arrays.asList(ByteArray.fromLong(1),
+          ByteArray.fromLong(20)));
+      Assert.assertArrayEquals(ByteArray.fromLong(1), values.get(0));
+      Assert.assertNull(values.get(1));
+      Assert.assertEquals(10, viewA.size());
+
+      List<Long> keys = new ArrayList<>();
+      try (DBIterator iterator = viewB.iterator()) {
+        for (iterator.seekToFirst(); iterator.valid(); iterator.next()) {
+          keys.add(ByteArray.toLong(iterator.getKey()));
+        }
+      }
+      Assert.assertEquals(10, keys.size());
+      Assert.assertTrue(keys.contains(2L));
+
+      try {
+        viewA.put(ByteArray.fromLong(30), ByteArray.fromLong(30));
+        Assert.fail();
+      } catch (UnsupportedOperationException e) {
+        Assert.assertNull(a.get(ByteArray.fromLong(30)));
+      }
+    }
+
+    // the dbs stay open and current
+    Assert.assertArrayEquals(ByteArray.fromLong(100), a.get(ByteArray.fromLong(1)));
+    Assert.assertNull(b.get(ByteArray.fromLong(2)));
+  }
+}
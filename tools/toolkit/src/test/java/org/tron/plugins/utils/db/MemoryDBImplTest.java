@@ -0,0 +1,70 @@
+package org.tron.plugins.utils.db;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.rocksdb.RocksDBException;
+import org.tron.plugins.utils.ByteArray;
+import org.tron.plugins.utils.DBUtils;
+import org.tron.plugins.utils.MarketUtils;
+
+public class MemoryDBImplTest {
+
+  @After
+  public void destroy() {
+    DbTool.close();
+    DbTool.setMaxOpenDbs(DbTool.DEFAULT_MAX_OPEN_DBS);
+  }
+
+  @Test
+  public void testMarketOrder() throws IOException {
+    DBInterface db = new MemoryDBImpl(DBUtils.MARKET_PAIR_PRICE_TO_ORDER);
+    byte[] sell = ByteArray.fromString("100");
+    byte[] buy = ByteArray.fromString("200");
+    long[][] quantities = {{1000, 2001}, {1, 3}, {10, 1}, {3, 7}, {1000, 1}};
+    for (long[] quantity : quantities) {
+      db.put(MarketUtils.createPairPriceKey(sell, buy, quantity[0], quantity[1]),
+          ByteArray.fromLong(quantity[0]));
+    }
+    List<byte[]> keys = new ArrayList<>();
+    try (DBIterator iterator = db.iterator()) {
+      for (iterator.seekToFirst(); iterator.valid(); iterator.next()) {
+        keys.add(iterator.getKey());
+      }
+    }
+    Assert.assertEquals(quantities.length, keys.size());
+    for (int i = 1; i < keys.size(); i++) {
+      Assert.assertTrue(MarketUtils.comparePriceKey(keys.get(i - 1), keys.get(i)) < 0);
+    }
+  }
+
+  @Test
+  public void testCopies() {
+    DBInterface db = new MemoryDBImpl("account");
+    byte[] key = ByteArray.fromLong(1);
+    byte[] value = ByteArray.fromLong(1);
+    db.put(key, value);
+    key[7] = 2;
+    value[7] = 2;
+    Assert.assertArrayEquals(ByteArray.fromLong(1), db.get(ByteArray.fromLong(1)));
+    db.get(ByteArray.fromLong(1))[7] = 3;
+    Assert.assertArrayEquals(ByteArray.fromLong(1), db.get(ByteArray.fromLong(1)));
+    Assert.assertNull(db.get(key));
+  }
+
+  @Test
+  public void testNotEvicted() throws IOException, RocksDBException {
+    DbTool.setMaxOpenDbs(1);
+    DBInterface a = DbTool.getDB("memory", "a", DbTool.DbType.Memory);
+    a.put(ByteArray.fromLong(1), ByteArray.fromLong(1));
+    DBInterface b = DbTool.getDB("memory", "b", DbTool.DbType.Memory);
+    b.put(ByteArray.fromLong(2), ByteArray.fromLong(2));
+    // later lookups without the type find the memory db
+    Assert.assertSame(a, DbTool.getDB("memory", "a"));
+    Assert.assertArrayEquals(ByteArray.fromLong(1), a.get(ByteArray.fromLong(1)));
+    Assert.assertEquals(1, b.size());
+  }
+}
@@ -0,0 +1,182 @@
+package org.tron.plugins.utils.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rocksdb.RocksDBException;
+import org.tron.plugins.utils.ByteArray;
+
+public class ParallelScannerTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testLevelDb() throws IOException, RocksDBException {
+    testScan(DbTool.DbType.LevelDB);
+  }
+
+  @Test
+  public void testRocksDb() throws IOException, RocksDBException {
+    testScan(DbTool.DbType.RocksDB);
+  }
+
+  @Test
+  public void testMemory() throws IOException, RocksDBException {
+    testScan(DbTool.DbType.Memory);
+  }
+
+  @Test
+  public void testInterpolate() {
+    byte[] lo = ByteArray.fromLong(0);
+    byte[] hi = ByteArray.fromLong(1000);
+    List<byte[]> keys = RangePartitioner.interpolate(lo, hi, 10);
+    Assert.assertEquals(9, keys.size());
+    byte[] prev = lo;
+    for (byte[] key : keys) {
+      Assert.assertTrue(ByteArray.compareUnsigned(prev, key) < 0);
+      prev = key;
+    }
+    Assert.assertTrue(ByteArray.compareUnsigned(prev, hi) < 0);
+    Assert.assertTrue(RangePartitioner.interpolate(lo, lo, 10).isEmpty());
+  }
+
+  @Test
+  public void testPrefixEnd() {
+    Assert.assertArrayEquals(new byte[] {1, 3}, IteratorOptions.prefixEnd(new byte[] {1, 2}));
+    Assert.assertArrayEquals(new byte[] {2},
+        IteratorOptions.prefixEnd(new byte[] {1, (byte) 0xff}));
+    Assert.assertNull(IteratorOptions.prefixEnd(new byte[] {(byte) 0xff, (byte) 0xff}));
+    Assert.assertNull(IteratorOptions.prefixEnd(new byte[0]));
+  }
+
+  private void testScan(DbTool.DbType type) throws IOException, RocksDBException {
+    File dir = folder.newFolder();
+    try {
+      DBInterface db = DbTool.getDB(dir.toString(), "scan", type);
+      try (WriteSession session = db.newWriteSession()) {
+        for (long i = 0; i < 1000; i++) {
+          session.put(ByteArray.fromLong(i * 7), ByteArray.fromLong(i));
+        }
+      }
+      Assert.assertEquals(1000, db.size());
+      Assert.assertEquals(1000, db.size(4));
+      Assert.assertTrue(db.estimatedSize() > 0);
+
+      List<KeyRange> ranges = RangePartitioner.partition(db, 8);
+      Assert.assertTrue(ranges.size() > 1);
+      Assert.assertNull(ranges.get(0).getStart());
+      Assert.assertNull(ranges.get(ranges.size() - 1).getEnd());
+
+      List<byte[]> keys = new ArrayList<>();
+      ParallelScanner.scan(db, ranges, 4, (range, iterator) -> {
+        List<byte[]> rangeKeys = new ArrayList<>();
+        while (iterator.hasNext()) {
+          byte[] key = iterator.next().getKey();
+          Assert.assertTrue(range.contains(key));
+          rangeKeys.add(key);
+        }
+        return rangeKeys;
+      }).forEach(keys::addAll);
+
+      Assert.assertEquals(1000, keys.size());
+      for (int i = 0; i < keys.size(); i++) {
+        Assert.assertArrayEquals(ByteArray.fromLong(i * 7L), keys.get(i));
+      }
+
+      List<Long> counts = ParallelScanner.scan(db, ranges, 4,
+          (range, iterator) -> iterator.count());
+      Assert.assertEquals(1000L, counts.stream().mapToLong(Long::longValue).sum());
+      testVisit(db);
+      testMultiGet(db);
+      testIteratorOptions(db);
+    } finally {
+      DbTool.close();
+    }
+  }
+
+  private void testMultiGet(DBInterface db) {
+    Assert.assertTrue(db.multiGet(new ArrayList<>()).isEmpty());
+    // enough keys for the parallel path of leveldb, every other one missing
+    List<byte[]> keys = new ArrayList<>();
+    for (long i = 0; i < 200; i++) {
+      keys.add(ByteArray.fromLong(i * 7 + i % 2));
+    }
+    List<byte[]> values = db.multiGet(keys);
+    Assert.assertEquals(keys.size(), values.size());
+    for (int i = 0; i < values.size(); i++) {
+      if (i % 2 == 0) {
+        Assert.assertEquals(i, ByteArray.toLong(values.get(i)));
+      } else {
+        Assert.assertNull(values.get(i));
+      }
+    }
+  }
+
+  private void testVisit(DBInterface db) throws IOException {
+    KeyRange range = new KeyRange(ByteArray.fromLong(70), ByteArray.fromLong(140));
+    try (DBIterator iterator = new BoundedDBIterator(db.iterator(), range)) {
+      iterator.seekToFirst();
+      List<Long> values = new ArrayList<>();
+      Assert.assertEquals(10, iterator.visit((key, value) -> {
+        Assert.assertEquals(ByteArray.toLong(key), ByteArray.toLong(value) * 7);
+        values.add(ByteArray.toLong(value));
+        return true;
+      }));
+      Assert.assertEquals(10L, (long) values.get(0));
+      Assert.assertEquals(19L, (long) values.get(values.size() - 1));
+      Assert.assertFalse(iterator.valid());
+    }
+    // bounded by the engine itself on RocksDB
+    try (DBIterator iterator = db.iterator(IteratorOptions.scan(range))) {
+      iterator.seekToFirst();
+      Assert.assertEquals(10, iterator.count());
+      Assert.assertFalse(iterator.valid());
+    }
+    try (DBIterator iterator = db.iterator(IteratorOptions.scan(range))) {
+      iterator.seek(ByteArray.fromLong(0));
+      Assert.assertEquals(10, iterator.visit((key, value) -> true));
+    }
+    try (DBIterator iterator = db.iterator()) {
+      iterator.seekToFirst();
+      // stops after the third entry and leaves the iterator on the fourth
+      long[] seen = {0};
+      Assert.assertEquals(3, iterator.visit((key, value) -> ++seen[0] < 3));
+      Assert.assertEquals(21L, ByteArray.toLong(iterator.getKey()));
+      Assert.assertEquals(997, iterator.count());
+      Assert.assertFalse(iterator.valid());
+    }
+  }
+
+  private void testIteratorOptions(DBInterface db) throws IOException {
+    // the keys 768 to 1023 share the first 7 bytes
+    byte[] prefix = Arrays.copyOf(ByteArray.fromLong(768), 7);
+    List<Long> expected = new ArrayList<>();
+    for (long key = 770; key < 1024; key += 7) {
+      expected.add(key);
+    }
+    try (DBIterator iterator = db.iterator(new IteratorOptions().prefix(prefix))) {
+      iterator.seekToFirst();
+      List<Long> keys = new ArrayList<>();
+      iterator.visit((key, value) -> keys.add(ByteArray.toLong(key)));
+      Assert.assertEquals(expected, keys);
+    }
+    KeyRange range = new KeyRange(ByteArray.fromLong(70), ByteArray.fromLong(140));
+    try (DBIterator iterator = db.iterator(IteratorOptions.scan(range))) {
+      // seeks are clamped to the range
+      iterator.seek(ByteArray.fromLong(0));
+      Assert.assertEquals(70L, ByteArray.toLong(iterator.getKey()));
+      iterator.seek(ByteArray.fromLong(200));
+      Assert.assertFalse(iterator.valid());
+      iterator.seekToFirst();
+      Assert.assertEquals(10, iterator.count());
+      Assert.assertFalse(iterator.valid());
+    }
+  }
+}
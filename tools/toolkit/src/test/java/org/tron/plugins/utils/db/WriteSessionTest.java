@@ -0,0 +1,64 @@
+package org.tron.plugins.utils.db;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rocksdb.RocksDBException;
+import org.tron.plugins.utils.ByteArray;
+
+public class WriteSessionTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testLevelDb() throws IOException, RocksDBException {
+    testSession(DbTool.DbType.LevelDB);
+  }
+
+  @Test
+  public void testRocksDb() throws IOException, RocksDBException {
+    testSession(DbTool.DbType.RocksDB);
+  }
+
+  @Test
+  public void testMemory() throws IOException, RocksDBException {
+    testSession(DbTool.DbType.Memory);
+  }
+
+  private void testSession(DbTool.DbType type) throws IOException, RocksDBException {
+    File dir = folder.newFolder();
+    try {
+      DBInterface db = DbTool.getDB(dir.toString(), "session", type);
+      WriteSessionOptions options = new WriteSessionOptions().flushSize(3)
+          .disableWal(true).syncOnClose(true);
+      try (WriteSession session = db.newWriteSession(options)) {
+        for (int i = 0; i < 10; i++) {
+          session.put(ByteArray.fromInt(i), ByteArray.fromInt(i));
+        }
+        // 9 puts flushed in batches of 3, the last one still buffered
+        Assert.assertEquals(1, session.pending());
+        Assert.assertNull(db.get(ByteArray.fromInt(9)));
+        session.delete(ByteArray.fromInt(0));
+      }
+      Assert.assertNull(db.get(ByteArray.fromInt(0)));
+      Assert.assertArrayEquals(ByteArray.fromInt(9), db.get(ByteArray.fromInt(9)));
+      Assert.assertEquals(9, db.size());
+
+      try (WriteSession session = db.newWriteSession(options)) {
+        // the buffered put is inside the range and deleted too
+        session.put(ByteArray.fromInt(10), ByteArray.fromInt(10));
+        session.deleteRange(ByteArray.fromInt(3), ByteArray.fromInt(11));
+      }
+      Assert.assertArrayEquals(ByteArray.fromInt(2), db.get(ByteArray.fromInt(2)));
+      Assert.assertNull(db.get(ByteArray.fromInt(3)));
+      Assert.assertNull(db.get(ByteArray.fromInt(10)));
+      Assert.assertEquals(2, db.size());
+    } finally {
+      DbTool.close();
+    }
+  }
+}